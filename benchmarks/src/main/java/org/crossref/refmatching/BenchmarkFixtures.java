@@ -0,0 +1,136 @@
+package org.crossref.refmatching;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Loads the fixtures of the matcher tests, bundled with the benchmarks:
+ * 2000 structured references, 2000 reference strings, and recorded API
+ * search responses.
+ */
+public final class BenchmarkFixtures {
+
+    public static final String STRUCTURED_REFERENCES =
+            "/test-inputs/sample-refs-2000.json";
+    public static final String STRING_REFERENCES =
+            "/test-inputs/sample-ref-strings-2000.txt";
+    public static final String LINE_DELIMITER = "\r?\n";
+
+    /**
+     * The recorded API responses. Resource folders cannot be listed inside
+     * the benchmark jar, so they are named here.
+     */
+    public static final String[] STRUCTURED_RESPONSES = {
+        "structured-ref-response-1.json",
+        "structured-ref-response-2.json"
+    };
+    public static final String[] UNSTRUCTURED_RESPONSES = {
+        "unstructured-ref-response-1.json",
+        "unstructured-ref-response-2.json",
+        "single-doi-response-1.json"
+    };
+
+    private static final Pattern PAGES = Pattern.compile(
+            "\\d+[\u002D\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B"
+            + "\u208B\u2212-]\\d+");
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Read a bundled fixture.
+     *
+     * @param name Resource name
+     * @return The content of the fixture
+     */
+    public static byte[] read(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream(
+                name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture: " + name);
+            }
+            return IOUtils.toByteArray(in);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Parse the references of a fixture, as the matcher parses its input.
+     *
+     * @param name Resource name
+     * @return The parsed references
+     */
+    public static List<Reference> references(String name) {
+        List<Reference> references = new ArrayList<>();
+        for (ReferenceData data
+                : Utils.parseInputReferences(read(name), LINE_DELIMITER)) {
+            references.add(data.getReference());
+        }
+        return references;
+    }
+
+    /**
+     * Create the candidates of a recorded API response.
+     *
+     * @param response Response file name
+     * @return The candidates, in the order of the response
+     */
+    public static List<Candidate> candidates(String response) {
+        JSONObject json = new JSONObject(new String(
+                read("/api-responses/" + response), StandardCharsets.UTF_8));
+        JSONArray items = json.getJSONObject("message").optJSONArray("items");
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < items.length(); i++) {
+            candidates.add(new Candidate(items.getJSONObject(i)));
+        }
+        return candidates;
+    }
+
+    /**
+     * Create the candidates of several recorded API responses.
+     *
+     * @param responses Response file names
+     * @return The candidates of every response
+     */
+    public static List<List<Candidate>> candidates(String... responses) {
+        List<List<Candidate>> candidates = new ArrayList<>();
+        for (String response : responses) {
+            candidates.add(candidates(response));
+        }
+        return candidates;
+    }
+
+    /**
+     * Find the page ranges in reference strings, as the string validation
+     * does before completing abbreviated last pages. Digit runs too long to
+     * be page numbers are skipped.
+     *
+     * @param references The references
+     * @return Page ranges
+     */
+    public static List<String> pageRanges(List<Reference> references) {
+        List<String> ranges = new ArrayList<>();
+        for (Reference reference : references) {
+            Matcher pages = PAGES.matcher(reference.getFormattedString());
+            while (pages.find()) {
+                try {
+                    Utils.completeLastPage(pages.group());
+                    ranges.add(pages.group());
+                } catch (NumberFormatException ex) {
+                    // Not a page range
+                }
+            }
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,83 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the string utilities the validation is built on: the
+ * normalization of strings, their fuzzy similarity, and the completion of
+ * abbreviated page ranges, on the sample reference strings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizationBenchmark {
+
+    private List<String> strings;
+    private List<String> titles;
+    private List<String> pageRanges;
+    private int string = 0;
+    private int title = 0;
+    private int pageRange = 0;
+
+    @Setup
+    public void setUp() {
+        List<Reference> references = BenchmarkFixtures.references(
+                BenchmarkFixtures.STRING_REFERENCES);
+        strings = new ArrayList<>();
+        references.forEach(r -> strings.add(r.getFormattedString()));
+        // Compared to the strings as the string validation compares titles
+        titles = new ArrayList<>();
+        for (List<Candidate> candidates : BenchmarkFixtures.candidates(
+                BenchmarkFixtures.UNSTRUCTURED_RESPONSES)) {
+            for (Candidate candidate : candidates) {
+                JSONArray value = candidate.getItem().optJSONArray("title");
+                if (value != null && !value.optString(0, "").isEmpty()) {
+                    titles.add(value.optString(0, ""));
+                }
+            }
+        }
+        pageRanges = BenchmarkFixtures.pageRanges(references);
+    }
+
+    private String nextString() {
+        string = (string + 1) % strings.size();
+        return strings.get(string);
+    }
+
+    private String nextTitle() {
+        title = (title + 1) % titles.size();
+        return titles.get(title);
+    }
+
+    @Benchmark
+    public String normalize() {
+        return Utils.normalize(nextString());
+    }
+
+    @Benchmark
+    public double stringSimilarity() {
+        return Utils.stringSimilarity(nextTitle(), nextString(), true, true);
+    }
+
+    @Benchmark
+    public String completeLastPage() {
+        pageRange = (pageRange + 1) % pageRanges.size();
+        return Utils.completeLastPage(pageRanges.get(pageRange));
+    }
+}
@@ -0,0 +1,55 @@
+package org.crossref.refmatching;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the parsing of the 2000 sample references, as a JSON array of
+ * structured references and as one reference string per line. The lines
+ * are parsed lazily by the matcher, so their benchmark includes getting
+ * every reference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark {
+
+    private byte[] structured;
+    private byte[] strings;
+
+    @Setup
+    public void setUp() {
+        structured = BenchmarkFixtures.read(
+                BenchmarkFixtures.STRUCTURED_REFERENCES);
+        strings = BenchmarkFixtures.read(BenchmarkFixtures.STRING_REFERENCES);
+    }
+
+    @Benchmark
+    public List<ReferenceData> parseStructuredReferences() {
+        return Utils.parseInputReferences(structured,
+                BenchmarkFixtures.LINE_DELIMITER);
+    }
+
+    @Benchmark
+    public int parseStringReferences() {
+        int length = 0;
+        for (ReferenceData data : Utils.parseInputReferences(strings,
+                BenchmarkFixtures.LINE_DELIMITER)) {
+            length += data.getReference().getFormattedString().length();
+        }
+        return length;
+    }
+}
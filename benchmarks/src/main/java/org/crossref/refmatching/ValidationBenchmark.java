@@ -0,0 +1,96 @@
+package org.crossref.refmatching;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the validation of candidates: the similarity of a single
+ * candidate to a reference string or a structured reference, and the
+ * choice of the best candidate of a whole search response.
+ *
+ * Every invocation validates the next sample reference, against the
+ * candidates of the recorded responses in turn, so the results are not
+ * skewed by a single reference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private List<Reference> strings;
+    private List<Reference> structured;
+    private List<List<Candidate>> stringCandidates;
+    private List<List<Candidate>> structuredCandidates;
+    private CandidateValidator validator;
+    private int reference = 0;
+    private int response = 0;
+    private int candidate = 0;
+
+    @Setup
+    public void setUp() {
+        strings = BenchmarkFixtures.references(
+                BenchmarkFixtures.STRING_REFERENCES);
+        structured = BenchmarkFixtures.references(
+                BenchmarkFixtures.STRUCTURED_REFERENCES);
+        stringCandidates = BenchmarkFixtures.candidates(
+                BenchmarkFixtures.UNSTRUCTURED_RESPONSES);
+        structuredCandidates = BenchmarkFixtures.candidates(
+                BenchmarkFixtures.STRUCTURED_RESPONSES);
+        validator = new CandidateValidator();
+    }
+
+    private Reference next(List<Reference> references) {
+        reference = (reference + 1) % references.size();
+        return references.get(reference);
+    }
+
+    private List<Candidate> nextResponse(List<List<Candidate>> responses) {
+        response = (response + 1) % responses.size();
+        return responses.get(response);
+    }
+
+    private Candidate nextCandidate(List<List<Candidate>> responses) {
+        List<Candidate> candidates = nextResponse(responses);
+        candidate = (candidate + 1) % candidates.size();
+        return candidates.get(candidate);
+    }
+
+    @Benchmark
+    public double stringValidationSimilarity() {
+        return nextCandidate(stringCandidates)
+                .getStringValidationSimilarity(next(strings));
+    }
+
+    @Benchmark
+    public double structuredValidationSimilarity() {
+        return nextCandidate(structuredCandidates)
+                .getStructuredValidationSimilarity(next(structured));
+    }
+
+    @Benchmark
+    public Candidate chooseStringCandidate() {
+        return validator.chooseCandidate(next(strings),
+                nextResponse(stringCandidates),
+                MatchRequest.DEFAULT_UNSTR_MIN_SCORE);
+    }
+
+    @Benchmark
+    public Candidate chooseStructuredCandidate() {
+        return validator.chooseCandidate(next(structured),
+                nextResponse(structuredCandidates),
+                MatchRequest.DEFAULT_STR_MIN_SCORE);
+    }
+}
@@ -0,0 +1,177 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the work outstanding in a matcher. A request is admitted only if
+ * the references already outstanding and its own references stay within
+ * the maximum count, and if the estimated time to work off the references
+ * already outstanding stays within the maximum queue wait. Requests beyond
+ * the limits are rejected immediately with a {@link MatchRejectedException},
+ * instead of slowing down all the requests in progress. A request larger
+ * than the maximum count is still admitted when nothing else is
+ * outstanding, so that it can make progress.
+ * 
+ * The queue wait is estimated from the outstanding references, the average
+ * thread time spent on a reference by the recent requests, and the number
+ * of threads serving the requests.
+ */
+public class AdmissionController {
+    
+    /**
+     * Weight of the latest request in the average reference time.
+     */
+    private static final double SMOOTHING = 0.2;
+    
+    private final long maxQueuedReferences;
+    private final long maxQueueWaitMs;
+    private final int parallelism;
+    private final AtomicLong queuedReferences = new AtomicLong();
+    private final AtomicLong maxObservedQueued = new AtomicLong();
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder acceptedReferences = new LongAdder();
+    private volatile double referenceMs = 0.;
+    
+    /**
+     * Create a controller.
+     * 
+     * @param maxQueuedReferences The maximum number of outstanding
+     * references, non-positive means no limit
+     * @param maxQueueWaitMs The maximum estimated queue wait in milliseconds,
+     * non-positive means no limit
+     * @param parallelism The number of threads serving the requests
+     */
+    public AdmissionController(long maxQueuedReferences, long maxQueueWaitMs,
+            int parallelism) {
+        this.maxQueuedReferences = maxQueuedReferences;
+        this.maxQueueWaitMs = maxQueueWaitMs;
+        this.parallelism = Math.max(1, parallelism);
+    }
+    
+    /**
+     * Admit a request, or reject it if the matcher is overloaded. Every
+     * admitted request must be released.
+     * 
+     * @param references The number of references of the request
+     * @throws MatchRejectedException if the request is rejected
+     */
+    public void admit(int references) {
+        long estimatedWaitMs = getEstimatedWaitMs();
+        if (maxQueueWaitMs > 0 && estimatedWaitMs > maxQueueWaitMs) {
+            rejectedCount.increment();
+            throw new MatchRejectedException(String.format("Matcher "
+                    + "overloaded, estimated queue wait %d ms exceeds %d ms",
+                    estimatedWaitMs, maxQueueWaitMs),
+                    estimatedWaitMs - maxQueueWaitMs);
+        }
+        while (true) {
+            long queued = queuedReferences.get();
+            if (maxQueuedReferences > 0 && queued > 0
+                    && queued + references > maxQueuedReferences) {
+                rejectedCount.increment();
+                throw new MatchRejectedException(String.format("Matcher "
+                        + "overloaded, %d references queued, limit is %d",
+                        queued, maxQueuedReferences),
+                        Math.max(1, getEstimatedWaitMs()));
+            }
+            if (queuedReferences.compareAndSet(queued, queued + references)) {
+                updateMax(queued + references);
+                break;
+            }
+        }
+        acceptedCount.increment();
+        acceptedReferences.add(references);
+    }
+    
+    /**
+     * Release an admitted request.
+     * 
+     * @param references The number of references of the request
+     * @param threads The number of threads the request was matched with
+     * @param elapsedNanos The time the request took
+     */
+    public void release(int references, int threads, long elapsedNanos) {
+        queuedReferences.addAndGet(-references);
+        if (references > 0) {
+            double sample = (double) TimeUnit.NANOSECONDS.toMicros(
+                    elapsedNanos) / 1000 * Math.min(threads, references)
+                    / references;
+            double current = referenceMs;
+            referenceMs = (current == 0.) ? sample :
+                    current + SMOOTHING * (sample - current);
+        }
+    }
+    
+    private void updateMax(long queued) {
+        long max = maxObservedQueued.get();
+        while (queued > max && !maxObservedQueued.compareAndSet(max, queued)) {
+            max = maxObservedQueued.get();
+        }
+    }
+    
+    /**
+     * Get the estimated time to work off the references outstanding.
+     * 
+     * @return Time in milliseconds
+     */
+    public long getEstimatedWaitMs() {
+        return (long) (queuedReferences.get() * referenceMs / parallelism);
+    }
+    
+    /**
+     * Get the number of references outstanding.
+     * 
+     * @return The number of references
+     */
+    public long getQueuedReferences() {
+        return queuedReferences.get();
+    }
+    
+    /**
+     * Get the maximum number of references outstanding at once so far.
+     * 
+     * @return The number of references
+     */
+    public long getMaxQueuedReferences() {
+        return maxObservedQueued.get();
+    }
+    
+    /**
+     * Get the number of requests admitted.
+     * 
+     * @return The number of requests
+     */
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+    
+    /**
+     * Get the number of references of the requests admitted.
+     * 
+     * @return The number of references
+     */
+    public long getAcceptedReferences() {
+        return acceptedReferences.sum();
+    }
+    
+    /**
+     * Get the number of requests rejected.
+     * 
+     * @return The number of requests
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("accepted: %d (%d references), rejected: %d, "
+                + "queued: %d (max %d), estimated wait: %d ms",
+                getAcceptedCount(), getAcceptedReferences(),
+                getRejectedCount(), getQueuedReferences(),
+                getMaxQueuedReferences(), getEstimatedWaitMs());
+    }
+}
@@ -0,0 +1,38 @@
+package org.crossref.refmatching;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning a single API search for candidates. Only
+ * created through {@link MatchEvents}.
+ */
+@Name(MatchEvents.NAME_PREFIX + "CandidateSearch")
+@Label("Candidate Search")
+@Category(MatchEvents.CATEGORY)
+@Description("API search for the candidates of a reference")
+@StackTrace(false)
+class CandidateSearchEvent extends Event {
+
+    @Label("Reference Type")
+    String referenceType;
+
+    @Label("Rows")
+    @Description("The number of search results requested")
+    int rows;
+
+    @Label("Query Length")
+    int queryLength;
+
+    @Label("Results")
+    @Description("The number of search results returned")
+    int results;
+
+    @Label("Failed")
+    @Description("Whether the API call failed")
+    boolean failed;
+}
@@ -9,7 +9,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.crossref.common.rest.api.ICrossRefApiClient;
 import org.crossref.common.utils.LogUtils;
-import org.crossref.common.utils.Timer;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -22,10 +21,24 @@ import org.json.JSONObject;
 public class CandidateSelector {
     
     private final ICrossRefApiClient apiClient;
+    private final MatcherMetrics metrics;
     private final Logger log = LogUtils.getLogger();
     
     public CandidateSelector(ICrossRefApiClient apiClient) {
+        this(apiClient, new MatcherMetrics());
+    }
+    
+    /**
+     * Create a selector recording the latencies of query building, API
+     * calls and response parsing.
+     * 
+     * @param apiClient CR API client implementation
+     * @param metrics The metrics to record into
+     */
+    public CandidateSelector(ICrossRefApiClient apiClient,
+            MatcherMetrics metrics) {
         this.apiClient = apiClient;
+        this.metrics = metrics;
     }
 
     /**
@@ -41,18 +54,80 @@ public class CandidateSelector {
      */
     public List<Candidate> findCandidates(Reference reference, int rows,
             double minScore, Map<String, String> headers) {
+        return findCandidates(reference, rows, minScore, headers,
+                Deadline.none());
+    }
+
+    /**
+     * Select candidate target items, unless the deadline has already expired.
+     * 
+     * @param reference The reference to match
+     * @param rows The number of search items to consider as candidates
+     * @param minScore The minimum relevance score to consider a search item
+     * a candidate
+     * @param headers Additional headers to pass in the search request
+     * @param deadline The deadline for the search
+     * 
+     * @return A list of candidates, empty if the search failed or the
+     * deadline expired before the search results were available
+     */
+    public List<Candidate> findCandidates(Reference reference, int rows,
+            double minScore, Map<String, String> headers, Deadline deadline) {
+        List<Candidate> candidates = searchCandidates(reference, rows,
+                minScore, headers, deadline);
+        return (candidates == null) ? new ArrayList<>() : candidates;
+    }
+
+    /**
+     * Select candidate target items, telling a failed search apart from
+     * a search without results.
+     * 
+     * @param reference The reference to match
+     * @param rows The number of search items to consider as candidates
+     * @param minScore The minimum relevance score to consider a search item
+     * a candidate
+     * @param headers Additional headers to pass in the search request
+     * @param deadline The deadline for the search
+     * 
+     * @return A list of candidates, empty if the deadline expired before
+     * the search results were available, or null if the search failed
+     */
+    List<Candidate> searchCandidates(Reference reference, int rows,
+            double minScore, Map<String, String> headers, Deadline deadline) {
+        if (deadline.isExpired()) {
+            return new ArrayList<>();
+        }
+        
         String query = getQuery(reference);
         
         if (StringUtils.isEmpty(query)) {
             return new ArrayList<>();
         }
 
-        JSONArray candidates = searchWorks(query, rows, headers);
+        JSONArray candidates = searchWorks(query, rows, headers,
+                reference.getType());
+        if (candidates == null) {
+            return null;
+        }
+        if (deadline.isExpired()) {
+            log.debug("Deadline expired during API search for: " + query);
+            return new ArrayList<>();
+        }
         return selectCandidates(query, candidates, minScore);
     }
 
-    private JSONArray searchWorks(String refString, int rows,
-            Map<String, String> headers) {
+    /**
+     * Search the API for the items matching a query.
+     * 
+     * @param refString The query
+     * @param rows The number of items to get
+     * @param headers Additional headers to pass in the search request
+     * @param type The type of the reference searched
+     * @return Search items, or null if the search failed
+     */
+    JSONArray searchWorks(String refString, int rows,
+            Map<String, String> headers, ReferenceType type) {
+        Object event = MatchEvents.beginSearch();
         try {
             log.debug("API search for: " + refString);
         
@@ -61,27 +136,30 @@ public class CandidateSelector {
             args.put("query.bibliographic", refString);
             
             // Invoke client for items
-            Timer timer = new Timer();
-            timer.start();
+            long start = System.nanoTime();
             JSONArray arr = apiClient.getWorks(args, headers);
-            timer.stop();
-            
-            log.debug("apiClient.getWorks: " + timer.elapsedMs()); 
+            metrics.getApiCall().recordSince(start);
+            MatchEvents.endSearch(event, type, rows, refString.length(),
+                    (arr == null) ? 0 : arr.length(), false);
             
-            return arr;
+            return (arr == null) ? new JSONArray() : arr;
             
         } catch (IOException ex) {
+            metrics.recordApiFailure();
+            MatchEvents.endSearch(event, type, rows, refString.length(), 0,
+                    true);
             log.error("Error calling api client: " + ex.getMessage(), ex);
-            return new JSONArray();
+            return null;
         }
     }
 
-    private List<Candidate> selectCandidates(String refString, JSONArray items,
+    List<Candidate> selectCandidates(String refString, JSONArray items,
             double minScore) {
         List<Candidate> candidates = new ArrayList<>();
 	if (items == null) {
 	    return candidates;
 	}
+        long start = System.nanoTime();
         for (int i = 0; i < items.length(); i++) {
             JSONObject item = items.getJSONObject(i);
             if (candidates.isEmpty()) {
@@ -92,12 +170,16 @@ public class CandidateSelector {
                 break;
             }
         }
+        metrics.getResponseParse().recordSince(start);
         return candidates;
     }
 
-    private String getQuery(Reference reference) {
+    String getQuery(Reference reference) {
+        long start = System.nanoTime();
         if (reference.getType().equals(ReferenceType.UNSTRUCTURED)) {
-            return reference.getFormattedString();
+            String query = reference.getFormattedString();
+            metrics.getQueryBuild().recordSince(start);
+            return query;
         }
         StringBuilder sb = new StringBuilder(500);
         for (String key : new String[]{"author", "article-title", "journal-title",
@@ -110,7 +192,9 @@ public class CandidateSelector {
             sb.append(reference.getFieldValue(key) == null ?
                     "" : reference.getFieldValue(key));
         }
-        return sb.toString().replaceAll(" +", " ").trim();
+        String query = sb.toString().replaceAll(" +", " ").trim();
+        metrics.getQueryBuild().recordSince(start);
+        return query;
     }
     
 }
\ No newline at end of file
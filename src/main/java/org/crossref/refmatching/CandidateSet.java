@@ -0,0 +1,151 @@
+package org.crossref.refmatching;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The recorded candidates of a reference, for re-scoring them offline under
+ * different thresholds. Every search pass keeps all the search items in the
+ * order returned, with their relevance score normalized by the query length
+ * and their validation similarity to the reference. Neither depends on the
+ * thresholds, so choosing the candidate for a combination of thresholds
+ * needs no search and no validation.
+ */
+public class CandidateSet {
+    
+    /**
+     * The threshold a search pass is validated with.
+     */
+    public enum PassThreshold {
+        CANDIDATE,
+        UNSTRUCTURED,
+        STRUCTURED;
+    }
+    
+    private final int ordinal;
+    private final ReferenceType type;
+    private final List<Pass> passes = new ArrayList<>(2);
+    
+    /**
+     * The search items of a single search pass.
+     */
+    private static class Pass {
+        private final PassThreshold threshold;
+        private final double[] normalizedScores;
+        private final double[] similarities;
+        private final String[] dois;
+
+        private Pass(PassThreshold threshold, double[] normalizedScores,
+                double[] similarities, String[] dois) {
+            this.threshold = threshold;
+            this.normalizedScores = normalizedScores;
+            this.similarities = similarities;
+            this.dois = dois;
+        }
+    }
+    
+    public CandidateSet(int ordinal, ReferenceType type) {
+        this.ordinal = ordinal;
+        this.type = type;
+    }
+    
+    /**
+     * Add the search items of a search pass.
+     * 
+     * @param threshold The threshold the pass is validated with
+     * @param normalizedScores Relevance scores divided by the query length
+     * @param similarities Validation similarities to the reference
+     * @param dois Item DOIs
+     */
+    public void addPass(PassThreshold threshold, double[] normalizedScores,
+            double[] similarities, String[] dois) {
+        passes.add(new Pass(threshold, normalizedScores, similarities, dois));
+    }
+    
+    public int getOrdinal() {
+        return ordinal;
+    }
+    
+    public ReferenceType getType() {
+        return type;
+    }
+    
+    /**
+     * Choose the DOI the reference would be matched to under the given
+     * thresholds, following the candidate selection and validation rules
+     * of the matcher.
+     * 
+     * @param candidateMinScore Candidate selection threshold
+     * @param unstructuredMinScore Unstructured validation threshold
+     * @param structuredMinScore Structured validation threshold
+     * @return The DOI, or null if the reference would not be matched
+     */
+    public String chooseDOI(double candidateMinScore,
+            double unstructuredMinScore, double structuredMinScore) {
+        String doi = null;
+        double bestSimilarity = 0.;
+        for (Pass pass : passes) {
+            if (pass.similarities.length == 0) {
+                continue;
+            }
+            // The first item is always a candidate, the following ones
+            // while their normalized score reaches the threshold
+            int best = 0;
+            for (int i = 1; i < pass.similarities.length
+                    && pass.normalizedScores[i] >= candidateMinScore; i++) {
+                if (pass.similarities[i] > pass.similarities[best]) {
+                    best = i;
+                }
+            }
+            double minScore = (pass.threshold == PassThreshold.CANDIDATE) ?
+                    candidateMinScore :
+                    (pass.threshold == PassThreshold.UNSTRUCTURED) ?
+                            unstructuredMinScore : structuredMinScore;
+            double similarity = pass.similarities[best];
+            if (similarity >= minScore
+                    && (doi == null || similarity > bestSimilarity)) {
+                doi = pass.dois[best];
+                bestSimilarity = similarity;
+            }
+        }
+        return doi;
+    }
+    
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(ordinal);
+        out.writeBoolean(type == ReferenceType.STRUCTURED);
+        out.writeByte(passes.size());
+        for (Pass pass : passes) {
+            out.writeByte(pass.threshold.ordinal());
+            out.writeInt(pass.similarities.length);
+            for (int i = 0; i < pass.similarities.length; i++) {
+                out.writeDouble(pass.normalizedScores[i]);
+                out.writeDouble(pass.similarities[i]);
+                out.writeUTF(pass.dois[i]);
+            }
+        }
+    }
+    
+    static CandidateSet read(DataInputStream in) throws IOException {
+        CandidateSet set = new CandidateSet(in.readInt(), in.readBoolean() ?
+                ReferenceType.STRUCTURED : ReferenceType.UNSTRUCTURED);
+        int passCount = in.readByte();
+        for (int p = 0; p < passCount; p++) {
+            PassThreshold threshold = PassThreshold.values()[in.readByte()];
+            int count = in.readInt();
+            double[] normalizedScores = new double[count];
+            double[] similarities = new double[count];
+            String[] dois = new String[count];
+            for (int i = 0; i < count; i++) {
+                normalizedScores[i] = in.readDouble();
+                similarities[i] = in.readDouble();
+                dois[i] = in.readUTF();
+            }
+            set.addPass(threshold, normalizedScores, similarities, dois);
+        }
+        return set;
+    }
+}
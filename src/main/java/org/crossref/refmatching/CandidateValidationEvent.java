@@ -0,0 +1,37 @@
+package org.crossref.refmatching;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the validation of the candidates of one
+ * search. Only created through {@link MatchEvents}.
+ */
+@Name(MatchEvents.NAME_PREFIX + "CandidateValidation")
+@Label("Candidate Validation")
+@Category(MatchEvents.CATEGORY)
+@Description("Validation of the candidates of one search")
+@StackTrace(false)
+class CandidateValidationEvent extends Event {
+
+    @Label("Reference Type")
+    String referenceType;
+
+    @Label("Candidates")
+    int candidates;
+
+    @Label("Scored")
+    @Description("The number of candidates scored before the deadline")
+    int scored;
+
+    @Label("Best Score")
+    double bestScore;
+
+    @Label("Accepted")
+    @Description("Whether the best candidate reached the minimum score")
+    boolean accepted;
+}
@@ -1,8 +1,6 @@
 package org.crossref.refmatching;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * Class for selecting a single target document from a list of candidates.
@@ -11,23 +9,70 @@ import java.util.stream.IntStream;
  */
 public class CandidateValidator {
 
+    private final MatcherMetrics metrics;
+    
+    public CandidateValidator() {
+        this(new MatcherMetrics());
+    }
+    
+    /**
+     * Create a validator recording the validation latencies and the number
+     * of candidates scored.
+     * 
+     * @param metrics The metrics to record into
+     */
+    public CandidateValidator(MatcherMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
     public Candidate chooseCandidate(Reference reference,
             List<Candidate> candidates, double minScore) {
+        return chooseCandidate(reference, candidates, minScore,
+                Deadline.none());
+    }
+
+    /**
+     * Select the best candidate, validating candidates in the order given
+     * until the deadline expires. If it expires, the best of the candidates
+     * validated so far is returned.
+     * 
+     * @param reference The reference to match
+     * @param candidates The candidates
+     * @param minScore The minimum validation score
+     * @param deadline The deadline for the validation
+     * 
+     * @return The best candidate, or null if none scores at least minScore
+     */
+    public Candidate chooseCandidate(Reference reference,
+            List<Candidate> candidates, double minScore, Deadline deadline) {
         if (candidates.isEmpty()) {
             return null;
         }
         
-        List<Double> scores = candidates.stream()
-                .map(c -> c.getValidationSimilarity(reference))
-                .collect(Collectors.toList());
-        
-        int bestIndex = IntStream.range(0, scores.size())
-                .reduce(0, (a, b) -> (scores.get(a) >= scores.get(b)) ? a : b);
+        long start = System.nanoTime();
+        Object event = MatchEvents.beginValidation();
+        int bestIndex = -1;
+        double bestScore = 0.;
+        int scored = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i > 0 && deadline.isExpired()) {
+                break;
+            }
+            double score = candidates.get(i).getValidationSimilarity(reference);
+            scored++;
+            if (bestIndex < 0 || score > bestScore) {
+                bestIndex = i;
+                bestScore = score;
+            }
+        }
         
-        candidates.get(bestIndex).setValidationScore(scores.get(bestIndex));
+        candidates.get(bestIndex).setValidationScore(bestScore);
+        metrics.recordCandidatesScored(scored);
+        metrics.getValidation().recordSince(start);
+        MatchEvents.endValidation(event, reference.getType(),
+                candidates.size(), scored, bestScore, bestScore >= minScore);
         
-        return (scores.get(bestIndex) >= minScore)
-                ? candidates.get(bestIndex) : null;
+        return (bestScore >= minScore) ? candidates.get(bestIndex) : null;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+package org.crossref.refmatching;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A progress journal of a long matching run. The link of every reference
+ * matched to completion is appended to the journal, which is synced to disk
+ * periodically, so that a run interrupted by a crash or a deploy can be
+ * resumed without matching the journaled references again.
+ *
+ * The journal is a text file with a header line holding the number of
+ * references in the input and a fingerprint of the input and the matcher
+ * configuration, so that a journal is never resumed against a different
+ * input, shard or configuration. It is followed by one tab-separated line
+ * per matched reference: the ordinal of the reference in the input, the
+ * score and the DOI, which is empty for unmatched references. References
+ * that timed out or were cancelled are not journaled. A torn last line left
+ * by a crash is dropped when the journal is resumed.
+ */
+public class CheckpointJournal implements Closeable {
+
+    public static final long DEFAULT_SYNC_INTERVAL_MS = 10000;
+    private static final String HEADER = "refmatching-checkpoint-v1";
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final String inputKey;
+    private final long syncIntervalMs;
+    private final FileOutputStream fileOut;
+    private final Writer writer;
+    private int referenceCount = -1;
+    private String fingerprint = null;
+    private int journaledCount = 0;
+    private long lastSyncAt = System.currentTimeMillis();
+
+    /**
+     * A journaled link.
+     */
+    private static class Entry {
+        private final String doi;
+        private final double score;
+
+        private Entry(String doi, double score) {
+            this.doi = doi;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Open a journal.
+     *
+     * @param file Journal file
+     * @param resume Whether to resume from an existing journal, otherwise
+     * the file is overwritten
+     * @param syncIntervalMs The interval of syncing the journal to disk
+     * @param inputKey A description of the input, such as the digest of the
+     * input bytes and the shard, see {@link #digest(InputStream)}
+     * @throws IOException if the journal cannot be read or written
+     */
+    public CheckpointJournal(File file, boolean resume, long syncIntervalMs,
+            String inputKey) throws IOException {
+        this.inputKey = inputKey;
+        this.syncIntervalMs = syncIntervalMs;
+        if (resume && file.exists()) {
+            load(file);
+        }
+        this.fileOut = new FileOutputStream(file, resume);
+        this.writer = new BufferedWriter(new OutputStreamWriter(fileOut,
+                StandardCharsets.UTF_8));
+    }
+
+    private void load(File file) throws IOException {
+        byte[] bytes;
+        int end;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            // Drop the torn line a crash may have left at the end
+            end = bytes.length;
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            raf.setLength(end);
+        }
+        if (end == 0) {
+            return;
+        }
+        String[] lines = new String(bytes, 0, end, StandardCharsets.UTF_8)
+                .split("\n");
+        String[] header = lines[0].split("\t");
+        if (header.length != 3 || !HEADER.equals(header[0])) {
+            throw new IOException("Not a checkpoint journal: " + file);
+        }
+        try {
+            referenceCount = Integer.parseInt(header[1]);
+        } catch (NumberFormatException ex) {
+            throw malformed(file, 1, ex);
+        }
+        fingerprint = header[2];
+        for (int i = 1; i < lines.length; i++) {
+            try {
+                String[] fields = lines[i].split("\t", 3);
+                int ordinal = Integer.parseInt(fields[0]);
+                if (ordinal < 0 || ordinal >= referenceCount) {
+                    throw malformed(file, i + 1, null);
+                }
+                entries.put(ordinal, new Entry(
+                        fields[2].isEmpty() ? null : fields[2],
+                        Double.parseDouble(fields[1])));
+            } catch (ArrayIndexOutOfBoundsException
+                    | NumberFormatException ex) {
+                throw malformed(file, i + 1, ex);
+            }
+        }
+    }
+    
+    private static IOException malformed(File file, int line, Exception ex) {
+        return new IOException(String.format(
+                "Malformed checkpoint journal %s at line %d", file, line), ex);
+    }
+    
+    /**
+     * Compute the hex digest of an input, to describe the input of a
+     * journal.
+     *
+     * @param in Input stream, read to the end but not closed
+     * @return Hex digest
+     * @throws IOException if the input cannot be read
+     */
+    public static String digest(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[65536];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            digest.update(buffer, 0, read);
+        }
+        return toHex(digest.digest());
+    }
+    
+    private static String fingerprint(String inputKey, String configKey) {
+        return toHex(newDigest().digest((inputKey + "\n" + configKey)
+                .getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private static String toHex(byte[] digest) {
+        return String.format("%032x", new BigInteger(1, digest));
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support MD5
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Get the number of references journaled in the previous runs.
+     *
+     * @return The number of references
+     */
+    public int getRestoredCount() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of references journaled in this run.
+     *
+     * @return The number of references
+     */
+    public synchronized int getJournaledCount() {
+        return journaledCount;
+    }
+
+    /**
+     * Record the links journaled in the previous runs, and start a new
+     * journal if there were none. A journal written for a different input,
+     * shard or matcher configuration is rejected.
+     *
+     * @param references The references of the request
+     * @param links Link collector of the request
+     * @param configKey Matcher configuration key of the request
+     */
+    synchronized void restore(List<ReferenceData> references,
+            LinkCollector links, String configKey) {
+        String expected = fingerprint(inputKey, configKey);
+        if (referenceCount < 0) {
+            referenceCount = references.size();
+            fingerprint = expected;
+            try {
+                writer.write(HEADER + "\t" + referenceCount + "\t"
+                        + fingerprint + "\n");
+                sync();
+            } catch (IOException ex) {
+                throw new MatchException("Error writing checkpoint journal",
+                        ex);
+            }
+        } else if (!expected.equals(fingerprint)) {
+            throw new MatchException("Checkpoint journal was written for a "
+                    + "different input, shard or matcher configuration");
+        } else if (referenceCount != references.size()) {
+            throw new MatchException(String.format("Checkpoint journal was "
+                    + "written for %d references, the input has %d",
+                    referenceCount, references.size()));
+        }
+        for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+            int ordinal = entry.getKey();
+            links.record(ordinal, new ReferenceLink(references.get(ordinal),
+                    entry.getValue().doi, entry.getValue().score,
+                    MatchStatus.COMPLETED, MatchSource.CHECKPOINT,
+                    DegradationLevel.NORMAL));
+        }
+    }
+
+    /**
+     * Wrap a link collector so that the links of the references matched to
+     * completion are journaled.
+     *
+     * @param links Link collector of the request
+     * @return Journaling link collector
+     */
+    LinkCollector journaling(LinkCollector links) {
+        return new LinkCollector() {
+            @Override
+            public void record(int ordinal, ReferenceLink link) {
+                links.record(ordinal, link);
+                if (link != null && link.getStatus() == MatchStatus.COMPLETED) {
+                    append(ordinal, link);
+                }
+            }
+
+            @Override
+            public boolean isRecorded(int ordinal) {
+                return links.isRecorded(ordinal);
+            }
+
+            @Override
+            public MatchResponse toResponse() {
+                return links.toResponse();
+            }
+        };
+    }
+
+    private synchronized void append(int ordinal, ReferenceLink link) {
+        try {
+            writer.write(ordinal + "\t" + link.getScore() + "\t"
+                    + (link.getDOI() == null ? "" : link.getDOI()) + "\n");
+            journaledCount++;
+            if (System.currentTimeMillis() - lastSyncAt >= syncIntervalMs) {
+                sync();
+            }
+        } catch (IOException ex) {
+            throw new MatchException("Error writing checkpoint journal", ex);
+        }
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        fileOut.getChannel().force(false);
+        lastSyncAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Sync the journal to disk and close it.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            writer.close();
+        }
+    }
+}
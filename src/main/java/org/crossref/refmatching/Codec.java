@@ -0,0 +1,235 @@
+package org.crossref.refmatching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+/**
+ * Represents the compression formats of input and output files. Compressed
+ * input is detected from its leading magic bytes, so files can be read
+ * without knowing how they were written.
+ * 
+ * NONE - plain file
+ * GZIP - gzip, best compression ratio
+ * LZ4 - LZ4 frame format, much faster to compress and decompress
+ * ZSTD - Zstandard, detected on input but not supported
+ */
+public enum Codec {
+    NONE("none", "", new byte[0]),
+    GZIP("gzip", ".gz", new byte[] {0x1f, (byte) 0x8b}),
+    LZ4("lz4", ".lz4", new byte[] {0x04, 0x22, 0x4d, 0x18}),
+    ZSTD("zstd", ".zst", new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd});
+    
+    /**
+     * Size of the file buffers, large enough to keep the disk reads and
+     * writes sequential.
+     */
+    static final int BUFFER_SIZE = 1 << 20;
+    private static final int CODEC_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_MAGIC_LENGTH = 4;
+    private static final Map<String, Codec> codecsByCode = new HashMap<>();
+    private final String code;
+    private final String extension;
+    private final byte[] magic;
+    
+    static {
+        for (Codec codec : values()) {
+            codecsByCode.put(codec.getCode(), codec);
+        }
+    }
+    
+    /**
+     * Construct the enum.
+     * 
+     * @param code User specified code
+     * @param extension File name extension
+     * @param magic Leading bytes of the compressed data
+     */
+    Codec(String code, String extension, byte[] magic) {
+        this.code = code;
+        this.extension = extension;
+        this.magic = magic;
+    }
+    
+    /**
+     * Fetch a codec by its code.
+     * 
+     * @param code Code to find
+     * 
+     * @return Found codec, or null if not found
+     */
+    public static Codec getByCode(String code) {
+        return codecsByCode.get(code);
+    }
+    
+    /**
+     * Get the internal code associated with the enum.
+     * 
+     * @return A user defined string code
+     */
+    public String getCode() {
+        return this.code;
+    }
+    
+    /**
+     * Get the codec implied by the extension of a file name.
+     * 
+     * @param fileName File name
+     * @return The codec, NONE if the extension is not recognized
+     */
+    public static Codec getByFileName(String fileName) {
+        for (Codec codec : values()) {
+            if (codec != NONE && fileName.endsWith(codec.extension)) {
+                return codec;
+            }
+        }
+        return NONE;
+    }
+    
+    /**
+     * Get the codec of a stream from its leading bytes. The stream is reset
+     * to its start.
+     * 
+     * @param in Input stream supporting mark
+     * @return The codec, NONE if the data is not compressed
+     * @throws IOException if reading fails
+     */
+    public static Codec detect(InputStream in) throws IOException {
+        byte[] header = new byte[MAX_MAGIC_LENGTH];
+        in.mark(MAX_MAGIC_LENGTH);
+        int length = 0;
+        int read;
+        while (length < header.length
+                && (read = in.read(header, length, header.length - length))
+                        > 0) {
+            length += read;
+        }
+        in.reset();
+        
+        for (Codec codec : values()) {
+            if (codec != NONE && codec.magic.length <= length
+                    && startsWith(header, codec.magic)) {
+                return codec;
+            }
+        }
+        return NONE;
+    }
+    
+    /**
+     * Open a file for buffered reading, decompressing it if needed.
+     * 
+     * @param file Input file
+     * @return Decompressed input stream
+     * @throws IOException if the file cannot be read, or is compressed
+     * with an unsupported codec
+     */
+    public static InputStream openInput(File file) throws IOException {
+        InputStream in = new BufferedInputStream(
+                Channels.newInputStream(FileChannel.open(file.toPath(),
+                        StandardOpenOption.READ)),
+                BUFFER_SIZE);
+        try {
+            return detect(in).decompress(in);
+        } catch (IOException | RuntimeException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Open a file for buffered writing, compressing it with the codec
+     * implied by its extension.
+     * 
+     * @param file Output file
+     * @return Compressing output stream
+     * @throws IOException if the file cannot be written
+     */
+    public static OutputStream openOutput(File file) throws IOException {
+        return openOutput(file, getByFileName(file.getName()));
+    }
+    
+    /**
+     * Open a file for buffered writing, compressing it with the given codec.
+     * 
+     * @param file Output file
+     * @param codec The codec
+     * @return Compressing output stream
+     * @throws IOException if the file cannot be written, or the codec is
+     * not supported
+     */
+    public static OutputStream openOutput(File file, Codec codec)
+            throws IOException {
+        OutputStream out = new BufferedOutputStream(
+                Channels.newOutputStream(FileChannel.open(file.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)),
+                BUFFER_SIZE);
+        try {
+            return codec.compress(out);
+        } catch (IOException | RuntimeException ex) {
+            out.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Wrap a stream with decompression.
+     * 
+     * @param in Compressed input
+     * @return Decompressed input
+     * @throws IOException if the codec is not supported
+     */
+    public InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, CODEC_BUFFER_SIZE);
+            case LZ4:
+                return new LZ4FrameInputStream(in);
+            case NONE:
+                return in;
+            default:
+                throw new IOException("Unsupported compression: " + code);
+        }
+    }
+    
+    /**
+     * Wrap a stream with compression.
+     * 
+     * @param out Output
+     * @return Compressing output
+     * @throws IOException if the codec is not supported
+     */
+    public OutputStream compress(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, CODEC_BUFFER_SIZE);
+            case LZ4:
+                return new LZ4FrameOutputStream(out);
+            case NONE:
+                return out;
+            default:
+                throw new IOException("Unsupported compression: " + code);
+        }
+    }
+    
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,258 @@
+package org.crossref.refmatching;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+
+/**
+ * Match response storing the results column-wise, for very large batches.
+ * Results are indexed by the input ordinal of the reference. DOIs are
+ * dictionary-encoded, so every distinct DOI is stored once, and scores,
+ * statuses and provenance are kept in primitive arrays. No link objects are
+ * retained, and neither is the reference list of the request: raw
+ * references are kept as the position of their slice in the input, and
+ * only the other references are kept as objects. Reference data and link
+ * objects are only created on demand, by {@link #getReferenceData(int)} and
+ * {@link #getMatchedLinks()}.
+ */
+public class ColumnarMatchResponse extends MatchResponse
+        implements LinkCollector {
+
+    private static final int NO_DOI = -1;
+    private static final byte NOT_RECORDED = 0;
+    private static final MatchStatus[] STATUSES = MatchStatus.values();
+    private static final MatchSource[] SOURCES = MatchSource.values();
+    private static final DegradationLevel[] LEVELS =
+            DegradationLevel.values();
+
+    private static final int NOT_RAW = -1;
+    private static final ReferenceType[] TYPES = ReferenceType.values();
+
+    private final List<ByteBuffer> inputs = new ArrayList<>();
+    /**
+     * Input buffer index, or NOT_RAW for the references kept as objects.
+     */
+    private final int[] inputIds;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final byte[] types;
+    private final ReferenceData[] retained;
+    private final int[] dois;
+    private final double[] scores;
+    /**
+     * Status ordinal plus one, zero for references not recorded.
+     */
+    private final byte[] statuses;
+    private final byte[] sources;
+    private final byte[] levels;
+    private final Map<String, Integer> doiIds = new HashMap<>();
+    private final List<String> doiDictionary = new ArrayList<>();
+    private boolean sealed = false;
+
+    public ColumnarMatchResponse(MatchRequest request) {
+        super(request);
+        List<ReferenceData> references = request.getReferences();
+        int size = references.size();
+        this.inputIds = new int[size];
+        this.offsets = new int[size];
+        this.lengths = new int[size];
+        this.types = new byte[size];
+        ReferenceData[] objects = null;
+        Map<ByteBuffer, Integer> ids = new IdentityHashMap<>();
+        for (int i = 0; i < size; i++) {
+            ReferenceData data = references.get(i);
+            if (data.isRaw() && !data.hasOptions()) {
+                inputIds[i] = ids.computeIfAbsent(data.getRaw(), b -> {
+                    inputs.add(b);
+                    return inputs.size() - 1;
+                });
+                offsets[i] = data.getRawOffset();
+                lengths[i] = data.getRawLength();
+                types[i] = (byte) data.getType().ordinal();
+            } else {
+                if (objects == null) {
+                    objects = new ReferenceData[size];
+                }
+                inputIds[i] = NOT_RAW;
+                objects[i] = data;
+            }
+        }
+        this.retained = objects;
+        this.dois = new int[size];
+        this.scores = new double[size];
+        this.statuses = new byte[size];
+        this.sources = new byte[size];
+        this.levels = new byte[size];
+    }
+
+    @Override
+    public synchronized void record(int ordinal, ReferenceLink link) {
+        if (sealed) {
+            return;
+        }
+        String doi = (link == null) ? null : link.getDOI();
+        int id = NO_DOI;
+        if (doi != null) {
+            id = doiIds.computeIfAbsent(doi, d -> {
+                doiDictionary.add(d);
+                return doiDictionary.size() - 1;
+            });
+        }
+        dois[ordinal] = id;
+        scores[ordinal] = (link == null) ? 0.0 : link.getScore();
+        statuses[ordinal] = (byte) (1 + ((link == null) ?
+                MatchStatus.COMPLETED : link.getStatus()).ordinal());
+        sources[ordinal] = (byte) ((link == null) ? 0 :
+                link.getSource().ordinal());
+        levels[ordinal] = (byte) ((link == null) ? 0 :
+                link.getDegradationLevel().ordinal());
+        if (link != null && link.getReferenceData() != null) {
+            link.getReferenceData().release();
+        }
+    }
+
+    @Override
+    public synchronized boolean isRecorded(int ordinal) {
+        return statuses[ordinal] != NOT_RECORDED;
+    }
+
+    @Override
+    public synchronized MatchResponse toResponse() {
+        sealed = true;
+        return this;
+    }
+
+    /**
+     * Get the number of references in the response.
+     *
+     * @return The number of references
+     */
+    public int size() {
+        return statuses.length;
+    }
+
+    /**
+     * Get the reference at the given input ordinal. Raw references are
+     * created on every call, and parsed when first needed.
+     *
+     * @param ordinal The index of the reference in the request
+     * @return The reference data
+     */
+    public ReferenceData getReferenceData(int ordinal) {
+        if (inputIds[ordinal] == NOT_RAW) {
+            return retained[ordinal];
+        }
+        ReferenceData data = new ReferenceData(inputs.get(inputIds[ordinal]),
+                offsets[ordinal], lengths[ordinal], TYPES[types[ordinal]]);
+        data.setOrdinal(ordinal);
+        return data;
+    }
+
+    /**
+     * Get the DOI matched to the reference at the given input ordinal.
+     *
+     * @param ordinal The index of the reference in the request
+     * @return A DOI, or null if the reference was not matched
+     */
+    public synchronized String getDOI(int ordinal) {
+        int id = dois[ordinal];
+        return (id == NO_DOI || !isRecorded(ordinal)) ?
+                null : doiDictionary.get(id);
+    }
+
+    /**
+     * Get the dictionary code of the DOI matched to the reference at the
+     * given input ordinal. Codes index {@link #getDOIDictionary()}.
+     *
+     * @param ordinal The index of the reference in the request
+     * @return Dictionary code, or -1 if the reference was not matched
+     */
+    public synchronized int getDOICode(int ordinal) {
+        return isRecorded(ordinal) ? dois[ordinal] : NO_DOI;
+    }
+
+    /**
+     * Get the distinct matched DOIs, in the order of their first occurrence.
+     *
+     * @return DOI dictionary
+     */
+    public synchronized List<String> getDOIDictionary() {
+        return Collections.unmodifiableList(new ArrayList<>(doiDictionary));
+    }
+
+    /**
+     * Get the score of the reference at the given input ordinal.
+     *
+     * @param ordinal The index of the reference in the request
+     * @return Matching score
+     */
+    public synchronized double getScore(int ordinal) {
+        return scores[ordinal];
+    }
+
+    /**
+     * Get the status of the reference at the given input ordinal.
+     *
+     * @param ordinal The index of the reference in the request
+     * @return Match status, or null if the reference was not recorded
+     */
+    public synchronized MatchStatus getStatus(int ordinal) {
+        return isRecorded(ordinal) ? STATUSES[statuses[ordinal] - 1] : null;
+    }
+
+    /**
+     * Get the source of the result of the reference at the given input
+     * ordinal.
+     *
+     * @param ordinal The index of the reference in the request
+     * @return Match source
+     */
+    public synchronized MatchSource getSource(int ordinal) {
+        return SOURCES[sources[ordinal]];
+    }
+
+    /**
+     * Get the degradation level the reference at the given input ordinal
+     * was matched at.
+     *
+     * @param ordinal The index of the reference in the request
+     * @return Degradation level
+     */
+    public synchronized DegradationLevel getDegradationLevel(int ordinal) {
+        return LEVELS[levels[ordinal]];
+    }
+
+    /**
+     * Get the list of matched links. The links are created on every call,
+     * and are null for the references not recorded.
+     *
+     * @return A list of matched links
+     */
+    @Override
+    public synchronized List<ReferenceLink> getMatchedLinks() {
+        List<ReferenceLink> links = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            links.add(isRecorded(i) ? new ReferenceLink(getReferenceData(i),
+                    getDOI(i), scores[i], getStatus(i), getSource(i),
+                    getDegradationLevel(i)) : null);
+        }
+        return links;
+    }
+
+    @Override
+    public synchronized JSONArray toJSON() {
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < size(); i++) {
+            ReferenceData data = getReferenceData(i);
+            results.put(toJSON(data, getDOI(i), scores[i], getStatus(i),
+                    getSource(i), getDegradationLevel(i)));
+            data.release();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,111 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time after which matching work should stop, combined with a
+ * cancellation flag. Deadlines form a chain: a child deadline expires no
+ * later than its parent and is cancelled whenever its parent is cancelled.
+ * This is used to derive per-reference budgets from the overall request
+ * deadline, while keeping a single cancel handle for the whole request.
+ */
+public class Deadline {
+
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    private final Deadline parent;
+    private final long expiresAtNanos;
+    private volatile boolean cancelled = false;
+
+    private Deadline(Deadline parent, long expiresAtNanos) {
+        this.parent = parent;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * Create a deadline that never expires, but can still be cancelled.
+     *
+     * @return A new deadline
+     */
+    public static Deadline none() {
+        return new Deadline(null, NO_LIMIT);
+    }
+
+    /**
+     * Create a deadline expiring after the given time. A non-positive
+     * timeout means no time limit.
+     *
+     * @param timeoutMs Timeout in milliseconds
+     * @return A new deadline
+     */
+    public static Deadline after(long timeoutMs) {
+        return none().child(timeoutMs);
+    }
+
+    /**
+     * Create a child deadline expiring after the given time, or when this
+     * deadline expires, whichever comes first. A non-positive timeout means
+     * the child inherits the time limit of this deadline.
+     *
+     * @param timeoutMs Timeout in milliseconds
+     * @return A new deadline
+     */
+    public Deadline child(long timeoutMs) {
+        long expiresAt = expiresAtNanos;
+        if (timeoutMs > 0) {
+            long candidate = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            if (expiresAt == NO_LIMIT || candidate - expiresAt < 0) {
+                expiresAt = candidate;
+            }
+        }
+        return new Deadline(this, expiresAt);
+    }
+
+    /**
+     * Cancel this deadline and all of its children.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Check whether this deadline, or any of its parents, was cancelled.
+     *
+     * @return A flag
+     */
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /**
+     * Check whether this deadline has a time limit.
+     *
+     * @return A flag
+     */
+    public boolean isBounded() {
+        return expiresAtNanos != NO_LIMIT;
+    }
+
+    /**
+     * Check whether the time limit has passed or the deadline was cancelled.
+     *
+     * @return A flag
+     */
+    public boolean isExpired() {
+        return isCancelled() || remainingMs() <= 0;
+    }
+
+    /**
+     * Get the time left before this deadline expires.
+     *
+     * @return Remaining time in milliseconds, or Long.MAX_VALUE if unbounded
+     */
+    public long remainingMs() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(
+                Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+}
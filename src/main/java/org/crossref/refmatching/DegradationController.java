@@ -0,0 +1,255 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.crossref.common.utils.LogUtils;
+
+/**
+ * Chooses the {@link DegradationLevel} of a matcher from the observed API
+ * search latency and the number of references outstanding. The pressure on
+ * the matcher is the larger of the average latency relative to the latency
+ * threshold, and the outstanding references relative to the queue
+ * threshold. Each doubling of the pressure past 1 moves the matcher one
+ * level down the ladder, so that slightly less thorough results are
+ * returned quickly instead of timing out. A level is left only once the
+ * pressure drops well below the point it was entered at, so that the
+ * matcher does not flap between two levels.
+ *
+ * The level can also be forced, in which case the observations are still
+ * recorded but ignored.
+ */
+public class DegradationController {
+
+    /**
+     * Weight of the latest search in the average latency.
+     */
+    private static final double SMOOTHING = 0.1;
+
+    /**
+     * A level is left when the pressure drops below this fraction of the
+     * pressure it was entered at.
+     */
+    private static final double RECOVERY = 0.75;
+
+    private static final DegradationLevel[] LEVELS = DegradationLevel.values();
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final long latencyThresholdMs;
+    private final long queueThreshold;
+    private final AtomicLong queuedReferences = new AtomicLong();
+    private final AtomicLong levelChanges = new AtomicLong();
+    private double latencyMs = 0.;
+    private volatile DegradationLevel level = DegradationLevel.NORMAL;
+    private volatile DegradationLevel forcedLevel = null;
+
+    /**
+     * Create a controller.
+     *
+     * @param latencyThresholdMs The average search latency in milliseconds
+     * at which matching starts to degrade, non-positive means latency is
+     * ignored
+     * @param queueThreshold The number of outstanding references at which
+     * matching starts to degrade, non-positive means queue depth is ignored
+     */
+    public DegradationController(long latencyThresholdMs,
+            long queueThreshold) {
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.queueThreshold = queueThreshold;
+    }
+
+    /**
+     * Get the level references are currently matched at.
+     *
+     * @return Degradation level
+     */
+    public DegradationLevel getLevel() {
+        DegradationLevel forced = forcedLevel;
+        return (forced != null) ? forced : level;
+    }
+
+    /**
+     * Force the level, regardless of the observed load.
+     *
+     * @param forcedLevel Degradation level, or null to choose the level
+     * from the observed load
+     */
+    public void setForcedLevel(DegradationLevel forcedLevel) {
+        this.forcedLevel = forcedLevel;
+    }
+
+    /**
+     * Record the latency of an API search.
+     *
+     * @param elapsedNanos The time the search took
+     */
+    public void recordSearch(long elapsedNanos) {
+        double sample = TimeUnit.NANOSECONDS.toMicros(elapsedNanos) / 1000.;
+        synchronized (this) {
+            latencyMs = (latencyMs == 0.) ? sample :
+                    latencyMs + SMOOTHING * (sample - latencyMs);
+        }
+        update();
+    }
+
+    /**
+     * Record references entering the matcher.
+     *
+     * @param references The number of references
+     */
+    public void enter(int references) {
+        queuedReferences.addAndGet(references);
+        update();
+    }
+
+    /**
+     * Record references leaving the matcher.
+     *
+     * @param references The number of references
+     */
+    public void exit(int references) {
+        queuedReferences.addAndGet(-references);
+        update();
+    }
+
+    /**
+     * References of one request inside the matcher. Each reference leaves
+     * the matcher as soon as its link is recorded, and the ones left over
+     * leave when the entry is closed.
+     */
+    final class Entry implements AutoCloseable {
+        private final AtomicInteger remaining;
+
+        private Entry(int references) {
+            this.remaining = new AtomicInteger(references);
+        }
+
+        /**
+         * Wrap a link collector, so that references leave the matcher when
+         * their links are recorded.
+         *
+         * @param links The link collector
+         * @return A link collector updating the outstanding references
+         */
+        LinkCollector tracking(LinkCollector links) {
+            return new LinkCollector() {
+                @Override
+                public void record(int ordinal, ReferenceLink link) {
+                    links.record(ordinal, link);
+                    if (remaining.getAndUpdate(r -> Math.max(0, r - 1)) > 0) {
+                        exit(1);
+                    }
+                }
+
+                @Override
+                public boolean isRecorded(int ordinal) {
+                    return links.isRecorded(ordinal);
+                }
+
+                @Override
+                public MatchResponse toResponse() {
+                    return links.toResponse();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            int left = remaining.getAndSet(0);
+            if (left > 0) {
+                exit(left);
+            }
+        }
+    }
+
+    /**
+     * Record the references of a request entering the matcher.
+     *
+     * @param references The number of references
+     * @return The entry, to be closed when the request is finished
+     */
+    Entry entering(int references) {
+        enter(references);
+        return new Entry(references);
+    }
+
+    /**
+     * Get the current pressure on the matcher, 1 or more means degraded.
+     *
+     * @return Pressure
+     */
+    public synchronized double getPressure() {
+        double pressure = 0.;
+        if (latencyThresholdMs > 0) {
+            pressure = latencyMs / latencyThresholdMs;
+        }
+        if (queueThreshold > 0) {
+            pressure = Math.max(pressure,
+                    (double) queuedReferences.get() / queueThreshold);
+        }
+        return pressure;
+    }
+
+    private synchronized void update() {
+        double pressure = getPressure();
+        int current = level.ordinal();
+        int next = current;
+        while (next < LEVELS.length - 1 && pressure >= entryPressure(next + 1)) {
+            next++;
+        }
+        while (next > 0 && pressure < entryPressure(next) * RECOVERY) {
+            next--;
+        }
+        if (next != current) {
+            level = LEVELS[next];
+            levelChanges.incrementAndGet();
+            LOGGER.info(String.format("Matching degradation level changed "
+                    + "from %s to %s, pressure %.2f.", LEVELS[current].getCode(),
+                    level.getCode(), pressure));
+        }
+    }
+
+    /**
+     * The pressure a level is entered at: 1 for the first degraded level,
+     * doubling for every level further down.
+     */
+    private static double entryPressure(int ordinal) {
+        return (ordinal == 0) ? 0. : (double) (1 << (ordinal - 1));
+    }
+
+    /**
+     * Get the average API search latency.
+     *
+     * @return Latency in milliseconds
+     */
+    public synchronized double getLatencyMs() {
+        return latencyMs;
+    }
+
+    /**
+     * Get the number of references outstanding.
+     *
+     * @return The number of references
+     */
+    public long getQueuedReferences() {
+        return queuedReferences.get();
+    }
+
+    /**
+     * Get the number of times the observed level changed.
+     *
+     * @return The number of level changes
+     */
+    public long getLevelChanges() {
+        return levelChanges.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("level: %s, pressure: %.2f, latency: %.1f ms, "
+                + "queued: %d, level changes: %d", getLevel().getCode(),
+                getPressure(), getLatencyMs(), getQueuedReferences(),
+                getLevelChanges());
+    }
+}
@@ -0,0 +1,96 @@
+package org.crossref.refmatching;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents how thoroughly references are matched when the matcher is
+ * under load. Every level includes the steps of the levels below it.
+ *
+ * NORMAL - references are matched with the requested settings
+ * REDUCED_ROWS - fewer search results are requested and validated
+ * SINGLE_PASS - structured references are searched once, without the pass
+ * with the expanded journal abbreviation
+ * STALE_CACHE - results older than the maximum age of the result store are
+ * served instead of matching the references again
+ */
+public enum DegradationLevel {
+    NORMAL("normal"),
+    REDUCED_ROWS("reduced-rows"),
+    SINGLE_PASS("single-pass"),
+    STALE_CACHE("stale-cache");
+
+    /**
+     * The number of search results is divided by this at reduced levels.
+     */
+    private static final int ROWS_DIVISOR = 4;
+
+    private static final Map<String, DegradationLevel> levelsByCode =
+            new HashMap<>();
+    private final String code;
+
+    static {
+        for (DegradationLevel level : values()) {
+            levelsByCode.put(level.getCode(), level);
+        }
+    }
+
+    /**
+     * Construct the enum.
+     *
+     * @param code User specified code
+     */
+    DegradationLevel(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Fetch a level by its code.
+     *
+     * @param code Code to find
+     *
+     * @return Found level, or null if not found
+     */
+    public static DegradationLevel getByCode(String code) {
+        return levelsByCode.get(code);
+    }
+
+    /**
+     * Get the internal code associated with the enum.
+     *
+     * @return A user defined string code
+     */
+    public String getCode() {
+        return this.code;
+    }
+
+    /**
+     * Get the number of search results requested at this level.
+     *
+     * @param rows The requested number of search results
+     * @return The number of search results
+     */
+    public int getRows(int rows) {
+        return (compareTo(REDUCED_ROWS) >= 0) ?
+                Math.max(1, rows / ROWS_DIVISOR) : rows;
+    }
+
+    /**
+     * Check whether structured references are searched once at this level.
+     *
+     * @return A flag
+     */
+    public boolean isSinglePass() {
+        return compareTo(SINGLE_PASS) >= 0;
+    }
+
+    /**
+     * Check whether stale results are served at this level.
+     *
+     * @return A flag
+     */
+    public boolean isStaleServed() {
+        return compareTo(STALE_CACHE) >= 0;
+    }
+
+}
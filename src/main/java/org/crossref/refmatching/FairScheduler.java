@@ -0,0 +1,440 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import org.apache.log4j.Logger;
+import org.crossref.common.utils.LogUtils;
+
+/**
+ * A fixed pool of threads shared by match requests of several tenants and
+ * priority classes, with weighted fair queuing across them. Every tenant
+ * and priority class pair is a flow, whose weight is the weight of the
+ * priority class times the weight of the tenant. Tasks are run in the order
+ * of their virtual start times (start-time fair queuing): a task of a flow
+ * starts a 1/weight later in virtual time than the previous task of the
+ * same flow, and no earlier than the virtual time of the scheduler, so a
+ * flow that was idle is served right away, and busy flows share the threads
+ * in proportion to their weights.
+ *
+ * The matcher runs a request as a number of repeated tasks, each matching
+ * one reference at a time, see
+ * {@link #submitRepeated(String, Priority, BooleanSupplier)}. A large bulk
+ * request therefore gives up its threads after every reference, and
+ * interactive requests arriving in the meantime overtake it.
+ *
+ * Tasks submitted through the plain {@link java.util.concurrent.Executor}
+ * interface belong to the default tenant with the normal priority.
+ *
+ * Flows are created on demand, from tenant names supplied by the clients.
+ * Once there are more than {@value #MAX_IDLE_FLOWS} flows, the idle ones,
+ * with no queued tasks, are dropped together with their served counts.
+ */
+public class FairScheduler extends AbstractExecutorService {
+
+    static final int MAX_IDLE_FLOWS = 1024;
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Map<String, Flow> flows = new HashMap<>();
+    private final Map<String, Double> tenantWeights = new HashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final CountDownLatch terminated;
+    private double virtualTime = 0.;
+    private long sequence = 0;
+    private int evictionThreshold = MAX_IDLE_FLOWS;
+    private volatile boolean shutdown = false;
+    private volatile boolean stopped = false;
+
+    /**
+     * The scheduling state of a tenant and priority class pair.
+     */
+    private static class Flow {
+        private double lastStart = 0.;
+        private int queued = 0;
+        private long served = 0;
+
+        /**
+         * A flow is idle if it has no queued tasks and its last task has
+         * started. Dropping it can only move its next task one task ahead.
+         */
+        private boolean isIdle(double virtualTime) {
+            return queued == 0 && lastStart <= virtualTime;
+        }
+    }
+
+    /**
+     * A queued task with its virtual start time.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final Runnable task;
+        private final Flow flow;
+        private final double start;
+        private final long sequence;
+
+        private Entry(Runnable task, Flow flow, double start, long sequence) {
+            this.task = task;
+            this.flow = flow;
+            this.start = start;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int cmp = Double.compare(start, other.start);
+            return (cmp != 0) ? cmp : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * A task run repeatedly, requeued after every step, until it reports
+     * that it is done. Cancelling it interrupts the step in progress.
+     */
+    private class Repeated extends CompletableFuture<Void> implements Runnable {
+        private final String tenant;
+        private final Priority priority;
+        private final BooleanSupplier step;
+        private Thread runner = null;
+
+        private Repeated(String tenant, Priority priority,
+                BooleanSupplier step) {
+            this.tenant = tenant;
+            this.priority = priority;
+            this.step = step;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            boolean more;
+            try {
+                more = step.getAsBoolean();
+            } catch (RuntimeException | Error ex) {
+                completeExceptionally(ex);
+                return;
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    // Drop an interrupt meant for this task only
+                    Thread.interrupted();
+                }
+            }
+            if (!more) {
+                complete(null);
+            } else if (!isDone()) {
+                enqueue(tenant, priority, this, true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (mayInterruptIfRunning) {
+                synchronized (this) {
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param numThreads The number of threads
+     */
+    public FairScheduler(int numThreads) {
+        this(numThreads, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param numThreads The number of threads
+     * @param threadFactory Factory of the threads
+     */
+    public FairScheduler(int numThreads, ThreadFactory threadFactory) {
+        terminated = new CountDownLatch(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            Thread thread = threadFactory.newThread(this::work);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Set the weight of a tenant, which multiplies the weights of its
+     * priority classes. Tenants weigh 1 by default.
+     *
+     * @param tenant Tenant name
+     * @param weight Weight, positive
+     */
+    public void setTenantWeight(String tenant, double weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException(
+                    "Tenant weight must be positive: " + weight);
+        }
+        lock.lock();
+        try {
+            tenantWeights.put(tenant, weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the weight of a tenant.
+     *
+     * @param tenant Tenant name
+     * @return Weight
+     */
+    public double getTenantWeight(String tenant) {
+        lock.lock();
+        try {
+            return tenantWeights.getOrDefault(tenant, 1.);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run a step repeatedly on behalf of a tenant, until it returns false.
+     * Each step is scheduled as a separate task.
+     *
+     * @param tenant Tenant name
+     * @param priority Priority class
+     * @param step The step, returns whether it should be run again
+     * @return Future completed when the step returns false or throws
+     */
+    public Future<?> submitRepeated(String tenant, Priority priority,
+            BooleanSupplier step) {
+        Repeated repeated = new Repeated(tenant, priority, step);
+        enqueue(tenant, priority, repeated, false);
+        return repeated;
+    }
+
+    /**
+     * Submit a task on behalf of a tenant.
+     *
+     * @param tenant Tenant name
+     * @param priority Priority class
+     * @param task The task
+     * @return Future of the task
+     */
+    public Future<?> submit(String tenant, Priority priority, Runnable task) {
+        return submitRepeated(tenant, priority, () -> {
+            task.run();
+            return false;
+        });
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        enqueue(MatchRequest.DEFAULT_TENANT, Priority.NORMAL, task, false);
+    }
+
+    /**
+     * Queue a task. Once the scheduler is shut down, only the next steps of
+     * the repeated tasks already running are accepted.
+     */
+    private void enqueue(String tenant, Priority priority, Runnable task,
+            boolean continuation) {
+        lock.lock();
+        try {
+            if (shutdown && !continuation) {
+                throw new RejectedExecutionException("Scheduler is shut down");
+            }
+            String key = tenant + "/" + priority.getCode();
+            Flow flow = flows.get(key);
+            if (flow == null) {
+                evictIdleFlows();
+                flow = new Flow();
+                flows.put(key, flow);
+            }
+            double weight = priority.getWeight()
+                    * tenantWeights.getOrDefault(tenant, 1.);
+            double start = Math.max(virtualTime,
+                    flow.lastStart + 1. / weight);
+            flow.lastStart = start;
+            flow.queued++;
+            queue.add(new Entry(task, flow, start, sequence++));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the idle flows once there are too many flows. The threshold
+     * grows with the flows that are not idle, so that the flows are not
+     * scanned again on every new one.
+     */
+    private void evictIdleFlows() {
+        if (flows.size() < evictionThreshold) {
+            return;
+        }
+        flows.values().removeIf(f -> f.isIdle(virtualTime));
+        evictionThreshold = Math.max(MAX_IDLE_FLOWS, 2 * flows.size());
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                Entry entry;
+                lock.lock();
+                try {
+                    while (queue.isEmpty() && !shutdown) {
+                        try {
+                            notEmpty.await();
+                        } catch (InterruptedException ex) {
+                            // Only a shutdown stops the thread
+                        }
+                    }
+                    entry = queue.poll();
+                    if (entry == null) {
+                        return;
+                    }
+                    virtualTime = Math.max(virtualTime, entry.start);
+                    entry.flow.queued--;
+                    entry.flow.served++;
+                } finally {
+                    lock.unlock();
+                }
+                // Drop an interrupt left over by a cancelled task, unless
+                // the scheduler is stopping the running tasks
+                if (stopped) {
+                    Thread.currentThread().interrupt();
+                } else {
+                    Thread.interrupted();
+                }
+                try {
+                    entry.task.run();
+                } catch (Throwable ex) {
+                    LOGGER.error("Scheduled task failed.", ex);
+                }
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Get the number of tasks run for a tenant and priority class.
+     *
+     * @param tenant Tenant name
+     * @param priority Priority class
+     * @return The number of tasks, including the steps of repeated tasks,
+     * since the flow was last dropped as idle
+     */
+    public long getServedCount(String tenant, Priority priority) {
+        lock.lock();
+        try {
+            Flow flow = flows.get(tenant + "/" + priority.getCode());
+            return (flow == null) ? 0 : flow.served;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of flows the scheduler keeps the state of.
+     *
+     * @return The number of flows
+     */
+    int getFlowCount() {
+        lock.lock();
+        try {
+            return flows.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of tasks waiting for a thread.
+     *
+     * @return The number of tasks
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            shutdown = true;
+            stopped = true;
+            while (!queue.isEmpty()) {
+                Entry entry = queue.poll();
+                entry.flow.queued--;
+                Runnable task = entry.task;
+                if (task instanceof Future) {
+                    // Nobody will run it, do not keep its callers waiting
+                    ((Future<?>) task).cancel(false);
+                }
+                pending.add(task);
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        threads.forEach(Thread::interrupt);
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+}
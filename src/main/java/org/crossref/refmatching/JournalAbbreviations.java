@@ -0,0 +1,512 @@
+package org.crossref.refmatching;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import org.crossref.common.utils.LogUtils;
+
+/**
+ * An immutable dictionary of journal abbreviations, mapping normalized
+ * abbreviated journal titles to full titles. The dictionary is stored
+ * compactly in a single buffer: the keys, sorted, in one ASCII byte pool
+ * and the values in one UTF-8 byte pool, indexed by offset arrays. Lookups
+ * normalize the journal title on the fly while binary searching the keys,
+ * so they do not allocate, and full titles are only decoded when found.
+ *
+ * The binary dictionary is generated from the text resource at build time,
+ * see {@link #main(String[])}, and loaded once per process by
+ * {@link #getDefault()}, in a single read. The text resource is parsed
+ * instead if the binary one is missing, for example when running from the
+ * sources. Dictionary files can also be memory-mapped, see
+ * {@link #map(File)}.
+ */
+public final class JournalAbbreviations {
+
+    public static final String TEXT_RESOURCE = "journal-abbreviations.txt";
+    public static final String BINARY_RESOURCE = "journal-abbreviations.bin";
+    public static final JournalAbbreviations EMPTY =
+            create(new TreeMap<>());
+
+    private static final int MAGIC = 0x524A4131;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final IntBuffer keyOffsets;
+    private final ByteBuffer keyPool;
+    private final IntBuffer valueOffsets;
+    private final ByteBuffer valuePool;
+    private final String[] values;
+    private final int size;
+    private final int mapHash;
+
+    /**
+     * Lazily loads the process-wide dictionary.
+     */
+    private static class DefaultHolder {
+        private static final JournalAbbreviations INSTANCE = loadDefault();
+    }
+
+    /**
+     * Create a dictionary over its binary form.
+     */
+    private JournalAbbreviations(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a journal abbreviation dictionary");
+        }
+        size = buffer.getInt(8);
+        mapHash = buffer.getInt(12);
+        int offsetsSize = (size + 1) * Integer.BYTES;
+        keyOffsets = slice(buffer, HEADER_SIZE, offsetsSize).asIntBuffer();
+        valueOffsets = slice(buffer, HEADER_SIZE + offsetsSize, offsetsSize)
+                .asIntBuffer();
+        int keyStart = HEADER_SIZE + 2 * offsetsSize;
+        keyPool = slice(buffer, keyStart, keyOffsets.get(size));
+        valuePool = slice(buffer, keyStart + keyOffsets.get(size),
+                valueOffsets.get(size));
+        values = new String[size];
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset,
+            int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + length);
+        return duplicate.slice();
+    }
+
+    /**
+     * Build the binary form of a dictionary.
+     */
+    private static ByteBuffer build(TreeMap<String, String> sorted) {
+        ByteArrayOutputStream keys = new ByteArrayOutputStream();
+        ByteArrayOutputStream vals = new ByteArrayOutputStream();
+        int count = sorted.size();
+        int[] keyEnds = new int[count + 1];
+        int[] valueEnds = new int[count + 1];
+        int i = 0;
+        int hash = 0;
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.US_ASCII);
+            byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            keys.write(key, 0, key.length);
+            vals.write(value, 0, value.length);
+            keyEnds[++i] = keys.size();
+            valueEnds[i] = vals.size();
+            hash += entry.getKey().hashCode() ^ entry.getValue().hashCode();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE
+                + 2 * (count + 1) * Integer.BYTES + keys.size() + vals.size());
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(hash);
+        buffer.asIntBuffer().put(keyEnds).put(valueEnds);
+        buffer.position(HEADER_SIZE + 2 * (count + 1) * Integer.BYTES);
+        buffer.put(keys.toByteArray()).put(vals.toByteArray());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static JournalAbbreviations create(TreeMap<String, String> sorted) {
+        try {
+            return new JournalAbbreviations(build(sorted));
+        } catch (IOException ex) {
+            // Cannot happen, the buffer was just built
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Create a dictionary from a map. The keys must be normalized, see
+     * {@link #normalize(String)}.
+     *
+     * @param abbreviations Map of normalized abbreviations to full titles
+     * @return The dictionary
+     */
+    public static JournalAbbreviations of(Map<String, String> abbreviations) {
+        for (String key : abbreviations.keySet()) {
+            if (!normalize(key).equals(key)) {
+                throw new IllegalArgumentException(
+                        "Journal abbreviation not normalized: " + key);
+            }
+        }
+        return create(new TreeMap<>(abbreviations));
+    }
+
+    /**
+     * Get the process-wide dictionary built from the bundled resource.
+     *
+     * @return The dictionary, empty if the resource cannot be read
+     */
+    public static JournalAbbreviations getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static JournalAbbreviations loadDefault() {
+        try (InputStream binary = JournalAbbreviations.class
+                .getResourceAsStream(BINARY_RESOURCE)) {
+            if (binary != null) {
+                return read(binary);
+            }
+        } catch (IOException ex) {
+            LogUtils.getLogger().warn("Error reading journal abbreviations, "
+                    + "falling back to the text resource", ex);
+        }
+        try (InputStream text = JournalAbbreviations.class
+                .getResourceAsStream(TEXT_RESOURCE)) {
+            if (text == null) {
+                LogUtils.getLogger().warn("Journal abbreviations not found");
+                return EMPTY;
+            }
+            return parse(text);
+        } catch (IOException ex) {
+            LogUtils.getLogger().warn("Error caching journal entries", ex);
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Parse the text form of a dictionary, one tab-separated normalized
+     * abbreviation and full title per line.
+     *
+     * @param in Input stream
+     * @return The dictionary
+     * @throws IOException if the input cannot be read
+     */
+    public static JournalAbbreviations parse(InputStream in)
+            throws IOException {
+        TreeMap<String, String> sorted = new TreeMap<>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.trim().split("\t");
+            if (fields.length >= 2) {
+                sorted.put(fields[0], fields[1]);
+            }
+        }
+        return create(sorted);
+    }
+
+    /**
+     * Read the binary form of a dictionary.
+     *
+     * @param in Input stream
+     * @return The dictionary
+     * @throws IOException if the input cannot be read or is not a dictionary
+     */
+    public static JournalAbbreviations read(InputStream in)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            bytes.write(chunk, 0, n);
+        }
+        return new JournalAbbreviations(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Map the binary form of a dictionary from a file. The file is not
+     * copied to the heap.
+     *
+     * @param file Dictionary file
+     * @return The dictionary
+     * @throws IOException if the file cannot be read or is not a dictionary
+     */
+    public static JournalAbbreviations map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            return new JournalAbbreviations(channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write the binary form of the dictionary.
+     *
+     * @param out Output stream
+     * @throws IOException if the output cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(mapHash);
+        header.flip();
+        ByteBuffer offsets = ByteBuffer.allocate(
+                2 * (size + 1) * Integer.BYTES);
+        offsets.asIntBuffer().put(keyOffsets.duplicate())
+                .put(valueOffsets.duplicate());
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (ByteBuffer part : new ByteBuffer[]{header, offsets,
+                keyPool.duplicate(), valuePool.duplicate()}) {
+            while (part.hasRemaining()) {
+                channel.write(part);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Normalize a journal title to the form used as a key: lowercase letters
+     * a-z only.
+     *
+     * @param journalTitle Journal title, can be null
+     * @return Normalized journal title
+     */
+    public static String normalize(String journalTitle) {
+        if (journalTitle == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(journalTitle.length());
+        for (int i = 0; i < journalTitle.length(); i++) {
+            char c = Character.toLowerCase(journalTitle.charAt(i));
+            if (c >= 'a' && c <= 'z') {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Find a journal title in the dictionary. The title is normalized on
+     * the fly.
+     *
+     * @param journalTitle Journal title, can be null
+     * @return The index of the abbreviation, or -1 if not found
+     */
+    public int indexOf(CharSequence journalTitle) {
+        if (journalTitle == null) {
+            journalTitle = "";
+        }
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(mid, journalTitle);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare a key with the normalized form of a journal title.
+     */
+    private int compareKey(int index, CharSequence journalTitle) {
+        int k = keyOffsets.get(index);
+        int end = keyOffsets.get(index + 1);
+        int length = journalTitle.length();
+        int t = 0;
+        while (true) {
+            char c = 0;
+            while (t < length) {
+                c = Character.toLowerCase(journalTitle.charAt(t++));
+                if (c >= 'a' && c <= 'z') {
+                    break;
+                }
+                c = 0;
+            }
+            if (c == 0) {
+                return (k < end) ? 1 : 0;
+            }
+            if (k == end) {
+                return -1;
+            }
+            int cmp = keyPool.get(k++) - c;
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+    }
+
+    /**
+     * Check whether a journal title is in the dictionary.
+     *
+     * @param journalTitle Journal title, can be null
+     * @return A flag
+     */
+    public boolean contains(CharSequence journalTitle) {
+        return indexOf(journalTitle) >= 0;
+    }
+
+    /**
+     * Get the full title of a journal.
+     *
+     * @param journalTitle Journal title, can be null
+     * @return The full title, or null if not found
+     */
+    public String expand(CharSequence journalTitle) {
+        int index = indexOf(journalTitle);
+        return (index < 0) ? null : getValue(index);
+    }
+
+    /**
+     * Get the normalized abbreviation at an index.
+     *
+     * @param index The index of the abbreviation
+     * @return Normalized abbreviation
+     */
+    public String getKey(int index) {
+        return decode(keyPool, keyOffsets, index, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Get the full title at an index.
+     *
+     * @param index The index of the abbreviation
+     * @return Full journal title
+     */
+    public String getValue(int index) {
+        String value = values[index];
+        if (value == null) {
+            value = decode(valuePool, valueOffsets, index,
+                    StandardCharsets.UTF_8);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    private static String decode(ByteBuffer pool, IntBuffer offsets,
+            int index, Charset charset) {
+        int start = offsets.get(index);
+        byte[] bytes = new byte[offsets.get(index + 1) - start];
+        ByteBuffer duplicate = pool.duplicate();
+        duplicate.position(start);
+        duplicate.get(bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Get the number of abbreviations.
+     *
+     * @return The number of abbreviations
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a version string identifying the contents of the dictionary. It is
+     * the same as the one of the equal {@link java.util.HashMap}.
+     *
+     * @return Version string
+     */
+    public String getVersion() {
+        return size() + ":" + Integer.toHexString(mapHash);
+    }
+
+    /**
+     * Get a read-only map view of the dictionary.
+     *
+     * @return Map of normalized abbreviations to full titles
+     */
+    public Map<String, String> asMap() {
+        return new AbstractMap<String, String>() {
+            @Override
+            public String get(Object key) {
+                int index = (key instanceof String) ? find((String) key) : -1;
+                return (index < 0) ? null : getValue(index);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return (key instanceof String) && find((String) key) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return JournalAbbreviations.this.size();
+            }
+
+            @Override
+            public int hashCode() {
+                return mapHash;
+            }
+
+            @Override
+            public Set<Map.Entry<String, String>> entrySet() {
+                return new AbstractSet<Map.Entry<String, String>>() {
+                    @Override
+                    public Iterator<Map.Entry<String, String>> iterator() {
+                        return new Iterator<Map.Entry<String, String>>() {
+                            private int next = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < JournalAbbreviations.this.size();
+                            }
+
+                            @Override
+                            public Map.Entry<String, String> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                int index = next++;
+                                return new SimpleImmutableEntry<>(
+                                        getKey(index), getValue(index));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return JournalAbbreviations.this.size();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Find an exact key, without normalizing it.
+     */
+    private int find(String key) {
+        int index = indexOf(key);
+        return (index >= 0 && getKey(index).equals(key)) ? index : -1;
+    }
+
+    /**
+     * Generate the binary dictionary from the text one, run at build time.
+     *
+     * @param args Text input file and binary output file
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println(
+                    "Usage: JournalAbbreviations <input.txt> <output.bin>");
+            System.exit(1);
+        }
+        JournalAbbreviations abbreviations;
+        try (InputStream in = new FileInputStream(new File(args[0]))) {
+            abbreviations = parse(in);
+        }
+        try (OutputStream out = new FileOutputStream(new File(args[1]))) {
+            abbreviations.write(out);
+        }
+    }
+}
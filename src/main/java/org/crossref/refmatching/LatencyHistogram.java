@@ -0,0 +1,251 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with a bounded relative error, in the style of
+ * HdrHistogram. Latencies are counted in log-linear buckets: every power of
+ * two range of nanoseconds is split into {@value #SUB_BUCKETS} equal
+ * buckets, so percentiles are accurate to about 3%, from nanoseconds to
+ * an hour, in a fixed array of about 1.3k counters. Recording is a few
+ * arithmetic operations and atomic increments, without locking or
+ * allocation, and safe to do from many threads.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 42;
+    private static final int BUCKETS =
+            SUB_BUCKETS * (MAX_EXPONENT - SUB_BUCKET_BITS + 2);
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * A consistent-enough view of a histogram at one point in time.
+     */
+    public static class Snapshot {
+        private final long count;
+        private final double meanMs;
+        private final double p50Ms;
+        private final double p90Ms;
+        private final double p99Ms;
+        private final double p999Ms;
+        private final double maxMs;
+
+        private Snapshot(LatencyHistogram histogram) {
+            long[] buckets = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.counts.get(i);
+                total += buckets[i];
+            }
+            long max = histogram.maxNanos.get();
+            this.count = total;
+            this.meanMs = (total == 0) ? 0. :
+                    histogram.sumNanos.sum() / 1e6 / total;
+            this.p50Ms = toMs(percentile(buckets, total, 50., max));
+            this.p90Ms = toMs(percentile(buckets, total, 90., max));
+            this.p99Ms = toMs(percentile(buckets, total, 99., max));
+            this.p999Ms = toMs(percentile(buckets, total, 99.9, max));
+            this.maxMs = toMs(max);
+        }
+
+        /**
+         * Get the number of latencies recorded.
+         *
+         * @return Latency count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the exact mean latency.
+         *
+         * @return Latency in milliseconds
+         */
+        public double getMeanMs() {
+            return meanMs;
+        }
+
+        /**
+         * Get the median latency.
+         *
+         * @return Latency in milliseconds
+         */
+        public double getP50Ms() {
+            return p50Ms;
+        }
+
+        /**
+         * Get the 90th percentile latency.
+         *
+         * @return Latency in milliseconds
+         */
+        public double getP90Ms() {
+            return p90Ms;
+        }
+
+        /**
+         * Get the 99th percentile latency.
+         *
+         * @return Latency in milliseconds
+         */
+        public double getP99Ms() {
+            return p99Ms;
+        }
+
+        /**
+         * Get the 99.9th percentile latency.
+         *
+         * @return Latency in milliseconds
+         */
+        public double getP999Ms() {
+            return p999Ms;
+        }
+
+        /**
+         * Get the exact largest latency.
+         *
+         * @return Latency in milliseconds
+         */
+        public double getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{count=%d, meanMs=%.2f, p50Ms=%.2f, "
+                    + "p90Ms=%.2f, p99Ms=%.2f, p999Ms=%.2f, maxMs=%.2f}",
+                    count, meanMs, p50Ms, p90Ms, p99Ms, p999Ms, maxMs);
+        }
+    }
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of the histogram.
+     *
+     * @return Histogram name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record the time elapsed since the given start.
+     *
+     * @param startNanos Start time, from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record a latency. Negative latencies are counted as 0, latencies
+     * longer than about an hour fall into the last bucket.
+     *
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sumNanos.add(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Get the number of latencies recorded.
+     *
+     * @return Latency count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Take a snapshot of the histogram. Latencies recorded concurrently
+     * may or may not be included.
+     *
+     * @return Snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Clear the histogram. Latencies recorded concurrently may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sumNanos.reset();
+        maxNanos.set(0);
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * (shift + 1) + (int) (nanos >>> shift)
+                - SUB_BUCKETS;
+    }
+
+    /**
+     * Get the largest latency counted in a bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    private static long percentile(long[] buckets, long total,
+            double percentile, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return name + snapshot();
+    }
+}
@@ -0,0 +1,32 @@
+package org.crossref.refmatching;
+
+/**
+ * Collects the links of a request as the references are matched, possibly
+ * from several threads at once.
+ */
+interface LinkCollector {
+
+    /**
+     * Record the link of a reference.
+     *
+     * @param ordinal The index of the reference in the request
+     * @param link Reference link
+     */
+    void record(int ordinal, ReferenceLink link);
+
+    /**
+     * Check whether the link of a reference was recorded.
+     *
+     * @param ordinal The index of the reference in the request
+     * @return A flag
+     */
+    boolean isRecorded(int ordinal);
+
+    /**
+     * Create the response from the links recorded so far. Links recorded
+     * afterwards are ignored.
+     *
+     * @return A match response
+     */
+    MatchResponse toResponse();
+}
@@ -0,0 +1,39 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Collects the links into a list of link objects, which keep their
+ * references.
+ */
+class ListLinkCollector implements LinkCollector {
+
+    private final MatchRequest request;
+    private final AtomicReferenceArray<ReferenceLink> links;
+
+    ListLinkCollector(MatchRequest request, int size) {
+        this.request = request;
+        this.links = new AtomicReferenceArray<>(size);
+    }
+
+    @Override
+    public void record(int ordinal, ReferenceLink link) {
+        links.set(ordinal, link);
+    }
+
+    @Override
+    public boolean isRecorded(int ordinal) {
+        return links.get(ordinal) != null;
+    }
+
+    @Override
+    public MatchResponse toResponse() {
+        List<ReferenceLink> results = new ArrayList<>(links.length());
+        for (int i = 0; i < links.length(); i++) {
+            results.add(links.get(i));
+        }
+        return new MatchResponse(request, results);
+    }
+}
@@ -1,10 +1,23 @@
 package org.crossref.refmatching;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.management.JMException;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -12,7 +25,7 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.MissingOptionException;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.log4j.Logger;
 import org.crossref.common.rest.api.ICrossRefApiClient;
 import org.crossref.common.rest.impl.CrossRefApiHttpClient;
@@ -39,7 +52,42 @@ public class MainApp {
     private static String apiKeyFile = System.getProperty("user.home") + "/"
             + CRAPI_KEY_FILE;
     private static String outputFileName = null;
+    private static InputType inputType = null;
+    private static String inputValue = null;
     private static String delimiter = DEFAULT_DELIMITER;
+    private static Shard shard = null;
+    private static OutputFormat outputFormat = OutputFormat.JSON;
+    private static Codec outputCodec = null;
+    private static String resultStoreFileName = null;
+    private static long resultStoreMaxAgeMs = 0;
+    private static Long resultStoreStaleAgeMs = null;
+    private static final long DEFAULT_NEG_CACHE_SIZE = 1000000;
+    private static final double DEFAULT_NEG_CACHE_FPP = 0.01;
+    private static final long DEFAULT_NEG_CACHE_RECHECK_HOURS = 7 * 24;
+    private static String negativeCacheFileName = null;
+    private static long negativeCacheSize = DEFAULT_NEG_CACHE_SIZE;
+    private static double negativeCacheFpp = DEFAULT_NEG_CACHE_FPP;
+    private static long negativeCacheRecheckMs =
+            TimeUnit.HOURS.toMillis(DEFAULT_NEG_CACHE_RECHECK_HOURS);
+    private static String candidateFileName = null;
+    private static String checkpointFileName = null;
+    private static boolean resume = false;
+    private static long checkpointIntervalMs =
+            CheckpointJournal.DEFAULT_SYNC_INTERVAL_MS;
+    private static long progressIntervalMs =
+            MatchRequest.DEFAULT_PROGRESS_INTERVAL_MS;
+    private static int slowLogCapacity = SlowReferenceLog.DEFAULT_CAPACITY;
+    private static final int SERVER_STOP_DELAY_SECONDS = 10;
+    private static int serverPort = -1;
+    private static int numThreads = MatchRequest.DEFAULT_NUM_THREADS;
+    private static double coalescingWindowMs =
+            MatchCoalescer.DEFAULT_WINDOW_MS;
+    private static long admitMaxQueued = 0;
+    private static long admitMaxWaitMs = 0;
+    private static long degradeLatencyMs = 0;
+    private static long degradeQueued = 0;
+    private static DegradationLevel degradationLevel = null;
+    private static final Map<String, Double> tenantWeights = new HashMap<>();
 
     public static void main(String[] args) {
         try {
@@ -57,11 +105,149 @@ public class MainApp {
             matcher.setCacheJournalAbbrevMap(true);
             matcher.initialize();
             
-            // Get match results
-            outputResults(matcher.match(request));
+            if (degradeLatencyMs > 0 || degradeQueued > 0
+                    || degradationLevel != null) {
+                DegradationController degradation = new DegradationController(
+                        degradeLatencyMs, degradeQueued);
+                degradation.setForcedLevel(degradationLevel);
+                matcher.setDegradationController(degradation);
+            }
+            
+            if (slowLogCapacity > 0) {
+                matcher.setSlowReferenceLog(new SlowReferenceLog(
+                        slowLogCapacity, SlowReferenceLog.DEFAULT_WINDOW_MS));
+            }
+            
+            ResultStore resultStore = null;
+            if (resultStoreFileName != null) {
+                resultStore = ResultStore.load(new File(resultStoreFileName),
+                        resultStoreMaxAgeMs, resultStoreStaleAgeMs == null ?
+                                resultStoreMaxAgeMs : resultStoreStaleAgeMs);
+                matcher.setResultStore(resultStore);
+            }
+            
+            NegativeCache negativeCache = null;
+            if (negativeCacheFileName != null) {
+                negativeCache = NegativeCache.load(
+                        new File(negativeCacheFileName), negativeCacheSize,
+                        negativeCacheFpp, negativeCacheRecheckMs);
+                matcher.setNegativeCache(negativeCache);
+            }
+            
+            if (serverPort >= 0) {
+                serve(matcher, request, resultStore, negativeCache);
+                return;
+            }
+            
+            if (progressIntervalMs > 0) {
+                request.setProgressInterval(progressIntervalMs);
+                request.setProgressListener(
+                        progress -> LOGGER.info(progress.toString()));
+            }
+            
+            if (candidateFileName != null) {
+                // Record candidates for threshold sweeps instead of matching
+                new ThresholdSweep(matcher).record(request,
+                        new File(candidateFileName));
+            } else if (checkpointFileName != null) {
+                try (CheckpointJournal journal = new CheckpointJournal(
+                        new File(checkpointFileName), resume,
+                        checkpointIntervalMs, describeInput())) {
+                    request.setCheckpointJournal(journal);
+                    outputResults(matcher.match(request));
+                    LOGGER.info(String.format("Checkpoint journal restored: "
+                            + "%d, journaled: %d", journal.getRestoredCount(),
+                            journal.getJournaledCount()));
+                }
+            } else {
+                // Get match results
+                outputResults(matcher.match(request));
+            }
+            
+            LOGGER.info("Matcher metrics: " + matcher.getMetrics());
+            if (matcher.getSlowReferenceLog() != null) {
+                matcher.getSlowReferenceLog().getSlowest().forEach(
+                        slow -> LOGGER.info("Slow reference: " + slow));
+            }
+            saveCaches(resultStore, negativeCache);
         } catch (MatchException ex) {
             LOGGER.error("Error performing matching process: " + ex.getMessage(),
                     ex);
+        } catch (IOException ex) {
+            LOGGER.error("Error accessing result caches: " + ex.getMessage(),
+                    ex);
+        }
+    }
+    
+    /**
+     * Serve match requests until the JVM is shut down. The result caches are
+     * saved on shutdown.
+     * 
+     * @param matcher Initialized matcher
+     * @param template Request with the default match settings
+     * @param resultStore Result store, or null
+     * @param negativeCache Negative cache, or null
+     */
+    private static void serve(ReferenceMatcher matcher, MatchRequest template,
+            ResultStore resultStore, NegativeCache negativeCache)
+            throws IOException {
+        int serverThreads = Runtime.getRuntime().availableProcessors()
+                * MatchRequest.DEFAULT_NUM_THREADS;
+        if (admitMaxQueued > 0 || admitMaxWaitMs > 0) {
+            matcher.setAdmissionController(new AdmissionController(
+                    admitMaxQueued, admitMaxWaitMs, serverThreads));
+        }
+        MatchServer server = new MatchServer(matcher, template,
+                new InetSocketAddress(serverPort), serverThreads);
+        tenantWeights.forEach(server.getScheduler()::setTenantWeight);
+        server.setRequestThreads(numThreads);
+        server.setCoalescingWindow(coalescingWindowMs);
+        try {
+            LOGGER.info("Matcher metrics registered as "
+                    + matcher.getMetrics().register("server"));
+        } catch (JMException ex) {
+            LOGGER.warn("Matcher metrics not available through JMX: "
+                    + ex.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(SERVER_STOP_DELAY_SECONDS);
+            LOGGER.info("Matcher metrics: " + matcher.getMetrics());
+            if (matcher.getAdmissionController() != null) {
+                LOGGER.info("Admission: " + matcher.getAdmissionController());
+            }
+            if (matcher.getDegradationController() != null) {
+                LOGGER.info("Degradation: "
+                        + matcher.getDegradationController());
+            }
+            try {
+                saveCaches(resultStore, negativeCache);
+            } catch (IOException ex) {
+                LOGGER.error("Error accessing result caches: "
+                        + ex.getMessage(), ex);
+            }
+        }));
+        server.start(MatchServer.DEFAULT_WARM_UP_ITERATIONS);
+    }
+    
+    /**
+     * Save the result caches, if enabled.
+     * 
+     * @param resultStore Result store, or null
+     * @param negativeCache Negative cache, or null
+     */
+    private static void saveCaches(ResultStore resultStore,
+            NegativeCache negativeCache) throws IOException {
+        if (resultStore != null) {
+            LOGGER.info(String.format("Result store hits: %d, misses: %d",
+                    resultStore.getHitCount(),
+                    resultStore.getMissCount()));
+            resultStore.save(new File(resultStoreFileName));
+        }
+        if (negativeCache != null) {
+            LOGGER.info(String.format("Negative cache hits: %d, "
+                    + "insertions: %d", negativeCache.getHitCount(),
+                    negativeCache.getInsertCount()));
+            negativeCache.save(new File(negativeCacheFileName));
         }
     }
     
@@ -108,9 +294,132 @@ public class MainApp {
         options.addOption("ap", "api-port", true, "CR API port");
         options.addOption("ak", "key-file", true, "CR API key file");
         options.addOption("d", "delim", true, "Textual data delimiter");
+        options.addOption("mm", "mmap", false,
+                "Memory-map a line-delimited input file and split it in "
+                + "parallel. Recommended for very large input files.");
         options.addOption("o", "out-file", true, "Output file");
+        options.addOption("of", "out-format", true,
+                "Output format. Valid values are \"json\" (default) and "
+                + "\"binary\", a compact columnar format that can be read "
+                + "with MatchResultReader.");
+        options.addOption("oc", "out-codec", true,
+                "Output compression. Valid values are \"none\", \"gzip\" "
+                + "and \"lz4\". By default it follows the output file "
+                + "extension (.gz, .lz4). Compressed input files are "
+                + "detected automatically.");
         options.addOption("t", "threads", true,
                 "Number of threads used for matching");
+        options.addOption("to", "timeout", true,
+                "Overall matching time limit in milliseconds. References not "
+                + "matched when it expires are output without a DOI.");
+        options.addOption("rto", "ref-timeout", true,
+                "Time limit in milliseconds for matching a single reference.");
+        options.addOption("pl", "pipeline", false,
+                "Run API searches and candidate validation in separate "
+                + "thread pools. The -t option sets the number of search "
+                + "threads.");
+        options.addOption("col", "columnar", false,
+                "Store the results compactly, for very large inputs.");
+        options.addOption("sc", "scheduling", true,
+                "Order in which references are dispatched to the threads. "
+                + "Valid values are \"input\" (default), \"longest\" "
+                + "(expected most expensive first) and \"interleaved\". "
+                + "Output is always in the input order.");
+        options.addOption("rs", "result-store", true,
+                "Result store file. References matched in previous runs with "
+                + "the same settings are not matched again, and new results "
+                + "are added to the store.");
+        options.addOption("rsa", "result-store-max-age", true,
+                "Maximum age of stored results in hours.");
+        options.addOption("rss", "result-store-stale-age", true,
+                "Time in hours stale stored results are kept for past their "
+                + "maximum age, to be served when the matcher is degraded. "
+                + "Defaults to the maximum age.");
+        options.addOption("nc", "neg-cache", true,
+                "Negative cache file. References that failed to match in "
+                + "previous runs with the same settings are output without "
+                + "a DOI until the re-check interval passes.");
+        options.addOption("nci", "neg-cache-recheck", true,
+                "Negative cache re-check interval in hours. Default: "
+                + DEFAULT_NEG_CACHE_RECHECK_HOURS);
+        options.addOption("ncs", "neg-cache-size", true,
+                "Expected number of unmatched references per quarter of the "
+                + "re-check interval, used when creating the negative cache. "
+                + "Default: " + DEFAULT_NEG_CACHE_SIZE);
+        options.addOption("ncf", "neg-cache-fpp", true,
+                "Accepted negative cache false positive rate, used when "
+                + "creating the cache. Default: " + DEFAULT_NEG_CACHE_FPP);
+        options.addOption("cp", "checkpoint", true,
+                "Journal the progress of the run in the given file");
+        options.addOption("re", "resume", false,
+                "Resume from the checkpoint journal, skipping the references "
+                + "already matched");
+        options.addOption("cpi", "checkpoint-interval", true,
+                "Interval of syncing the checkpoint journal to disk in "
+                + "seconds, default: "
+                + TimeUnit.MILLISECONDS.toSeconds(
+                        CheckpointJournal.DEFAULT_SYNC_INTERVAL_MS));
+        options.addOption("pi", "progress-interval", true,
+                "Interval of logging the progress of the matching in "
+                + "seconds, 0 to disable, default: "
+                + TimeUnit.MILLISECONDS.toSeconds(
+                        MatchRequest.DEFAULT_PROGRESS_INTERVAL_MS));
+        options.addOption("sl", "slow-log", true,
+                "Number of the slowest references to keep with their cost "
+                + "breakdown, per window of "
+                + TimeUnit.MILLISECONDS.toMinutes(
+                        SlowReferenceLog.DEFAULT_WINDOW_MS)
+                + " minutes, 0 to disable, default: "
+                + SlowReferenceLog.DEFAULT_CAPACITY);
+        options.addOption("srv", "serve", true,
+                "Serve match requests over HTTP on the given port instead "
+                + "of matching an input; the other match options set the "
+                + "defaults of the requests served");
+        options.addOption("cw", "coalesce-window", true,
+                "In server mode, the window in milliseconds in which "
+                + "concurrent single-reference requests are coalesced into "
+                + "one batch, 0 disables coalescing, default: "
+                + MatchCoalescer.DEFAULT_WINDOW_MS);
+        options.addOption("amq", "admit-max-queued", true,
+                "In server mode, the maximum number of references queued, "
+                + "beyond which new requests are rejected");
+        options.addOption("amw", "admit-max-wait", true,
+                "In server mode, the maximum estimated queue wait in "
+                + "milliseconds, beyond which new requests are rejected");
+        options.addOption("dgl", "degrade-latency", true,
+                "The average API search latency in milliseconds at which "
+                + "matching starts to degrade");
+        options.addOption("dgq", "degrade-queued", true,
+                "The number of references outstanding at which matching "
+                + "starts to degrade");
+        options.addOption("dg", "degradation", true,
+                "Force the degradation level: normal, reduced-rows, "
+                + "single-pass or stale-cache");
+        options.addOption("tn", "tenant", true,
+                "The consumer the references are matched on behalf of");
+        options.addOption("pr", "priority", true,
+                "Priority class: interactive, normal (default) or bulk");
+        options.addOption("tw", "tenant-weights", true,
+                "In server mode, the weights of the tenants sharing the "
+                + "matcher, e.g. search=4,bulk-import=1");
+        options.addOption("sh", "shard", true,
+                "Match only shard i/N of the input, e.g. 0/4");
+        options.addOption("shp", "shard-partitioning", true,
+                "Partitioning of the input into shards, one of: "
+                + Arrays.asList(Partitioning.values()).stream()
+                        .map(Partitioning::getCode)
+                        .collect(Collectors.toList())
+                + ", default: " + Partitioning.HASH.getCode());
+        options.addOption("mg", "merge", true,
+                "Merge the comma-separated outputs of shards 0 to N-1, "
+                + "written in the output format, into the input order");
+        options.addOption("rc", "record-candidates", true,
+                "Search for candidates and record them in the given file "
+                + "for threshold sweeps, instead of matching");
+        options.addOption("sw", "sweep", true,
+                "Re-score the candidates recorded in the given file under "
+                + "all combinations of the comma-separated thresholds given "
+                + "with -ct, -ut and -st, without searching");
         options.addOption("h", "help", false, "Print help");
       
         // Parse/validate given arguments against defined options
@@ -125,39 +434,94 @@ public class MainApp {
                 printHelp(options, 0);
             }
             
-            // Check required input type option
-            if (!cmd.hasOption("it")) {
-               throw new MissingOptionException("Input type not specified");
+            if (cmd.hasOption("sw")) {
+                sweep(cmd);
+                System.exit(0);
             }
-
-             // Check required input value option
-            if (!cmd.hasOption("i")) {
-               throw new MissingOptionException("Input value not specified");
+            
+            Partitioning partitioning = Partitioning.HASH;
+            if (cmd.hasOption("shp")) {
+                String partitioningCode = cmd.getOptionValue("shp");
+                partitioning = Partitioning.getByCode(partitioningCode);
+                if (partitioning == null) {
+                    throw new ParseException("Invalid shard partitioning " +
+                            "specified: " + partitioningCode);
+                }
             }
-
-            // Validate given input type
-            String typeCode = cmd.getOptionValue("it");
-            InputType inputType = InputType.getByCode(typeCode);
-            if (inputType == null) {
-                List<String> okVals = Arrays.asList(
-                    InputType.values()).stream()
-                        .map(o-> {return o.getCode();})
-                        .collect(Collectors.toList());
- 
-                throw new ParseException("Invalid input type specified: " + 
-                        typeCode + ". Valid types are: " + okVals);
+            
+            if (cmd.hasOption("of")) {
+                String formatCode = cmd.getOptionValue("of");
+                outputFormat = OutputFormat.getByCode(formatCode);
+                if (outputFormat == null) {
+                    throw new ParseException("Invalid output format " +
+                            "specified: " + formatCode);
+                }
+            }
+            
+            if (cmd.hasOption("oc")) {
+                String codecCode = cmd.getOptionValue("oc");
+                outputCodec = Codec.getByCode(codecCode);
+                if (outputCodec == null || outputCodec == Codec.ZSTD) {
+                    throw new ParseException("Invalid output codec " +
+                            "specified: " + codecCode);
+                }
             }
             
-            String inputValue = cmd.getOptionValue("i");
+            if (cmd.hasOption("mg")) {
+                merge(cmd, partitioning);
+                System.exit(0);
+            }
             
-            if (cmd.hasOption("d")) {
-                delimiter = cmd.getOptionValue("d");
+            if (cmd.hasOption("srv")) {
+                serverPort = Integer.valueOf(cmd.getOptionValue("srv"));
             }
             
-            // Init request with input type and value
-            MatchRequest request;
-            request = new MatchRequest(Utils.parseInputReferences(inputType,
-                    inputValue, delimiter));
+            if (cmd.hasOption("cw")) {
+                coalescingWindowMs = Double.valueOf(cmd.getOptionValue("cw"));
+            }
+            
+            if (cmd.hasOption("amq")) {
+                admitMaxQueued = Long.valueOf(cmd.getOptionValue("amq"));
+            }
+            
+            if (cmd.hasOption("amw")) {
+                admitMaxWaitMs = Long.valueOf(cmd.getOptionValue("amw"));
+            }
+            
+            if (cmd.hasOption("tw")) {
+                for (String pair : cmd.getOptionValue("tw").split(",")) {
+                    String[] tenantWeight = pair.split("=");
+                    if (tenantWeight.length != 2) {
+                        throw new ParseException("Invalid tenant weight " +
+                                "specified: " + pair);
+                    }
+                    tenantWeights.put(tenantWeight[0].trim(),
+                            Double.valueOf(tenantWeight[1]));
+                }
+            }
+            
+            if (cmd.hasOption("dgl")) {
+                degradeLatencyMs = Long.valueOf(cmd.getOptionValue("dgl"));
+            }
+            
+            if (cmd.hasOption("dgq")) {
+                degradeQueued = Long.valueOf(cmd.getOptionValue("dgq"));
+            }
+            
+            if (cmd.hasOption("dg")) {
+                String levelCode = cmd.getOptionValue("dg");
+                degradationLevel = DegradationLevel.getByCode(levelCode);
+                if (degradationLevel == null) {
+                    throw new ParseException("Invalid degradation level " +
+                            "specified: " + levelCode);
+                }
+            }
+            
+            // In server mode, the request only carries the default settings
+            // of the requests served
+            MatchRequest request = new MatchRequest((serverPort < 0) ?
+                    readReferences(cmd, partitioning) :
+                    new ArrayList<>());
             
             /**
              * Optional request settings
@@ -190,7 +554,7 @@ public class MainApp {
             
             if (cmd.hasOption("t")) {
                 // Sanity check
-                int numThreads = Integer.valueOf(cmd.getOptionValue("t"));
+                numThreads = Integer.valueOf(cmd.getOptionValue("t"));
                 if (numThreads <= 0 ||
                         numThreads > MatchRequest.MAX_THREADS) {
                     throw new ParseException(String.format(
@@ -201,6 +565,73 @@ public class MainApp {
                 
                 request.setNumThreads(numThreads);
             }
+            
+            if (cmd.hasOption("sc")) {
+                String policyCode = cmd.getOptionValue("sc");
+                SchedulingPolicy policy =
+                        SchedulingPolicy.getByCode(policyCode);
+                if (policy == null) {
+                    throw new ParseException("Invalid scheduling policy " +
+                            "specified: " + policyCode);
+                }
+                request.setSchedulingPolicy(policy);
+            }
+            
+            if (cmd.hasOption("tn")) {
+                request.setTenant(cmd.getOptionValue("tn"));
+            }
+            
+            if (cmd.hasOption("pr")) {
+                String priorityCode = cmd.getOptionValue("pr");
+                Priority priority = Priority.getByCode(priorityCode);
+                if (priority == null) {
+                    throw new ParseException("Invalid priority " +
+                            "specified: " + priorityCode);
+                }
+                request.setPriority(priority);
+            }
+            
+            if (cmd.hasOption("pl")) {
+                request.setPipelined(true);
+            }
+            if (cmd.hasOption("col")) {
+                request.setColumnarResponse(true);
+            }
+            
+            if (cmd.hasOption("rs")) {
+                resultStoreFileName = cmd.getOptionValue("rs");
+            }
+            if (cmd.hasOption("rsa")) {
+                resultStoreMaxAgeMs = TimeUnit.HOURS.toMillis(
+                        Long.valueOf(cmd.getOptionValue("rsa")));
+            }
+            if (cmd.hasOption("rss")) {
+                resultStoreStaleAgeMs = TimeUnit.HOURS.toMillis(
+                        Long.valueOf(cmd.getOptionValue("rss")));
+            }
+            
+            if (cmd.hasOption("nc")) {
+                negativeCacheFileName = cmd.getOptionValue("nc");
+            }
+            if (cmd.hasOption("nci")) {
+                negativeCacheRecheckMs = TimeUnit.HOURS.toMillis(
+                        Long.valueOf(cmd.getOptionValue("nci")));
+            }
+            if (cmd.hasOption("ncs")) {
+                negativeCacheSize = Long.valueOf(cmd.getOptionValue("ncs"));
+            }
+            if (cmd.hasOption("ncf")) {
+                negativeCacheFpp = Double.valueOf(cmd.getOptionValue("ncf"));
+            }
+            
+            if (cmd.hasOption("to")) {
+                request.setTimeout(Long.valueOf(cmd.getOptionValue("to")));
+            }
+            
+            if (cmd.hasOption("rto")) {
+                request.setReferenceTimeout(
+                        Long.valueOf(cmd.getOptionValue("rto")));
+            }
             /**
              * Optional process settings
              */
@@ -228,6 +659,36 @@ public class MainApp {
                outputFileName = cmd.getOptionValue("o");
             } 
 
+            if (cmd.hasOption("rc")) {
+               candidateFileName = cmd.getOptionValue("rc");
+            }
+
+            if (cmd.hasOption("cp")) {
+               checkpointFileName = cmd.getOptionValue("cp");
+            }
+
+            if (cmd.hasOption("re")) {
+               if (checkpointFileName == null) {
+                   throw new MissingOptionException(
+                           "Checkpoint journal not specified");
+               }
+               resume = true;
+            }
+
+            if (cmd.hasOption("cpi")) {
+               checkpointIntervalMs = TimeUnit.SECONDS.toMillis(
+                       Long.valueOf(cmd.getOptionValue("cpi")));
+            }
+
+            if (cmd.hasOption("pi")) {
+               progressIntervalMs = TimeUnit.SECONDS.toMillis(
+                       Long.valueOf(cmd.getOptionValue("pi")));
+            }
+
+            if (cmd.hasOption("sl")) {
+               slowLogCapacity = Integer.valueOf(cmd.getOptionValue("sl"));
+            }
+
             // Return initialized request
             return request;
             
@@ -239,6 +700,170 @@ public class MainApp {
         }
     }
     
+    /**
+     * Read the input references, or the references of the requested shard.
+     * 
+     * @param cmd Parsed arguments
+     * @param partitioning Partitioning of the input
+     * @return The references to match
+     */
+    private static List<ReferenceData> readReferences(CommandLine cmd,
+            Partitioning partitioning) throws ParseException, IOException {
+        // Check required input type option
+        if (!cmd.hasOption("it")) {
+           throw new MissingOptionException("Input type not specified");
+        }
+
+         // Check required input value option
+        if (!cmd.hasOption("i")) {
+           throw new MissingOptionException("Input value not specified");
+        }
+
+        // Validate given input type
+        String typeCode = cmd.getOptionValue("it");
+        inputType = InputType.getByCode(typeCode);
+        if (inputType == null) {
+            List<String> okVals = Arrays.asList(
+                InputType.values()).stream()
+                    .map(o-> {return o.getCode();})
+                    .collect(Collectors.toList());
+ 
+            throw new ParseException("Invalid input type specified: " + 
+                    typeCode + ". Valid types are: " + okVals);
+        }
+        
+        inputValue = cmd.getOptionValue("i");
+        
+        if (cmd.hasOption("d")) {
+            delimiter = cmd.getOptionValue("d");
+        }
+        
+        // Read the references with input type and value
+        List<ReferenceData> references;
+        if (cmd.hasOption("mm") && !Utils.isLineDelimiter(delimiter)) {
+            LOGGER.warn("Only line-delimited input can be memory-mapped, "
+                    + "reading the input file instead");
+        }
+        if (cmd.hasOption("mm") && inputType == InputType.FILE
+                && Utils.isLineDelimiter(delimiter)) {
+            references = new MappedInputParser(
+                    Runtime.getRuntime().availableProcessors())
+                            .parse(new File(inputValue));
+        } else {
+            references = Utils.parseInputReferences(
+                    inputType, inputValue, delimiter);
+        }
+        if (cmd.hasOption("sh")) {
+            shard = parseShard(cmd.getOptionValue("sh"), partitioning);
+            int total = references.size();
+            references = shard.select(references);
+            LOGGER.info(String.format("Matching shard %s with %d of %d "
+                    + "references.", shard, references.size(), total));
+        }
+        return references;
+    }
+    
+    /**
+     * Describe the input of the matching run for the checkpoint journal:
+     * the digest of the input, the delimiter and the shard.
+     * 
+     * @return Input description
+     */
+    private static String describeInput() throws IOException {
+        String digest;
+        if (inputType == InputType.FILE) {
+            try (InputStream in = new FileInputStream(inputValue)) {
+                digest = CheckpointJournal.digest(in);
+            }
+        } else {
+            digest = CheckpointJournal.digest(new ByteArrayInputStream(
+                    inputValue.getBytes(StandardCharsets.UTF_8)));
+        }
+        return String.format("input=%s;delimiter=%s;shard=%s", digest,
+                delimiter, shard);
+    }
+    
+    /**
+     * Re-score recorded candidates under the requested thresholds and output
+     * the results of all combinations as JSON.
+     * 
+     * @param cmd Parsed arguments
+     */
+    private static void sweep(CommandLine cmd)
+            throws ParseException, IOException {
+        double[] candidateMinScores = parseThresholds(cmd, "ct",
+                MatchRequest.DEFAULT_CAND_MIN_SCORE);
+        double[] unstructuredMinScores = parseThresholds(cmd, "ut",
+                MatchRequest.DEFAULT_UNSTR_MIN_SCORE);
+        double[] structuredMinScores = parseThresholds(cmd, "st",
+                MatchRequest.DEFAULT_STR_MIN_SCORE);
+        int sweepThreads = cmd.hasOption("t")
+                ? Integer.valueOf(cmd.getOptionValue("t"))
+                : Runtime.getRuntime().availableProcessors();
+        if (cmd.hasOption("o")) {
+            outputFileName = cmd.getOptionValue("o");
+        }
+        
+        List<SweepResult> results = ThresholdSweep.sweep(
+                new File(cmd.getOptionValue("sw")), candidateMinScores,
+                unstructuredMinScores, structuredMinScores, sweepThreads);
+        
+        JSONArray json = new JSONArray();
+        results.forEach(r -> json.put(r.toJSON()));
+        try (Writer writer = new OutputStreamWriter(openOutput(),
+                StandardCharsets.UTF_8)) {
+            writer.write(json.toString(2));
+            if (outputFileName == null) {
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+    
+    /**
+     * Merge the outputs of shards into the input order, and output the
+     * merged results.
+     * 
+     * @param cmd Parsed arguments
+     * @param partitioning Partitioning of the input
+     */
+    private static void merge(CommandLine cmd, Partitioning partitioning)
+            throws IOException {
+        if (cmd.hasOption("o")) {
+            outputFileName = cmd.getOptionValue("o");
+        }
+        List<File> shardFiles = Arrays.stream(
+                cmd.getOptionValue("mg").split(","))
+                .map(f -> new File(f.trim()))
+                .collect(Collectors.toList());
+        outputResults(new ShardMerger(partitioning).merge(shardFiles,
+                outputFormat));
+    }
+    
+    private static Shard parseShard(String spec, Partitioning partitioning)
+            throws ParseException {
+        try {
+            return Shard.parse(spec, partitioning);
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException(ex.getMessage());
+        }
+    }
+    
+    private static double[] parseThresholds(CommandLine cmd, String option,
+            double defaultValue) throws ParseException {
+        if (!cmd.hasOption(option)) {
+            return new double[]{defaultValue};
+        }
+        try {
+            return Arrays.stream(cmd.getOptionValue(option).split(","))
+                    .map(String::trim)
+                    .mapToDouble(Double::parseDouble)
+                    .toArray();
+        } catch (NumberFormatException ex) {
+            throw new ParseException("Invalid thresholds specified: "
+                    + cmd.getOptionValue(option));
+        }
+    }
+    
     /**
      * Display command line option help text.
      * 
@@ -257,18 +882,38 @@ public class MainApp {
      * @param response The matching response
      */
     private static void outputResults(MatchResponse response) {
-        JSONArray results = response.toJSON();
-        
-        if (outputFileName != null) {
-            try {
-                FileUtils.writeStringToFile(new File(outputFileName),
-                        results.toString(2), "UTF-8");
-            } catch (IOException ex) {
-                LOGGER.error("Error writing output file: " + ex.getMessage(), ex);
+        try (OutputStream out = openOutput()) {
+            if (outputFormat == OutputFormat.BINARY) {
+                MatchResultWriter.write(response, out);
+            } else {
+                Writer writer = new OutputStreamWriter(out,
+                        StandardCharsets.UTF_8);
+                writer.write(response.toJSON().toString(2));
+                if (outputFileName == null) {
+                    writer.write(System.lineSeparator());
+                }
+                writer.flush();
             }
-        } else {
-            System.out.println(results.toString(2));
+        } catch (IOException ex) {
+            LOGGER.error("Error writing output: " + ex.getMessage(), ex);
+        }
+    }
+    
+    /**
+     * Open the output file, or the standard output if there is no output
+     * file, compressing it if requested.
+     * 
+     * @return Output stream
+     */
+    private static OutputStream openOutput() throws IOException {
+        if (outputFileName != null) {
+            File file = new File(outputFileName);
+            return (outputCodec == null) ?
+                    Codec.openOutput(file) :
+                    Codec.openOutput(file, outputCodec);
         }
+        OutputStream out = new CloseShieldOutputStream(System.out);
+        return (outputCodec == null) ? out : outputCodec.compress(out);
     }
     
 }
\ No newline at end of file
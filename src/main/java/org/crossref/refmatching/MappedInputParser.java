@@ -0,0 +1,182 @@
+package org.crossref.refmatching;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.log4j.Logger;
+import org.crossref.common.utils.LogUtils;
+
+/**
+ * Parses large line-delimited input files by memory-mapping them. The file
+ * is split into newline-aligned chunks, which are split into raw line
+ * references in parallel on a dedicated thread pool. The references keep
+ * their ordinals, and are returned in the input order. As with
+ * {@link Utils#parseInputReferences(byte[], String)}, the references are
+ * only parsed when they are matched.
+ * 
+ * Files that cannot be mapped, because they are compressed or contain
+ * a JSON array, are parsed with {@link Utils}.
+ */
+public class MappedInputParser {
+    
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+    private static final String LINE_DELIMITER = "\r?\n";
+    private static final Logger LOGGER = LogUtils.getLogger();
+    
+    private final int numThreads;
+    private final int chunkSize;
+    private long maxRegionSize = Integer.MAX_VALUE;
+    
+    public MappedInputParser(int numThreads) {
+        this(numThreads, DEFAULT_CHUNK_SIZE);
+    }
+    
+    public MappedInputParser(int numThreads, int chunkSize) {
+        this.numThreads = Math.max(1, numThreads);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+    
+    /**
+     * Set the maximum size of a single mapping. Files larger than this are
+     * mapped as several newline-aligned regions.
+     * 
+     * @param maxRegionSize Size in bytes
+     */
+    void setMaxRegionSize(long maxRegionSize) {
+        this.maxRegionSize = maxRegionSize;
+    }
+    
+    /**
+     * Parse the references of a line-delimited file.
+     * 
+     * @param file Input file
+     * @return A list of references, in the input order
+     * @throws IOException if the file cannot be read
+     */
+    public List<ReferenceData> parse(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            if (!isMappable(channel)) {
+                LOGGER.debug("Input file cannot be mapped, reading it: "
+                        + file);
+                return Utils.parseInputReferences(InputType.FILE,
+                        file.getPath(), LINE_DELIMITER);
+            }
+            
+            ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+            try {
+                List<Future<List<ReferenceData>>> chunks = new ArrayList<>();
+                long position = 0;
+                long size = channel.size();
+                while (position < size) {
+                    long length = Math.min(size - position, maxRegionSize);
+                    ByteBuffer region = channel.map(
+                            FileChannel.MapMode.READ_ONLY, position, length);
+                    int end = (int) length;
+                    if (position + length < size) {
+                        end = lastLineEnd(region, end);
+                        if (end < 0) {
+                            throw new IOException(
+                                    "Input line too long to be mapped");
+                        }
+                    }
+                    submitChunks(pool, region, end, chunks);
+                    position += end;
+                }
+                
+                List<ReferenceData> refs = new ArrayList<>();
+                for (Future<List<ReferenceData>> chunk : chunks) {
+                    refs.addAll(chunk.get());
+                }
+                Utils.trimTrailingEmptyLines(refs);
+                for (int i = 0; i < refs.size(); i++) {
+                    refs.get(i).setOrdinal(i);
+                }
+                return refs;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Input parsing interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IOException("Error parsing input", ex.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+    
+    /**
+     * Split a region into newline-aligned chunks and submit them.
+     */
+    private void submitChunks(ExecutorService pool, ByteBuffer region,
+            int end, List<Future<List<ReferenceData>>> chunks) {
+        int start = 0;
+        while (start < end) {
+            int chunkEnd = end;
+            if (end - start > chunkSize) {
+                chunkEnd = nextLineEnd(region, start + chunkSize, end);
+            }
+            int from = start;
+            int to = chunkEnd;
+            chunks.add(pool.submit(() -> {
+                List<ReferenceData> refs = new ArrayList<>();
+                Utils.splitLines(region, from, to, refs);
+                return refs;
+            }));
+            start = chunkEnd;
+        }
+    }
+    
+    /**
+     * Check whether the file is plain line-delimited input.
+     */
+    private boolean isMappable(FileChannel channel) throws IOException {
+        if (channel.size() == 0) {
+            return false;
+        }
+        InputStream in = new BufferedInputStream(
+                Channels.newInputStream(channel.position(0)));
+        if (Codec.detect(in) != Codec.NONE) {
+            return false;
+        }
+        int c;
+        while ((c = in.read()) >= 0 && c <= ' ') {
+            // skip leading whitespace
+        }
+        return c != '[';
+    }
+    
+    /**
+     * Get the position after the first line break at or after a position.
+     */
+    private static int nextLineEnd(ByteBuffer data, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (data.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+    
+    /**
+     * Get the position after the last line break before a position.
+     */
+    private static int lastLineEnd(ByteBuffer data, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (data.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,276 @@
+package org.crossref.refmatching;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent single-reference match calls into batches. The
+ * references submitted with the same settings within a short window are
+ * matched together in one request, so that identical references are only
+ * matched once, and the batch shares one scheduling pass and one round of
+ * cache lookups. Every caller gets its own future, completed when its
+ * batch is matched. Identical references may differ in case, spacing or
+ * accents, so only the result is shared: the link of every caller holds
+ * the reference it submitted.
+ *
+ * A batch is matched when its window expires, or as soon as it reaches the
+ * maximum size. The timeout of the settings counts from the first
+ * submission to the batch, so the time spent in the window is part of it.
+ */
+public class MatchCoalescer implements Closeable {
+
+    public static final long DEFAULT_WINDOW_MS = 2;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final ReferenceMatcher matcher;
+    private final long windowMicros;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService dispatcher = Executors.newCachedThreadPool();
+    private final Map<String, Batch> pending = new HashMap<>();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private volatile int batchThreads = MatchRequest.DEFAULT_NUM_THREADS;
+    private boolean closed = false;
+
+    /**
+     * A caller waiting for the link of the reference it submitted.
+     */
+    private static class Waiter {
+        private final ReferenceData data;
+        private final CompletableFuture<ReferenceLink> future;
+
+        private Waiter(ReferenceData data,
+                CompletableFuture<ReferenceLink> future) {
+            this.data = data;
+            this.future = future;
+        }
+    }
+
+    /**
+     * References collected within one window, with the same settings.
+     */
+    private static class Batch {
+        private final MatchRequest settings;
+        private final List<ReferenceData> references = new ArrayList<>();
+        private final List<List<Waiter>> waiters = new ArrayList<>();
+        private final Map<ReferenceFingerprint, Integer> indexes =
+                new HashMap<>();
+        private final long createdNanos = System.nanoTime();
+
+        private Batch(MatchRequest settings) {
+            this.settings = settings;
+        }
+    }
+
+    /**
+     * Create a coalescer.
+     *
+     * @param matcher Initialized matcher
+     * @param windowMs The time references are collected for, in
+     * milliseconds, may be fractional
+     * @param maxBatchSize The maximum number of distinct references in a
+     * batch
+     */
+    public MatchCoalescer(ReferenceMatcher matcher, double windowMs,
+            int maxBatchSize) {
+        this.matcher = matcher;
+        this.windowMicros = Math.max(1, (long) (windowMs * 1000));
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Set the number of threads batches are matched with.
+     *
+     * @param batchThreads The number of threads
+     */
+    public void setBatchThreads(int batchThreads) {
+        this.batchThreads = batchThreads;
+    }
+
+    /**
+     * Submit a reference for matching.
+     *
+     * @param data The reference
+     * @param settings Request with the match settings, its references are
+     * ignored
+     * @return The future link of the reference, failed with a
+     * {@link MatchException} if the coalescer is closed
+     */
+    public CompletableFuture<ReferenceLink> submit(ReferenceData data,
+            MatchRequest settings) {
+        CompletableFuture<ReferenceLink> future = new CompletableFuture<>();
+        String key = getBatchKey(settings);
+        ReferenceFingerprint fingerprint =
+                ReferenceFingerprint.of(data.getReference(), key);
+
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                future.completeExceptionally(
+                        new MatchException("Match coalescer is closed"));
+                return future;
+            }
+            submittedCount.incrementAndGet();
+            Batch batch = pending.get(key);
+            if (batch == null) {
+                Batch created = new Batch(settings);
+                pending.put(key, created);
+                timer.schedule(() -> expire(key, created), windowMicros,
+                        TimeUnit.MICROSECONDS);
+                batch = created;
+            }
+            Integer index = batch.indexes.get(fingerprint);
+            if (index == null) {
+                index = batch.references.size();
+                batch.indexes.put(fingerprint, index);
+                batch.references.add(data);
+                batch.waiters.add(new ArrayList<>(1));
+            } else {
+                duplicateCount.incrementAndGet();
+            }
+            batch.waiters.get(index).add(new Waiter(data, future));
+            if (batch.references.size() >= maxBatchSize) {
+                pending.remove(key);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+
+    /**
+     * Describe the settings references can be batched under.
+     */
+    private String getBatchKey(MatchRequest settings) {
+        return matcher.getConfigKey(settings)
+                + ";to=" + settings.getTimeout()
+                + ";rto=" + settings.getReferenceTimeout()
+                + ";pl=" + settings.isPipelined()
+                + ";h=" + settings.getHeaders()
+                + ";tn=" + settings.getTenant()
+                + ";pr=" + settings.getPriority().getCode();
+    }
+
+    private void expire(String key, Batch batch) {
+        synchronized (this) {
+            // The batch may have been dispatched when it got full
+            if (pending.get(key) != batch) {
+                return;
+            }
+            pending.remove(key);
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch batch) {
+        batchCount.incrementAndGet();
+        try {
+            dispatcher.execute(() -> {
+                try {
+                    complete(batch, match(batch));
+                } catch (RuntimeException ex) {
+                    fail(batch, ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            fail(batch, new MatchException("Match coalescer is closed", ex));
+        }
+    }
+
+    private List<ReferenceLink> match(Batch batch) {
+        long timeout = batch.settings.getTimeout();
+        long remaining = timeout - TimeUnit.NANOSECONDS.toMillis(
+                System.nanoTime() - batch.createdNanos);
+        if (timeout > 0 && remaining <= 0) {
+            // Timed out in the window, a non-positive timeout means no limit
+            List<ReferenceLink> links = new ArrayList<>();
+            for (ReferenceData data : batch.references) {
+                links.add(new ReferenceLink(data, null, 0.0,
+                        MatchStatus.TIMED_OUT));
+            }
+            return links;
+        }
+        MatchRequest request = batch.settings.withReferences(batch.references);
+        request.setNumThreads(batchThreads);
+        if (timeout > 0) {
+            request.setTimeout(remaining);
+        }
+        return matcher.match(request).getMatchedLinks();
+    }
+
+    private void complete(Batch batch, List<ReferenceLink> links) {
+        for (int i = 0; i < batch.waiters.size(); i++) {
+            ReferenceLink link = links.get(i);
+            for (Waiter waiter : batch.waiters.get(i)) {
+                waiter.future.complete(new ReferenceLink(waiter.data,
+                        link.getDOI(), link.getScore(), link.getStatus(),
+                        link.getSource(), link.getDegradationLevel()));
+            }
+        }
+    }
+
+    private void fail(Batch batch, Exception ex) {
+        batch.waiters.forEach(w -> w.forEach(
+                waiter -> waiter.future.completeExceptionally(ex)));
+    }
+
+    /**
+     * Get the number of references submitted.
+     *
+     * @return The number of references
+     */
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * Get the number of submitted references that were identical to a
+     * reference already in their batch, and were not matched again.
+     *
+     * @return The number of references
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Get the number of batches matched.
+     *
+     * @return The number of batches
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Match the pending batches and stop accepting new ones. References
+     * submitted afterwards fail immediately.
+     */
+    @Override
+    public void close() {
+        List<Batch> batches;
+        synchronized (this) {
+            closed = true;
+            batches = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        batches.forEach(this::dispatch);
+        timer.shutdownNow();
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,209 @@
+package org.crossref.refmatching;
+
+import jdk.jfr.EventType;
+
+/**
+ * Emits the JDK Flight Recorder events of the matcher:
+ * {@link ReferenceMatchedEvent}, {@link CandidateSearchEvent} and
+ * {@link CandidateValidationEvent}. Nothing is allocated and no event class
+ * is loaded unless a recording has the event enabled, so the calls are free
+ * when recording is off, and harmless on Java 8 runtimes without the
+ * jdk.jfr API.
+ *
+ * An event is started with one of the begin methods, which returns null if
+ * it is not recorded, and committed with the corresponding end method,
+ * which ignores null.
+ */
+final class MatchEvents {
+
+    static final String NAME_PREFIX = "org.crossref.refmatching.";
+    static final String CATEGORY = "Reference Matching";
+    private static final int MAX_REFERENCE_LENGTH = 200;
+    private static final boolean AVAILABLE = isAvailable();
+
+    private MatchEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false,
+                    MatchEvents.class.getClassLoader());
+            return Jfr.REFERENCE != null;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Everything referring to the jdk.jfr API, initialized only once it is
+     * known to be present.
+     */
+    private static final class Jfr {
+        private static final EventType REFERENCE =
+                EventType.getEventType(ReferenceMatchedEvent.class);
+        private static final EventType SEARCH =
+                EventType.getEventType(CandidateSearchEvent.class);
+        private static final EventType VALIDATION =
+                EventType.getEventType(CandidateValidationEvent.class);
+
+        private static Object beginReference() {
+            if (!REFERENCE.isEnabled()) {
+                return null;
+            }
+            ReferenceMatchedEvent event = new ReferenceMatchedEvent();
+            event.begin();
+            return event;
+        }
+
+        private static void endReference(Object started, ReferenceData query,
+                ReferenceLink link) {
+            ReferenceMatchedEvent event = (ReferenceMatchedEvent) started;
+            event.end();
+            if (!event.shouldCommit()) {
+                return;
+            }
+            Reference reference = query.getReference();
+            event.referenceType = reference.getType().name();
+            event.reference = truncate(reference.getFormattedString());
+            if (link != null) {
+                event.status = link.getStatus().name();
+                event.source = link.getSource().getCode();
+                event.degradation = link.getDegradationLevel().getCode();
+                event.matched = link.getDOI() != null;
+                event.score = link.getScore();
+            }
+            event.commit();
+        }
+
+        private static Object beginSearch() {
+            if (!SEARCH.isEnabled()) {
+                return null;
+            }
+            CandidateSearchEvent event = new CandidateSearchEvent();
+            event.begin();
+            return event;
+        }
+
+        private static void endSearch(Object started, ReferenceType type,
+                int rows, int queryLength, int results, boolean failed) {
+            CandidateSearchEvent event = (CandidateSearchEvent) started;
+            event.end();
+            if (!event.shouldCommit()) {
+                return;
+            }
+            event.referenceType = type.name();
+            event.rows = rows;
+            event.queryLength = queryLength;
+            event.results = results;
+            event.failed = failed;
+            event.commit();
+        }
+
+        private static Object beginValidation() {
+            if (!VALIDATION.isEnabled()) {
+                return null;
+            }
+            CandidateValidationEvent event = new CandidateValidationEvent();
+            event.begin();
+            return event;
+        }
+
+        private static void endValidation(Object started, ReferenceType type,
+                int candidates, int scored, double bestScore,
+                boolean accepted) {
+            CandidateValidationEvent event =
+                    (CandidateValidationEvent) started;
+            event.end();
+            if (!event.shouldCommit()) {
+                return;
+            }
+            event.referenceType = type.name();
+            event.candidates = candidates;
+            event.scored = scored;
+            event.bestScore = bestScore;
+            event.accepted = accepted;
+            event.commit();
+        }
+    }
+
+    private static String truncate(String string) {
+        return (string == null || string.length() <= MAX_REFERENCE_LENGTH) ?
+                string : string.substring(0, MAX_REFERENCE_LENGTH);
+    }
+
+    /**
+     * Start the event of matching a reference.
+     *
+     * @return The event, or null if it is not recorded
+     */
+    static Object beginReference() {
+        return AVAILABLE ? Jfr.beginReference() : null;
+    }
+
+    /**
+     * Commit the event of matching a reference.
+     *
+     * @param event The event returned by {@link #beginReference()}, or null
+     * @param query The reference
+     * @param link The result, or null if the matching failed
+     */
+    static void endReference(Object event, ReferenceData query,
+            ReferenceLink link) {
+        if (event != null) {
+            Jfr.endReference(event, query, link);
+        }
+    }
+
+    /**
+     * Start the event of an API search.
+     *
+     * @return The event, or null if it is not recorded
+     */
+    static Object beginSearch() {
+        return AVAILABLE ? Jfr.beginSearch() : null;
+    }
+
+    /**
+     * Commit the event of an API search.
+     *
+     * @param event The event returned by {@link #beginSearch()}, or null
+     * @param type The type of the reference searched for
+     * @param rows The number of results requested
+     * @param queryLength The length of the query
+     * @param results The number of results returned
+     * @param failed Whether the API call failed
+     */
+    static void endSearch(Object event, ReferenceType type, int rows,
+            int queryLength, int results, boolean failed) {
+        if (event != null) {
+            Jfr.endSearch(event, type, rows, queryLength, results, failed);
+        }
+    }
+
+    /**
+     * Start the event of validating candidates.
+     *
+     * @return The event, or null if it is not recorded
+     */
+    static Object beginValidation() {
+        return AVAILABLE ? Jfr.beginValidation() : null;
+    }
+
+    /**
+     * Commit the event of validating candidates.
+     *
+     * @param event The event returned by {@link #beginValidation()}, or null
+     * @param type The type of the reference validated
+     * @param candidates The number of candidates
+     * @param scored The number of candidates scored
+     * @param bestScore The best validation score
+     * @param accepted Whether the best candidate was accepted
+     */
+    static void endValidation(Object event, ReferenceType type,
+            int candidates, int scored, double bestScore, boolean accepted) {
+        if (event != null) {
+            Jfr.endValidation(event, type, candidates, scored, bestScore,
+                    accepted);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package org.crossref.refmatching;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+import org.crossref.common.utils.LogUtils;
+import org.json.JSONArray;
+
+/**
+ * Staged execution of a match request. Query building, API search,
+ * candidate parsing with validation, and result emitting run as separate
+ * stages connected by bounded queues. The search stage runs on an I/O pool
+ * sized by the number of request threads, and the validation stage runs on
+ * a CPU pool sized to the available processors. A full queue blocks the
+ * stage feeding it, so neither unsent queries nor unvalidated search results
+ * pile up in memory.
+ */
+class MatchPipeline {
+
+    private static final int QUEUE_CAPACITY_PER_THREAD = 4;
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final ReferenceMatcher matcher;
+    private final CandidateSelector selector;
+    private final CandidateValidator validator;
+    private final PipelineMetrics metrics;
+
+    /**
+     * A reference travelling through the stages.
+     */
+    private static class Job {
+        private final int ordinal;
+        private final ReferenceData data;
+        private final List<SearchPass> passes;
+        private final DegradationLevel level;
+        private final String[] queries;
+        private final JSONArray[] items;
+        private final long[] searchNanos;
+        private final SlowReferenceLog.Trace trace =
+                new SlowReferenceLog.Trace();
+        private final long startNanos = System.nanoTime();
+        private final Object event = MatchEvents.beginReference();
+        private ReferenceFingerprint fingerprint;
+        private Deadline deadline;
+        private ReferenceLink link;
+        private volatile boolean searchFailed = false;
+
+        private Job(int ordinal, ReferenceData data, List<SearchPass> passes,
+                DegradationLevel level) {
+            this.ordinal = ordinal;
+            this.data = data;
+            this.passes = passes;
+            this.level = level;
+            this.queries = new String[passes.size()];
+            this.items = new JSONArray[passes.size()];
+            this.searchNanos = new long[passes.size()];
+        }
+    }
+
+    /**
+     * Marks the end of the input of a stage.
+     */
+    private static final Job END = new Job(-1, null,
+            Collections.<SearchPass>emptyList(), DegradationLevel.NORMAL);
+
+    /**
+     * Stage body, which may block on queues.
+     */
+    private interface StageTask {
+        void run() throws InterruptedException;
+    }
+
+    MatchPipeline(ReferenceMatcher matcher, CandidateSelector selector,
+            CandidateValidator validator, PipelineMetrics metrics) {
+        this.matcher = matcher;
+        this.selector = selector;
+        this.validator = validator;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Match the references of a request.
+     *
+     * @param request Match request
+     * @param references The references to match
+     * @param order Reference indexes, in dispatch order
+     * @param deadline The request deadline
+     * @param configKey Matcher configuration key, or null if there are no
+     * result caches
+     * @param links Collects the links of the references matched before the
+     * deadline expired
+     */
+    void run(MatchRequest request, List<ReferenceData> references,
+            int[] order, Deadline deadline, String configKey,
+            LinkCollector links)
+            throws InterruptedException, ExecutionException {
+        int ioThreads = Math.max(1, request.getNumThreads());
+        int cpuThreads = Runtime.getRuntime().availableProcessors();
+        Map<String, String> headers = request.getHeaders();
+
+        BlockingQueue<Job> searchQueue = new ArrayBlockingQueue<>(
+                ioThreads * QUEUE_CAPACITY_PER_THREAD);
+        BlockingQueue<Job> validateQueue = new ArrayBlockingQueue<>(
+                cpuThreads * QUEUE_CAPACITY_PER_THREAD);
+        BlockingQueue<Job> emitQueue = new ArrayBlockingQueue<>(
+                cpuThreads * QUEUE_CAPACITY_PER_THREAD);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService buildPool = Executors.newSingleThreadExecutor();
+        ExecutorService ioPool = Executors.newFixedThreadPool(ioThreads);
+        ExecutorService cpuPool = Executors.newFixedThreadPool(cpuThreads);
+        try {
+            // Build stage: plan search passes and build queries
+            buildPool.submit(stage(failure, () -> {
+                for (int k = 0; k < order.length && !deadline.isExpired();
+                        k++) {
+                    long start = System.nanoTime();
+                    int i = order[k];
+                    ReferenceData data = references.get(i);
+                    ReferenceFingerprint key =
+                            matcher.fingerprint(data, configKey);
+                    ReferenceLink stored = matcher.getCachedLink(data, key);
+                    if (stored != null) {
+                        // Cached results go straight to the emit stage
+                        Job job = new Job(i, data,
+                                Collections.<SearchPass>emptyList(),
+                                stored.getDegradationLevel());
+                        job.link = stored;
+                        metrics.getBuild().recordProcessed(start);
+                        put(emitQueue, job, metrics.getEmit());
+                        continue;
+                    }
+                    DegradationLevel level = matcher.getDegradationLevel();
+                    Job job = new Job(i, data, matcher.planSearches(
+                            data.getReference(), request, level), level);
+                    job.fingerprint = key;
+                    for (int p = 0; p < job.passes.size(); p++) {
+                        job.queries[p] = selector.getQuery(
+                                job.passes.get(p).getReference());
+                    }
+                    metrics.getBuild().recordProcessed(start);
+                    put(searchQueue, job, metrics.getSearch());
+                }
+                for (int t = 0; t < ioThreads; t++) {
+                    searchQueue.put(END);
+                }
+            }));
+
+            // Search stage: call the API, the reference budget starts here
+            AtomicInteger searchers = new AtomicInteger(ioThreads);
+            for (int t = 0; t < ioThreads; t++) {
+                ioPool.submit(stage(failure, () -> {
+                    Job job;
+                    while ((job = searchQueue.take()) != END) {
+                        metrics.getSearch().recordDequeued();
+                        long start = System.nanoTime();
+                        job.deadline = request.newReferenceDeadline();
+                        for (int k = 0; k < job.passes.size()
+                                && !job.deadline.isExpired(); k++) {
+                            if (!StringUtils.isEmpty(job.queries[k])) {
+                                long searchStart = System.nanoTime();
+                                SearchPass pass = job.passes.get(k);
+                                job.items[k] = selector.searchWorks(
+                                        job.queries[k], pass.getRows(),
+                                        headers,
+                                        pass.getReference().getType());
+                                if (job.items[k] == null) {
+                                    job.searchFailed = true;
+                                }
+                                matcher.recordSearch(searchStart);
+                                job.searchNanos[k] =
+                                        System.nanoTime() - searchStart;
+                            }
+                        }
+                        metrics.getSearch().recordProcessed(start);
+                        put(validateQueue, job, metrics.getValidate());
+                    }
+                    if (searchers.decrementAndGet() == 0) {
+                        for (int c = 0; c < cpuThreads; c++) {
+                            validateQueue.put(END);
+                        }
+                    }
+                }));
+            }
+
+            // Validation stage: parse candidates and choose the best one
+            for (int t = 0; t < cpuThreads; t++) {
+                cpuPool.submit(stage(failure, () -> {
+                    Job job;
+                    while ((job = validateQueue.take()) != END) {
+                        metrics.getValidate().recordDequeued();
+                        long start = System.nanoTime();
+                        Candidate candidate = null;
+                        for (int k = 0; k < job.passes.size(); k++) {
+                            if (job.items[k] == null) {
+                                continue;
+                            }
+                            SearchPass pass = job.passes.get(k);
+                            long validationStart = System.nanoTime();
+                            List<Candidate> candidates =
+                                    selector.selectCandidates(job.queries[k],
+                                            job.items[k],
+                                            request.getCandidateMinScore());
+                            candidate = ReferenceMatcher.chooseBetter(candidate,
+                                    validator.chooseCandidate(
+                                            pass.getReference(), candidates,
+                                            pass.getMinScore(), job.deadline));
+                            job.trace.addPass(pass.getRows(),
+                                    job.searchNanos[k],
+                                    System.nanoTime() - validationStart,
+                                    candidates.size());
+                        }
+                        job.link = matcher.createLink(job.data, candidate,
+                                job.deadline, job.level, job.searchFailed);
+                        matcher.cacheLink(job.fingerprint, job.link);
+                        metrics.getValidate().recordProcessed(start);
+                        put(emitQueue, job, metrics.getEmit());
+                    }
+                }));
+            }
+
+            // Emit stage: collect the links in the calling thread
+            int received = 0;
+            while (received < order.length && !deadline.isExpired()) {
+                Throwable ex = failure.get();
+                if (ex != null) {
+                    throw new ExecutionException(ex);
+                }
+                Job job = emitQueue.poll(Math.min(deadline.remainingMs(),
+                        POLL_INTERVAL_MS), TimeUnit.MILLISECONDS);
+                if (job == null) {
+                    continue;
+                }
+                metrics.getEmit().recordDequeued();
+                long start = System.nanoTime();
+                links.record(job.ordinal, job.link);
+                matcher.recordReference(job.data.getReference().getType(),
+                        job.startNanos);
+                MatchEvents.endReference(job.event, job.data, job.link);
+                matcher.recordSlow(job.data, job.startNanos, job.trace,
+                        job.link);
+                job.data.release();
+                received++;
+                metrics.getEmit().recordProcessed(start);
+            }
+        } finally {
+            buildPool.shutdownNow();
+            ioPool.shutdownNow();
+            cpuPool.shutdownNow();
+        }
+
+        LOGGER.debug("Pipeline metrics: " + metrics);
+    }
+
+    private static void put(BlockingQueue<Job> queue, Job job,
+            StageMetrics consumer) throws InterruptedException {
+        consumer.recordEnqueued();
+        queue.put(job);
+    }
+
+    private static Runnable stage(AtomicReference<Throwable> failure,
+            StageTask task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error ex) {
+                failure.compareAndSet(null, ex);
+            }
+        };
+    }
+
+}
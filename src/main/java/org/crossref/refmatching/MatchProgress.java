@@ -0,0 +1,281 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.log4j.Logger;
+import org.crossref.common.utils.LogUtils;
+
+/**
+ * The progress of a match request: the number of references completed,
+ * matched to a DOI, left unmatched, and failed (timed out, cancelled, or
+ * with a failed search), the rate at which they are completed, and the
+ * estimated time remaining.
+ *
+ * The workers only increment striped counters, so tracking does not add
+ * contention to the matching. The rolling rate is computed over the last
+ * {@value #RATE_WINDOW_SAMPLES} samples taken by the progress reporting
+ * thread, see {@link #sample()}.
+ */
+public class MatchProgress {
+
+    static final int RATE_WINDOW_SAMPLES = 12;
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final long total;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final long[] sampleNanos = new long[RATE_WINDOW_SAMPLES];
+    private final long[] sampleCounts = new long[RATE_WINDOW_SAMPLES];
+    private int samples = 0;
+    private volatile double rate = 0.;
+    private volatile boolean finished = false;
+
+    /**
+     * Create the progress of a request.
+     *
+     * @param total The number of references to match
+     */
+    public MatchProgress(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Wrap a link collector, so that the progress is updated when the links
+     * are recorded.
+     *
+     * @param links The link collector
+     * @return A link collector updating the progress
+     */
+    LinkCollector tracking(LinkCollector links) {
+        return new LinkCollector() {
+            @Override
+            public void record(int ordinal, ReferenceLink link) {
+                links.record(ordinal, link);
+                MatchProgress.this.record(link);
+            }
+
+            @Override
+            public boolean isRecorded(int ordinal) {
+                return links.isRecorded(ordinal);
+            }
+
+            @Override
+            public MatchResponse toResponse() {
+                return links.toResponse();
+            }
+        };
+    }
+
+    /**
+     * Reports the progress of a request from its own daemon thread, until
+     * closed.
+     */
+    class Reporter implements AutoCloseable {
+        private final ProgressListener listener;
+        private final ScheduledExecutorService timer;
+
+        private Reporter(ProgressListener listener, long intervalMs) {
+            this.listener = listener;
+            this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "match-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleAtFixedRate(this::report, intervalMs, intervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        private void report() {
+            sample();
+            try {
+                listener.onProgress(MatchProgress.this);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Error reporting progress: " + ex.getMessage(),
+                        ex);
+            }
+        }
+
+        /**
+         * Stop the periodic reports, and report the final progress.
+         */
+        @Override
+        public void close() {
+            // Cancels the periodic reports, and lets one in progress finish
+            timer.shutdown();
+            try {
+                timer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            finish();
+            report();
+        }
+    }
+
+    /**
+     * Start reporting the progress periodically.
+     *
+     * @param listener Progress listener
+     * @param intervalMs Reporting interval in milliseconds
+     * @return The reporter, to be closed when the matching ends
+     */
+    Reporter report(ProgressListener listener, long intervalMs) {
+        return new Reporter(listener, intervalMs);
+    }
+
+    /**
+     * Count the link of a completed reference.
+     *
+     * @param link Reference link
+     */
+    void record(ReferenceLink link) {
+        if (link == null || link.getStatus() != MatchStatus.COMPLETED) {
+            failed.increment();
+        } else if (link.getDOI() != null) {
+            matched.increment();
+        } else {
+            unmatched.increment();
+        }
+    }
+
+    /**
+     * Take a sample of the number of references completed, and update the
+     * rolling rate. Called by a single thread at a time.
+     */
+    synchronized void sample() {
+        long now = System.nanoTime();
+        long completed = getCompletedCount();
+        int slot = samples % RATE_WINDOW_SAMPLES;
+        int oldest = (samples < RATE_WINDOW_SAMPLES) ? 0 :
+                (samples + 1) % RATE_WINDOW_SAMPLES;
+        sampleNanos[slot] = now;
+        sampleCounts[slot] = completed;
+        samples++;
+        long elapsed = (samples == 1) ? now - startNanos :
+                now - sampleNanos[oldest];
+        long done = (samples == 1) ? completed :
+                completed - sampleCounts[oldest];
+        rate = (elapsed <= 0) ? 0. : done * 1e9 / elapsed;
+    }
+
+    /**
+     * Mark the request as finished.
+     */
+    void finish() {
+        finished = true;
+    }
+
+    /**
+     * Get the number of references to match.
+     *
+     * @return Reference count
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the number of references completed, whatever their outcome.
+     *
+     * @return Reference count
+     */
+    public long getCompletedCount() {
+        return matched.sum() + unmatched.sum() + failed.sum();
+    }
+
+    /**
+     * Get the number of references matched to a DOI.
+     *
+     * @return Reference count
+     */
+    public long getMatchedCount() {
+        return matched.sum();
+    }
+
+    /**
+     * Get the number of references matched to no DOI.
+     *
+     * @return Reference count
+     */
+    public long getUnmatchedCount() {
+        return unmatched.sum();
+    }
+
+    /**
+     * Get the number of references that timed out, were cancelled, or whose
+     * search failed.
+     *
+     * @return Reference count
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Get the time elapsed since the matching started.
+     *
+     * @return Time in milliseconds
+     */
+    public long getElapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Get the rate at which references were completed recently.
+     *
+     * @return References per second, 0 before the first sample
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Estimate the time needed to complete the remaining references at the
+     * recent rate.
+     *
+     * @return Time in milliseconds, or -1 if it cannot be estimated yet
+     */
+    public long getEtaMs() {
+        long remaining = Math.max(0, total - getCompletedCount());
+        if (remaining == 0) {
+            return 0;
+        }
+        double currentRate = rate;
+        return (currentRate <= 0) ? -1 :
+                (long) (remaining * 1000 / currentRate);
+    }
+
+    /**
+     * Check whether the matching has ended.
+     *
+     * @return A flag
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private static String formatDuration(long ms) {
+        if (ms < 0) {
+            return "unknown";
+        }
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(ms);
+        return String.format("%d:%02d:%02d", seconds / 3600,
+                (seconds / 60) % 60, seconds % 60);
+    }
+
+    @Override
+    public String toString() {
+        long completed = getCompletedCount();
+        return String.format("%s %d of %d references (%.1f%%), matched: %d, "
+                + "unmatched: %d, failed: %d, %.1f refs/s, elapsed: %s, "
+                + "ETA: %s", finished ? "Finished" : "Completed", completed,
+                total, (total == 0) ? 100. : completed * 100. / total,
+                getMatchedCount(), getUnmatchedCount(), getFailedCount(),
+                rate, formatDuration(getElapsedMs()),
+                formatDuration(getEtaMs()));
+    }
+}
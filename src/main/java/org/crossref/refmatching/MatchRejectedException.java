@@ -0,0 +1,24 @@
+package org.crossref.refmatching;
+
+/**
+ * Thrown when a request is not admitted because the matcher is overloaded.
+ * The request was not started and can be retried later.
+ */
+public class MatchRejectedException extends MatchException {
+
+    private final long retryAfterMs;
+    
+    public MatchRejectedException(String msg, long retryAfterMs) {
+        super(msg);
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * Get the suggested time to wait before retrying the request.
+     * 
+     * @return Time in milliseconds
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
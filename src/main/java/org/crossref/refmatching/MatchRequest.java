@@ -18,6 +18,8 @@ public class MatchRequest {
     public static final int DEFAULT_UNSTR_ROWS = 20;
     public static final int DEFAULT_NUM_THREADS = 4;
     public static final int MAX_THREADS = 30;
+    public static final String DEFAULT_TENANT = "default";
+    public static final long DEFAULT_PROGRESS_INTERVAL_MS = 60000;
 
     private double candidateMinScore = DEFAULT_CAND_MIN_SCORE;
     private double unstructuredMinScore = DEFAULT_UNSTR_MIN_SCORE;
@@ -25,6 +27,18 @@ public class MatchRequest {
     private int unstructuredRows = DEFAULT_UNSTR_ROWS;
     private int structuredRows = DEFAULT_STR_ROWS;
     private int numThreads = DEFAULT_NUM_THREADS;
+    private long timeout = 0;
+    private boolean pipelined = false;
+    private boolean columnarResponse = false;
+    private SchedulingPolicy schedulingPolicy = SchedulingPolicy.INPUT_ORDER;
+    private long referenceTimeout = 0;
+    private CheckpointJournal checkpointJournal = null;
+    private ProgressListener progressListener = null;
+    private long progressIntervalMs = DEFAULT_PROGRESS_INTERVAL_MS;
+    private String tenant = DEFAULT_TENANT;
+    private Priority priority = Priority.NORMAL;
+    private final Deadline cancelHandle = Deadline.none();
+    private volatile Deadline deadline = cancelHandle;
     private final Map<String, String> headers = new HashMap<String, String>();
     private final List<ReferenceData> references;
 
@@ -95,6 +109,252 @@ public class MatchRequest {
             MatchRequest.MAX_THREADS), references.size());
     }
     
+    /**
+     * Get the order in which references are dispatched to the workers.
+     * 
+     * @return Scheduling policy
+     */
+    public SchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    /**
+     * Set the order in which references are dispatched to the workers.
+     * The results are returned in the input order regardless of the policy.
+     * 
+     * @param schedulingPolicy Scheduling policy
+     */
+    public void setSchedulingPolicy(SchedulingPolicy schedulingPolicy) {
+        this.schedulingPolicy = schedulingPolicy;
+    }
+
+    /**
+     * Check whether the request is matched with the staged pipeline.
+     * 
+     * @return A flag
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Set whether the request is matched with the staged pipeline, in which
+     * API searches run on a pool of numThreads I/O threads, and candidate
+     * validation on a separate pool sized to the available processors.
+     * 
+     * @param pipelined A flag
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Check whether the results are returned in a {@link ColumnarMatchResponse}.
+     * 
+     * @return A flag
+     */
+    public boolean isColumnarResponse() {
+        return columnarResponse;
+    }
+
+    /**
+     * Set whether the results are returned in a {@link ColumnarMatchResponse},
+     * which stores them compactly and does not retain parsed references.
+     * Recommended for very large batches.
+     * 
+     * @param columnarResponse A flag
+     */
+    public void setColumnarResponse(boolean columnarResponse) {
+        this.columnarResponse = columnarResponse;
+    }
+
+    /**
+     * Get the overall time limit for matching all references.
+     * 
+     * @return Timeout in milliseconds, non-positive means no limit
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set the overall time limit for matching all references. When it
+     * expires, the references matched so far are returned and the remaining
+     * ones are reported as timed out.
+     * 
+     * @param timeout Timeout in milliseconds, non-positive means no limit
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Get the time budget for matching a single reference.
+     * 
+     * @return Timeout in milliseconds, non-positive means no limit
+     */
+    public long getReferenceTimeout() {
+        return referenceTimeout;
+    }
+
+    /**
+     * Set the time budget for matching a single reference. The budget starts
+     * when a worker picks up the reference.
+     * 
+     * @param referenceTimeout Timeout in milliseconds, non-positive means
+     * no limit
+     */
+    public void setReferenceTimeout(long referenceTimeout) {
+        this.referenceTimeout = referenceTimeout;
+    }
+    
+    /**
+     * Get the journal recording the progress of the request.
+     * 
+     * @return Checkpoint journal, or null if the progress is not recorded
+     */
+    public CheckpointJournal getCheckpointJournal() {
+        return checkpointJournal;
+    }
+
+    /**
+     * Set the journal recording the progress of the request. References
+     * journaled in a previous run of the same request are not matched again.
+     * 
+     * @param checkpointJournal Checkpoint journal, or null
+     */
+    public void setCheckpointJournal(CheckpointJournal checkpointJournal) {
+        this.checkpointJournal = checkpointJournal;
+    }
+    
+    /**
+     * Get the listener receiving the progress of the request.
+     * 
+     * @return Progress listener, or null if the progress is not reported
+     */
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Set the listener receiving the progress of the request, every progress
+     * interval and once more when the matching ends. The listener is not
+     * passed on to the requests created with {@link #withReferences(List)}.
+     * 
+     * @param progressListener Progress listener, or null
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Get the interval in which the progress is reported.
+     * 
+     * @return Interval in milliseconds
+     */
+    public long getProgressInterval() {
+        return progressIntervalMs;
+    }
+
+    /**
+     * Set the interval in which the progress is reported.
+     * 
+     * @param progressIntervalMs Interval in milliseconds, positive
+     */
+    public void setProgressInterval(long progressIntervalMs) {
+        if (progressIntervalMs <= 0) {
+            throw new IllegalArgumentException(
+                    "Progress interval must be positive: "
+                            + progressIntervalMs);
+        }
+        this.progressIntervalMs = progressIntervalMs;
+    }
+    
+    /**
+     * Get the consumer the request is matched on behalf of.
+     * 
+     * @return Tenant name
+     */
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * Set the consumer the request is matched on behalf of. Tenants share
+     * a {@link FairScheduler} according to their weights.
+     * 
+     * @param tenant Tenant name
+     */
+    public void setTenant(String tenant) {
+        this.tenant = (tenant == null) ? DEFAULT_TENANT : tenant;
+    }
+
+    /**
+     * Get the priority class of the request.
+     * 
+     * @return Priority class
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Set the priority class of the request, which determines its share of
+     * a {@link FairScheduler}.
+     * 
+     * @param priority Priority class
+     */
+    public void setPriority(Priority priority) {
+        this.priority = (priority == null) ? Priority.NORMAL : priority;
+    }
+    
+    /**
+     * Cancel the request. Outstanding references are not started, and
+     * the references in progress stop at the next check.
+     */
+    public void cancel() {
+        cancelHandle.cancel();
+    }
+    
+    /**
+     * Check whether the request was cancelled.
+     * 
+     * @return A flag
+     */
+    public boolean isCancelled() {
+        return cancelHandle.isCancelled();
+    }
+    
+    /**
+     * Start the overall deadline of the request. Called by the matcher when
+     * the matching starts.
+     * 
+     * @return The request deadline
+     */
+    Deadline startDeadline() {
+        deadline = cancelHandle.child(timeout);
+        return deadline;
+    }
+    
+    /**
+     * Get the overall deadline of the request.
+     * 
+     * @return The request deadline
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+    
+    /**
+     * Create a deadline for a single reference, bounded by both the reference
+     * budget and the overall request deadline.
+     * 
+     * @return A reference deadline
+     */
+    public Deadline newReferenceDeadline() {
+        return deadline.child(referenceTimeout);
+    }
+    
     /**
      * Ad a header to be passed via the CR-API http client
      * @param key
@@ -123,6 +383,31 @@ public class MatchRequest {
         return new HashMap<>(this.headers);
     }
     
+    /**
+     * Create a request for other references, with the settings of this
+     * request. The number of threads is capped by the number of the new
+     * references, and the checkpoint journal is not copied.
+     * 
+     * @param references The references of the new request
+     * @return A new request
+     */
+    public MatchRequest withReferences(List<ReferenceData> references) {
+        MatchRequest request = new MatchRequest(references, candidateMinScore,
+                unstructuredMinScore, structuredMinScore, unstructuredRows,
+                structuredRows);
+        request.setNumThreads(numThreads);
+        request.timeout = timeout;
+        request.referenceTimeout = referenceTimeout;
+        request.pipelined = pipelined;
+        request.columnarResponse = columnarResponse;
+        request.schedulingPolicy = schedulingPolicy;
+        request.tenant = tenant;
+        request.priority = priority;
+        request.progressIntervalMs = progressIntervalMs;
+        request.headers.putAll(headers);
+        return request;
+    }
+    
     /**
      * Get the list of queries associated with the request.
      * @return A list of query objects
@@ -1,5 +1,6 @@
 package org.crossref.refmatching;
 
+import java.util.Collections;
 import java.util.List;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -21,6 +22,16 @@ public class MatchResponse {
         this.request = request;
     }
 
+    /**
+     * Constructor for responses storing the links in their own way, which
+     * override the link accessors.
+     * 
+     * @param request The request
+     */
+    protected MatchResponse(MatchRequest request) {
+        this(request, Collections.<ReferenceLink>emptyList());
+    }
+
     /**
      * Get the initial request arguments used to perform the matching.
      * 
@@ -42,21 +53,60 @@ public class MatchResponse {
     public JSONArray toJSON() {
         JSONArray results = new JSONArray();
         matchedLinks.forEach(
-                r -> {
-                    JSONObject result = new JSONObject();
-                    result.put("reference",
-                            r.getReferenceData().getReference().getType().equals(
-                                    ReferenceType.STRUCTURED) ?
-                            r.getReferenceData().getReference()
-                                    .getMetadataAsJSON() :
-                            r.getReferenceData().getReference()
-                                    .getFormattedString());
-                    result.put("DOI",
-                            (r.getDOI() == null) ? JSONObject.NULL : r.getDOI());
-                    result.put("score", r.getScore());
-                    results.put(result);
-                }
-        );
+                r -> results.put(toJSON(r.getReferenceData(), r.getDOI(),
+                        r.getScore(), r.getStatus(), r.getSource(),
+                        r.getDegradationLevel())));
         return results;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Create the JSON representation of a single result.
+     * 
+     * @param data The reference data
+     * @param doi The matched DOI, or null
+     * @param score Matching score
+     * @param status Match status
+     * @return JSON object
+     */
+    protected static JSONObject toJSON(ReferenceData data, String doi,
+            double score, MatchStatus status) {
+        return toJSON(data, doi, score, status, MatchSource.SEARCH,
+                DegradationLevel.NORMAL);
+    }
+    
+    /**
+     * Create the JSON representation of a single result, with its
+     * provenance. The source and the degradation level are only included
+     * if the reference was not matched normally against the search results.
+     * 
+     * @param data The reference data
+     * @param doi The matched DOI, or null
+     * @param score Matching score
+     * @param status Match status
+     * @param source Match source
+     * @param level Degradation level
+     * @return JSON object
+     */
+    protected static JSONObject toJSON(ReferenceData data, String doi,
+            double score, MatchStatus status, MatchSource source,
+            DegradationLevel level) {
+        JSONObject result = new JSONObject();
+        Reference reference = data.getReference();
+        result.put("reference",
+                reference.getType().equals(ReferenceType.STRUCTURED) ?
+                        reference.getMetadataAsJSON() :
+                        reference.getFormattedString());
+        result.put("DOI", (doi == null) ? JSONObject.NULL : doi);
+        result.put("score", score);
+        if (status != null && status != MatchStatus.COMPLETED) {
+            result.put("status", status.name());
+        }
+        if (source != null && source != MatchSource.SEARCH) {
+            result.put("source", source.getCode());
+        }
+        if (level != null && level != DegradationLevel.NORMAL) {
+            result.put("degradation", level.getCode());
+        }
+        return result;
+    }
+}
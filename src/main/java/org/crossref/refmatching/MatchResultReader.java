@@ -0,0 +1,305 @@
+package org.crossref.refmatching;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads matching results written by {@link MatchResultWriter}.
+ * 
+ * An instance memory-maps a result file: scores, statuses and DOIs are
+ * read directly from the mapped columns, without parsing or copying the
+ * file, and references are read on demand. The columns and the dictionary
+ * must fit in 2GB, which holds for files of up to about 100 million results.
+ * Alternatively, {@link #stream(InputStream, Consumer)} reads the results
+ * sequentially from any stream, including compressed files opened with
+ * {@link Codec#openInput(File)}.
+ */
+public class MatchResultReader implements Closeable {
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final MatchStatus[] STATUSES = MatchStatus.values();
+    private static final MatchSource[] SOURCES = MatchSource.values();
+    private static final DegradationLevel[] LEVELS =
+            DegradationLevel.values();
+    
+    private final FileChannel channel;
+    private final ByteBuffer columns;
+    private final ByteBuffer index;
+    private final int count;
+    private final int codesOffset;
+    private final int statusesOffset;
+    private final int sourcesOffset;
+    private final int levelsOffset;
+    private final int dictionaryOffset;
+    private final int dictionaryDataOffset;
+    
+    /**
+     * Open and memory-map a result file.
+     * 
+     * @param file Result file
+     * @throws IOException if the file cannot be read or is not a result file
+     */
+    public MatchResultReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(
+                    MatchResultWriter.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new EOFException("Truncated result file");
+                }
+            }
+            header.flip();
+            checkHeader(header.getInt(), header.getInt());
+            count = header.getInt();
+            int dictionarySize = header.getInt();
+            long referencesOffset = header.getLong();
+            if (referencesOffset > Integer.MAX_VALUE) {
+                throw new IOException(
+                        "Result columns too large to be memory-mapped");
+            }
+            codesOffset = MatchResultWriter.HEADER_SIZE + 8 * count;
+            statusesOffset = codesOffset + 4 * count;
+            sourcesOffset = statusesOffset + count;
+            levelsOffset = sourcesOffset + count;
+            dictionaryOffset = (int) MatchResultWriter.pad(
+                    levelsOffset + count);
+            dictionaryDataOffset = dictionaryOffset + 4 * (dictionarySize + 1);
+            columns = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    referencesOffset);
+            index = channel.map(FileChannel.MapMode.READ_ONLY,
+                    channel.size() - 8L * count, 8L * count);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Get the number of results.
+     * 
+     * @return The number of results
+     */
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * Get the score of a result.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return Matching score
+     */
+    public double getScore(int ordinal) {
+        return columns.getDouble(MatchResultWriter.HEADER_SIZE + 8 * ordinal);
+    }
+    
+    /**
+     * Get the status of a result.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return Match status
+     */
+    public MatchStatus getStatus(int ordinal) {
+        return STATUSES[columns.get(statusesOffset + ordinal)];
+    }
+    
+    /**
+     * Get the source of a result.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return Match source
+     */
+    public MatchSource getSource(int ordinal) {
+        return SOURCES[columns.get(sourcesOffset + ordinal)];
+    }
+    
+    /**
+     * Get the degradation level a result was matched at.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return Degradation level
+     */
+    public DegradationLevel getDegradationLevel(int ordinal) {
+        return LEVELS[columns.get(levelsOffset + ordinal)];
+    }
+    
+    /**
+     * Get the dictionary code of the DOI of a result. Results with the same
+     * DOI have the same code.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return Dictionary code, or -1 if the reference was not matched
+     */
+    public int getDOICode(int ordinal) {
+        return columns.getInt(codesOffset + 4 * ordinal);
+    }
+    
+    /**
+     * Get the UTF-8 bytes of the DOI of a result, as a read-only view of
+     * the mapped file.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return DOI bytes, or null if the reference was not matched
+     */
+    public ByteBuffer getDOIBytes(int ordinal) {
+        int code = getDOICode(ordinal);
+        if (code == MatchResultWriter.NO_DOI) {
+            return null;
+        }
+        int start = columns.getInt(dictionaryOffset + 4 * code);
+        int end = columns.getInt(dictionaryOffset + 4 * (code + 1));
+        ByteBuffer doi = columns.duplicate();
+        doi.position(dictionaryDataOffset + start);
+        doi.limit(dictionaryDataOffset + end);
+        return doi.slice();
+    }
+    
+    /**
+     * Get the DOI of a result.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return A DOI, or null if the reference was not matched
+     */
+    public String getDOI(int ordinal) {
+        ByteBuffer doi = getDOIBytes(ordinal);
+        return (doi == null) ? null : StandardCharsets.UTF_8.decode(doi)
+                .toString();
+    }
+    
+    /**
+     * Read the reference of a result.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return The reference data
+     * @throws IOException if reading fails
+     */
+    public ReferenceData getReferenceData(int ordinal) throws IOException {
+        long position = index.getLong(8 * ordinal);
+        ByteBuffer header = ByteBuffer.allocate(5);
+        readFully(header, position);
+        byte[] text = new byte[header.getInt(0)];
+        readFully(ByteBuffer.wrap(text), position + 5);
+        return toReferenceData(header.get(4), text);
+    }
+    
+    /**
+     * Read a result.
+     * 
+     * @param ordinal The index of the reference in the request
+     * @return Reference link
+     * @throws IOException if reading fails
+     */
+    public ReferenceLink getLink(int ordinal) throws IOException {
+        return new ReferenceLink(getReferenceData(ordinal), getDOI(ordinal),
+                getScore(ordinal), getStatus(ordinal), getSource(ordinal),
+                getDegradationLevel(ordinal));
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Read the results sequentially from a stream. The columns are loaded
+     * first, then the results are passed to the consumer in the input order,
+     * as their references are read.
+     * 
+     * @param in Input stream, which is not closed
+     * @param consumer Result consumer
+     * @throws IOException if reading fails or the stream does not contain
+     * results
+     */
+    public static void stream(InputStream in, Consumer<ReferenceLink> consumer)
+            throws IOException {
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(in, BUFFER_SIZE));
+        checkHeader(input.readInt(), input.readInt());
+        int count = input.readInt();
+        int dictionarySize = input.readInt();
+        long referencesOffset = input.readLong();
+        
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            scores[i] = input.readDouble();
+        }
+        int[] codes = new int[count];
+        for (int i = 0; i < count; i++) {
+            codes[i] = input.readInt();
+        }
+        byte[] statuses = new byte[count];
+        input.readFully(statuses);
+        byte[] sources = new byte[count];
+        input.readFully(sources);
+        byte[] levels = new byte[count];
+        input.readFully(levels);
+        long position = MatchResultWriter.HEADER_SIZE + 15L * count;
+        IOUtils.skipFully(input, MatchResultWriter.pad(position) - position);
+        
+        int[] offsets = new int[dictionarySize + 1];
+        for (int d = 0; d <= dictionarySize; d++) {
+            offsets[d] = input.readInt();
+        }
+        byte[] data = new byte[offsets[dictionarySize]];
+        input.readFully(data);
+        String[] dois = new String[dictionarySize];
+        for (int d = 0; d < dictionarySize; d++) {
+            dois[d] = new String(data, offsets[d], offsets[d + 1] - offsets[d],
+                    StandardCharsets.UTF_8);
+        }
+        position = MatchResultWriter.pad(position) + 4L * (dictionarySize + 1)
+                + data.length;
+        IOUtils.skipFully(input, referencesOffset - position);
+        
+        for (int i = 0; i < count; i++) {
+            byte[] text = new byte[input.readInt()];
+            byte type = input.readByte();
+            input.readFully(text);
+            consumer.accept(new ReferenceLink(toReferenceData(type, text),
+                    (codes[i] == MatchResultWriter.NO_DOI) ?
+                            null : dois[codes[i]],
+                    scores[i], STATUSES[statuses[i]], SOURCES[sources[i]],
+                    LEVELS[levels[i]]));
+        }
+    }
+    
+    private void readFully(ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Truncated result file");
+            }
+            position += read;
+        }
+    }
+    
+    private static void checkHeader(int magic, int version)
+            throws IOException {
+        if (magic != MatchResultWriter.MAGIC) {
+            throw new IOException("Not a match result file");
+        }
+        if (version != MatchResultWriter.VERSION) {
+            throw new IOException("Unsupported match result file version: "
+                    + version);
+        }
+    }
+    
+    private static ReferenceData toReferenceData(byte type, byte[] text) {
+        String string = new String(text, StandardCharsets.UTF_8);
+        return new ReferenceData(type == MatchResultWriter.STRUCTURED ?
+                Reference.fromJSON(string) : new Reference(string));
+    }
+}
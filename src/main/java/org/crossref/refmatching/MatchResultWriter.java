@@ -0,0 +1,227 @@
+package org.crossref.refmatching;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Writes matching results in a compact columnar binary format, which can be
+ * read back with {@link MatchResultReader}. All numbers are big-endian.
+ * 
+ * <pre>
+ * header      magic "RMR1", version, count, dictionary size (ints),
+ *             offset of the reference section (long)
+ * scores      double[count]
+ * DOI codes   int[count], indexes to the dictionary, -1 for no DOI
+ * statuses    byte[count], MatchStatus ordinals
+ * sources     byte[count], MatchSource ordinals
+ * levels      byte[count], DegradationLevel ordinals
+ * dictionary  int[size + 1] offsets relative to the dictionary data,
+ *             followed by the UTF-8 DOIs
+ * references  per reference: length (int), type (byte), UTF-8 text, which
+ *             is the JSON metadata for structured references
+ * index       long[count] file offsets of the references
+ * </pre>
+ * 
+ * Sections are padded to 8 bytes. The fixed-width columns and the
+ * dictionary come first, so that they can be memory-mapped and read
+ * without parsing, and the reference index comes last, so that the file
+ * can also be read sequentially.
+ */
+public class MatchResultWriter {
+    
+    static final int MAGIC = 0x524D5231;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int NO_DOI = -1;
+    static final byte UNSTRUCTURED = 0;
+    static final byte STRUCTURED = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * Write the results to a file.
+     * 
+     * @param response Match response
+     * @param file Output file
+     * @throws IOException if writing fails
+     */
+    public static void write(MatchResponse response, File file)
+            throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(response, out);
+        }
+    }
+    
+    /**
+     * Write the results to a stream. The stream is flushed, but not closed.
+     * 
+     * @param response Match response
+     * @param out Output stream
+     * @throws IOException if writing fails
+     */
+    public static void write(MatchResponse response, OutputStream out)
+            throws IOException {
+        int count;
+        double[] scores;
+        int[] codes;
+        byte[] statuses;
+        byte[] sources;
+        byte[] levels;
+        List<String> dictionary;
+        List<ReferenceData> references;
+        
+        if (response instanceof ColumnarMatchResponse) {
+            // Already dictionary-encoded
+            ColumnarMatchResponse columnar = (ColumnarMatchResponse) response;
+            count = columnar.size();
+            scores = new double[count];
+            codes = new int[count];
+            statuses = new byte[count];
+            sources = new byte[count];
+            levels = new byte[count];
+            references = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                scores[i] = columnar.getScore(i);
+                codes[i] = columnar.getDOICode(i);
+                statuses[i] = encodeStatus(columnar.getStatus(i));
+                sources[i] = (byte) columnar.getSource(i).ordinal();
+                levels[i] = (byte) columnar.getDegradationLevel(i).ordinal();
+                references.add(columnar.getReferenceData(i));
+            }
+            dictionary = columnar.getDOIDictionary();
+        } else {
+            List<ReferenceLink> links = response.getMatchedLinks();
+            count = links.size();
+            scores = new double[count];
+            codes = new int[count];
+            statuses = new byte[count];
+            sources = new byte[count];
+            levels = new byte[count];
+            references = new ArrayList<>(count);
+            dictionary = new ArrayList<>();
+            Map<String, Integer> ids = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                ReferenceLink link = links.get(i);
+                scores[i] = link.getScore();
+                codes[i] = (link.getDOI() == null) ? NO_DOI :
+                        ids.computeIfAbsent(link.getDOI(), d -> {
+                            dictionary.add(d);
+                            return dictionary.size() - 1;
+                        });
+                statuses[i] = encodeStatus(link.getStatus());
+                sources[i] = (byte) ((link.getSource() == null) ?
+                        MatchSource.SEARCH : link.getSource()).ordinal();
+                levels[i] = (byte) ((link.getDegradationLevel() == null) ?
+                        DegradationLevel.NORMAL : link.getDegradationLevel())
+                        .ordinal();
+                references.add(link.getReferenceData());
+            }
+        }
+        
+        byte[][] dois = new byte[dictionary.size()][];
+        long dictionaryLength = 0;
+        for (int d = 0; d < dois.length; d++) {
+            dois[d] = dictionary.get(d).getBytes(StandardCharsets.UTF_8);
+            dictionaryLength += dois[d].length;
+        }
+        long referencesOffset = pad(pad(HEADER_SIZE + 15L * count)
+                + 4L * (dois.length + 1) + dictionaryLength);
+        
+        PositionedOutput output = new PositionedOutput(out);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(count);
+        output.writeInt(dois.length);
+        output.writeLong(referencesOffset);
+        for (double score : scores) {
+            output.writeDouble(score);
+        }
+        for (int code : codes) {
+            output.writeInt(code);
+        }
+        output.write(statuses);
+        output.write(sources);
+        output.write(levels);
+        output.pad();
+        
+        int offset = 0;
+        output.writeInt(offset);
+        for (byte[] doi : dois) {
+            offset += doi.length;
+            output.writeInt(offset);
+        }
+        for (byte[] doi : dois) {
+            output.write(doi);
+        }
+        output.pad();
+        
+        long[] index = new long[count];
+        for (int i = 0; i < count; i++) {
+            ReferenceData data = references.get(i);
+            Reference reference = data.getReference();
+            boolean structured =
+                    reference.getType() == ReferenceType.STRUCTURED;
+            byte[] text = (structured ?
+                    reference.getMetadataAsJSON().toString() :
+                    reference.getFormattedString())
+                    .getBytes(StandardCharsets.UTF_8);
+            data.release();
+            index[i] = output.position();
+            output.writeInt(text.length);
+            output.writeByte(structured ? STRUCTURED : UNSTRUCTURED);
+            output.write(text);
+        }
+        output.pad();
+        for (long position : index) {
+            output.writeLong(position);
+        }
+        output.flush();
+    }
+    
+    private static byte encodeStatus(MatchStatus status) {
+        return (byte) ((status == null) ?
+                MatchStatus.COMPLETED : status).ordinal();
+    }
+    
+    static long pad(long position) {
+        return (position + 7) & ~7L;
+    }
+    
+    /**
+     * Data output keeping track of a long position, as the files may be
+     * larger than 2GB.
+     */
+    private static class PositionedOutput extends DataOutputStream {
+        
+        private final CountingOutputStream counter;
+        
+        private PositionedOutput(OutputStream out) {
+            this(new CountingOutputStream(
+                    new BufferedOutputStream(out, BUFFER_SIZE)));
+        }
+        
+        private PositionedOutput(CountingOutputStream counter) {
+            super(counter);
+            this.counter = counter;
+        }
+        
+        private long position() {
+            return counter.getByteCount();
+        }
+        
+        private void pad() throws IOException {
+            while (position() != MatchResultWriter.pad(position())) {
+                writeByte(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package org.crossref.refmatching;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.crossref.common.utils.LogUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Long-running matching service on the HTTP server embedded in the JDK.
+ * All requests are served by a single matcher, which keeps its journal
+ * abbreviations and result caches warm, and matches the references of all
+ * requests on one shared {@link FairScheduler}.
+ *
+ * Endpoints:
+ *
+ * POST /match - match a single reference given as the request body, either
+ * a reference string or a JSON object with structured metadata; returns
+ * the result as a JSON object; concurrent single-reference requests are
+ * coalesced into batches, see {@link MatchCoalescer}
+ * POST /match/batch - match the references given as the request body, a
+ * JSON array or one reference per line (NDJSON); returns a JSON array of
+ * results, or one result per line if the body is sent as
+ * application/x-ndjson; NDJSON batches are streamed, see
+ * {@link #streamBatch}
+ * GET /health - check whether the server is up, and get the degradation
+ * level and the admission metrics; requests rejected by the admission
+ * controller of the matcher get 503 with a Retry-After header
+ * GET /metrics - get the latency histograms and counters of the matcher as
+ * a JSON object, see {@link MatcherMetrics}
+ * GET /slow - get the slowest references matched recently, with the
+ * breakdown of their matching time, as a JSON array, see
+ * {@link SlowReferenceLog}
+ *
+ * The match settings default to those of the template request, and can be
+ * overridden with the query parameters ct, ut, st, ur, sr, t, to, rto, tn
+ * (tenant) and pr (priority), which have the meaning of the corresponding
+ * MainApp options. The number
+ * of threads of a request is capped by its number of references, so the
+ * default for the requests served is set separately.
+ */
+public class MatchServer {
+
+    public static final int DEFAULT_WARM_UP_ITERATIONS = 2000;
+    private static final String NDJSON_TYPE = "application/x-ndjson";
+    private static final String JSON_TYPE = "application/json";
+    private static final String LINE_DELIMITER = "\r?\n";
+    // References matched at a time per request thread in NDJSON streams
+    private static final int STREAM_CHUNK_PER_THREAD = 4;
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final ReferenceMatcher matcher;
+    private final MatchRequest template;
+    private final HttpServer server;
+    private final ExecutorService httpExecutor;
+    private final FairScheduler matchExecutor;
+    private int requestThreads = MatchRequest.DEFAULT_NUM_THREADS;
+    private double coalescingWindowMs = MatchCoalescer.DEFAULT_WINDOW_MS;
+    private volatile MatchCoalescer coalescer = null;
+
+    /**
+     * Create a server.
+     *
+     * @param matcher Initialized matcher
+     * @param template Request with the default match settings
+     * @param address Address to listen on
+     * @param numThreads The number of threads of the shared match executor
+     * @throws IOException if the server cannot be bound to the address
+     */
+    public MatchServer(ReferenceMatcher matcher, MatchRequest template,
+            InetSocketAddress address, int numThreads) throws IOException {
+        this.matcher = matcher;
+        this.template = template;
+        this.matchExecutor = new FairScheduler(numThreads);
+        this.httpExecutor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(httpExecutor);
+        server.createContext("/match", exchange -> handle(exchange, false));
+        server.createContext("/match/batch", exchange -> handle(exchange, true));
+        server.createContext("/health", this::handleHealth);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/slow", this::handleSlow);
+    }
+
+    /**
+     * Get the scheduler the references of all requests are matched on.
+     *
+     * @return The shared scheduler
+     */
+    public FairScheduler getScheduler() {
+        return matchExecutor;
+    }
+
+    /**
+     * Set the default number of threads of the requests served.
+     *
+     * @param requestThreads The number of threads
+     */
+    public void setRequestThreads(int requestThreads) {
+        this.requestThreads = requestThreads;
+    }
+
+    /**
+     * Set the window in which concurrent single-reference requests are
+     * coalesced into one batch, see {@link MatchCoalescer}.
+     *
+     * @param coalescingWindowMs Window in milliseconds, non-positive
+     * disables coalescing
+     */
+    public void setCoalescingWindow(double coalescingWindowMs) {
+        this.coalescingWindowMs = coalescingWindowMs;
+    }
+
+    /**
+     * Warm up the matcher and start serving requests.
+     *
+     * @param warmUpIterations The number of matcher warm-up iterations
+     */
+    public void start(int warmUpIterations) {
+        long start = System.currentTimeMillis();
+        matcher.warmUp(warmUpIterations);
+        LOGGER.info(String.format("Matcher warmed up in %d ms.",
+                System.currentTimeMillis() - start));
+        matcher.setExecutor(matchExecutor);
+        if (coalescingWindowMs > 0) {
+            MatchCoalescer batcher = new MatchCoalescer(matcher,
+                    coalescingWindowMs, MatchCoalescer.DEFAULT_MAX_BATCH_SIZE);
+            batcher.setBatchThreads(requestThreads);
+            coalescer = batcher;
+        }
+        server.start();
+        LOGGER.info("Serving match requests at " + server.getAddress());
+    }
+
+    /**
+     * Stop serving requests, waiting for the requests in progress.
+     *
+     * @param delaySeconds Maximum time to wait for the requests in progress
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        MatchCoalescer batcher = coalescer;
+        if (batcher != null) {
+            LOGGER.info(String.format("Coalesced %d single-reference requests "
+                    + "into %d batches, %d duplicates.",
+                    batcher.getSubmittedCount(), batcher.getBatchCount(),
+                    batcher.getDuplicateCount()));
+            batcher.close();
+        }
+        httpExecutor.shutdown();
+        matchExecutor.shutdownNow();
+        try {
+            matchExecutor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        matcher.setExecutor(null);
+    }
+
+    /**
+     * Get the address the server listens on.
+     *
+     * @return Socket address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange, boolean batch)
+            throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (!batch && !"/match".equals(path)) {
+                sendError(exchange, 404, "Not found: " + path);
+                return;
+            }
+            Map<String, String> params =
+                    parseQuery(exchange.getRequestURI().getRawQuery());
+            if (batch && isNDJSON(exchange)) {
+                streamBatch(exchange, params);
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = IOUtils.toByteArray(in);
+            }
+            List<ReferenceData> references = parseReferences(body, batch);
+            MatchRequest request = createRequest(references, params);
+            if (!batch) {
+                send(exchange, JSON_TYPE, matchSingle(request).toString());
+                return;
+            }
+            
+            send(exchange, JSON_TYPE,
+                    matcher.match(request).toJSON().toString());
+        } catch (IllegalArgumentException ex) {
+            sendError(exchange, 400, ex.getMessage());
+        } catch (MatchRejectedException ex) {
+            // Overloaded, the client should retry later
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(
+                    Math.max(1, TimeUnit.MILLISECONDS.toSeconds(
+                            ex.getRetryAfterMs() + 999))));
+            sendError(exchange, 503, ex.getMessage());
+        } catch (MatchException ex) {
+            LOGGER.error("Error performing matching process: "
+                    + ex.getMessage(), ex);
+            sendError(exchange, 500, ex.getMessage());
+        } catch (RuntimeException ex) {
+            LOGGER.error("Error handling match request: " + ex, ex);
+            sendError(exchange, 500, ex.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Parse the references of a request body.
+     *
+     * @throws IllegalArgumentException if the body is not valid input, such
+     * as a JSON array of numbers
+     */
+    private static List<ReferenceData> parseReferences(byte[] body,
+            boolean batch) {
+        try {
+            return batch ?
+                    Utils.parseInputReferences(body, LINE_DELIMITER) :
+                    Collections.singletonList(new ReferenceData(
+                            Utils.parseReference(new String(body,
+                                    StandardCharsets.UTF_8))));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid references: " + ex,
+                    ex);
+        }
+    }
+
+    /**
+     * Match an NDJSON batch as it is read from the request body, one chunk
+     * of references at a time, and write the results of every chunk as soon
+     * as it is matched, so that neither the input nor the results of a long
+     * batch are held in memory. Blank lines are skipped. The request timeout
+     * applies to the whole stream: the references read after it expired are
+     * not matched. Errors after the first results were sent are reported as
+     * a final line with an error field.
+     */
+    private void streamBatch(HttpExchange exchange,
+            Map<String, String> params) throws IOException {
+        // Invalid parameters are rejected before the response starts
+        MatchRequest settings = createRequest(
+                Collections.<ReferenceData>emptyList(), params);
+        int chunkSize = Math.max(1, intParam(params, "t", requestThreads))
+                * STREAM_CHUNK_PER_THREAD;
+        Deadline deadline = Deadline.after(settings.getTimeout());
+        Writer writer = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            List<ReferenceData> chunk = new ArrayList<>(chunkSize);
+            String line;
+            do {
+                line = reader.readLine();
+                if (line != null && !line.trim().isEmpty()) {
+                    chunk.add(new ReferenceData(Utils.parseReference(line)));
+                }
+                if (chunk.size() == chunkSize
+                        || (line == null && !chunk.isEmpty())) {
+                    JSONArray results;
+                    try {
+                        results = matchChunk(chunk, params, deadline);
+                    } catch (MatchException | IllegalArgumentException ex) {
+                        if (writer == null) {
+                            throw ex;
+                        }
+                        LOGGER.error("Error matching NDJSON batch: "
+                                + ex.getMessage(), ex);
+                        writer.write(new JSONObject().put("error",
+                                String.valueOf(ex.getMessage())).toString());
+                        writer.write('\n');
+                        return;
+                    }
+                    if (writer == null) {
+                        writer = startLines(exchange);
+                    }
+                    for (int i = 0; i < results.length(); i++) {
+                        writer.write(results.getJSONObject(i).toString());
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                    chunk.clear();
+                }
+            } while (line != null);
+            if (writer == null) {
+                // Empty batch
+                writer = startLines(exchange);
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Match a chunk of an NDJSON batch within the time left for the batch.
+     */
+    private JSONArray matchChunk(List<ReferenceData> chunk,
+            Map<String, String> params, Deadline deadline) {
+        if (deadline.isExpired()) {
+            JSONArray results = new JSONArray();
+            MatchStatus status = deadline.isCancelled() ?
+                    MatchStatus.CANCELLED : MatchStatus.TIMED_OUT;
+            chunk.forEach(data -> results.put(MatchResponse.toJSON(data, null,
+                    0.0, status)));
+            return results;
+        }
+        MatchRequest request = createRequest(chunk, params);
+        if (deadline.isBounded()) {
+            request.setTimeout(Math.max(1, deadline.remainingMs()));
+        }
+        return matcher.match(request).toJSON();
+    }
+
+    /**
+     * Match a single-reference request, through the coalescer if enabled.
+     */
+    private JSONObject matchSingle(MatchRequest request) {
+        MatchCoalescer batcher = coalescer;
+        if (batcher == null) {
+            return matcher.match(request).toJSON().getJSONObject(0);
+        }
+        ReferenceData data = request.getReferences().get(0);
+        try {
+            ReferenceLink link = batcher.submit(data, request).get();
+            return MatchResponse.toJSON(data,
+                    link.getDOI(), link.getScore(), link.getStatus(),
+                    link.getSource(), link.getDegradationLevel());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MatchException(ex);
+        } catch (ExecutionException ex) {
+            throw (ex.getCause() instanceof MatchException) ?
+                    (MatchException) ex.getCause() :
+                    new MatchException(ex);
+        }
+    }
+
+    /**
+     * Create a request with the settings of the template request, overridden
+     * by the query parameters.
+     */
+    MatchRequest createRequest(List<ReferenceData> references,
+            Map<String, String> params) {
+        MatchRequest request = template.withReferences(references);
+        request.setCandidateMinScore(doubleParam(params, "ct",
+                template.getCandidateMinScore()));
+        request.setUnstructuredMinScore(doubleParam(params, "ut",
+                template.getUnstructuredMinScore()));
+        request.setStructuredMinScore(doubleParam(params, "st",
+                template.getStructuredMinScore()));
+        request.setUnstructuredRows(intParam(params, "ur",
+                template.getUnstructuredRows()));
+        request.setStructuredRows(intParam(params, "sr",
+                template.getStructuredRows()));
+        request.setNumThreads(intParam(params, "t", requestThreads));
+        request.setTimeout(longParam(params, "to", template.getTimeout()));
+        request.setReferenceTimeout(longParam(params, "rto",
+                template.getReferenceTimeout()));
+        if (params.containsKey("tn")) {
+            request.setTenant(params.get("tn"));
+        }
+        if (params.containsKey("pr")) {
+            Priority priority = Priority.getByCode(params.get("pr"));
+            if (priority == null) {
+                throw new IllegalArgumentException(
+                        "Invalid priority: " + params.get("pr"));
+            }
+            request.setPriority(priority);
+        }
+        return request;
+    }
+
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        try {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                            URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return params;
+    }
+
+    private static double doubleParam(Map<String, String> params, String name,
+            double defaultValue) {
+        String value = params.get(name);
+        return (value == null) ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static int intParam(Map<String, String> params, String name,
+            int defaultValue) {
+        String value = params.get(name);
+        return (value == null) ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long longParam(Map<String, String> params, String name,
+            long defaultValue) {
+        String value = params.get(name);
+        return (value == null) ? defaultValue : Long.parseLong(value);
+    }
+
+    private static boolean isNDJSON(HttpExchange exchange) {
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        return type != null && type.startsWith(NDJSON_TYPE);
+    }
+
+    private static void send(HttpExchange exchange, String type, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                type + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Writer startLines(HttpExchange exchange)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type",
+                NDJSON_TYPE + "; charset=utf-8");
+        // Chunked transfer encoding, the length is not known in advance
+        exchange.sendResponseHeaders(200, 0);
+        return new OutputStreamWriter(exchange.getResponseBody(),
+                StandardCharsets.UTF_8);
+    }
+
+    private static void sendError(HttpExchange exchange, int status,
+            String message) throws IOException {
+        byte[] bytes = new JSONObject().put("error", String.valueOf(message))
+                .toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                JSON_TYPE + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Report that the server is up, with the current degradation level, and
+     * the admission metrics if enabled.
+     */
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            JSONObject health = new JSONObject().put("status", "UP")
+                    .put("degradation", matcher.getDegradationLevel().getCode());
+            AdmissionController admission = matcher.getAdmissionController();
+            if (admission != null) {
+                health.put("accepted", admission.getAcceptedCount());
+                health.put("rejected", admission.getRejectedCount());
+                health.put("queued", admission.getQueuedReferences());
+                health.put("estimatedWaitMs", admission.getEstimatedWaitMs());
+            }
+            send(exchange, JSON_TYPE, health.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            MatcherMetrics metrics = matcher.getMetrics();
+            JSONObject latencies = new JSONObject();
+            metrics.getLatencies().forEach((name, snapshot) ->
+                    latencies.put(name, new JSONObject()
+                            .put("count", snapshot.getCount())
+                            .put("meanMs", snapshot.getMeanMs())
+                            .put("p50Ms", snapshot.getP50Ms())
+                            .put("p90Ms", snapshot.getP90Ms())
+                            .put("p99Ms", snapshot.getP99Ms())
+                            .put("p999Ms", snapshot.getP999Ms())
+                            .put("maxMs", snapshot.getMaxMs())));
+            JSONObject json = new JSONObject()
+                    .put("latencies", latencies)
+                    .put("counters", new JSONObject(metrics.getCounters()));
+            send(exchange, JSON_TYPE, json.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleSlow(HttpExchange exchange) throws IOException {
+        try {
+            SlowReferenceLog log = matcher.getSlowReferenceLog();
+            JSONArray json = (log == null) ? new JSONArray() : log.toJSON();
+            send(exchange, JSON_TYPE, json.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+}
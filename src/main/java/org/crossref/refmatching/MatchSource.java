@@ -0,0 +1,62 @@
+package org.crossref.refmatching;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Describes where the result of a reference came from.
+ *
+ * SEARCH - the reference was matched against the API search results
+ * RESULT_STORE - the result was found in the result store
+ * STALE_RESULT - an expired result was found in the result store, and
+ * served because the matcher was degraded
+ * NEGATIVE_CACHE - the reference recently failed to match
+ * CHECKPOINT - the result was restored from a checkpoint journal
+ */
+public enum MatchSource {
+    SEARCH("search"),
+    RESULT_STORE("store"),
+    STALE_RESULT("stale-store"),
+    NEGATIVE_CACHE("negative-cache"),
+    CHECKPOINT("checkpoint");
+
+    private static final Map<String, MatchSource> sourcesByCode =
+            new HashMap<>();
+    private final String code;
+
+    static {
+        for (MatchSource source : values()) {
+            sourcesByCode.put(source.getCode(), source);
+        }
+    }
+
+    /**
+     * Construct the enum.
+     *
+     * @param code User specified code
+     */
+    MatchSource(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Fetch a source by its code.
+     *
+     * @param code Code to find
+     *
+     * @return Found source, or null if not found
+     */
+    public static MatchSource getByCode(String code) {
+        return sourcesByCode.get(code);
+    }
+
+    /**
+     * Get the internal code associated with the enum.
+     *
+     * @return A user defined string code
+     */
+    public String getCode() {
+        return this.code;
+    }
+
+}
@@ -0,0 +1,20 @@
+package org.crossref.refmatching;
+
+/**
+ * Describes whether the matching of a reference ran to completion.
+ * 
+ * COMPLETED - all matching steps were executed
+ * TIMED_OUT - the request or reference deadline expired, the result is
+ * partial or empty
+ * CANCELLED - the request was cancelled, the result is partial or empty
+ * FAILED - a search of the reference failed, the result is partial or
+ * empty and should not be trusted as a negative result
+ */
+public enum MatchStatus {
+    
+    COMPLETED,
+    TIMED_OUT,
+    CANCELLED,
+    FAILED;
+    
+}
@@ -0,0 +1,235 @@
+package org.crossref.refmatching;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Cumulative metrics of a matcher: latency histograms of the matching
+ * stages (query building, API calls, response parsing and candidate
+ * validation) and of the end-to-end matching of every reference type,
+ * and counters of scored candidates, cache hits and failures. All of them
+ * are safe to update from many threads without contention, and can be read
+ * through the getters, or through JMX once registered, see
+ * {@link #register(String)}.
+ */
+public class MatcherMetrics implements MatcherMetricsMXBean {
+
+    public static final String JMX_DOMAIN = "org.crossref.refmatching";
+
+    private final LatencyHistogram queryBuild =
+            new LatencyHistogram("queryBuild");
+    private final LatencyHistogram apiCall = new LatencyHistogram("apiCall");
+    private final LatencyHistogram responseParse =
+            new LatencyHistogram("responseParse");
+    private final LatencyHistogram validation =
+            new LatencyHistogram("validation");
+    private final Map<ReferenceType, LatencyHistogram> endToEnd =
+            new EnumMap<>(ReferenceType.class);
+    private final LongAdder candidatesScored = new LongAdder();
+    private final Map<MatchSource, LongAdder> cacheHits =
+            new EnumMap<>(MatchSource.class);
+    private final LongAdder apiFailures = new LongAdder();
+    private final LongAdder referenceFailures = new LongAdder();
+
+    public MatcherMetrics() {
+        for (ReferenceType type : ReferenceType.values()) {
+            endToEnd.put(type, new LatencyHistogram("endToEnd."
+                    + type.name().toLowerCase()));
+        }
+        for (MatchSource source : MatchSource.values()) {
+            if (source != MatchSource.SEARCH) {
+                cacheHits.put(source, new LongAdder());
+            }
+        }
+    }
+
+    /**
+     * Get the latencies of building the search queries.
+     *
+     * @return Latency histogram
+     */
+    public LatencyHistogram getQueryBuild() {
+        return queryBuild;
+    }
+
+    /**
+     * Get the latencies of the API search calls.
+     *
+     * @return Latency histogram
+     */
+    public LatencyHistogram getApiCall() {
+        return apiCall;
+    }
+
+    /**
+     * Get the latencies of parsing the search results into candidates.
+     *
+     * @return Latency histogram
+     */
+    public LatencyHistogram getResponseParse() {
+        return responseParse;
+    }
+
+    /**
+     * Get the latencies of validating the candidates of a search.
+     *
+     * @return Latency histogram
+     */
+    public LatencyHistogram getValidation() {
+        return validation;
+    }
+
+    /**
+     * Get the latencies of matching single references, from the cache
+     * lookup to the link, including all the search passes.
+     *
+     * @param type Reference type
+     * @return Latency histogram
+     */
+    public LatencyHistogram getEndToEnd(ReferenceType type) {
+        return endToEnd.get(type);
+    }
+
+    void recordCandidatesScored(int count) {
+        candidatesScored.add(count);
+    }
+
+    void recordCacheHit(MatchSource source) {
+        LongAdder hits = cacheHits.get(source);
+        if (hits != null) {
+            hits.increment();
+        }
+    }
+
+    void recordApiFailure() {
+        apiFailures.increment();
+    }
+
+    void recordReferenceFailure() {
+        referenceFailures.increment();
+    }
+
+    /**
+     * Get the number of candidates whose validation similarity was computed.
+     *
+     * @return Candidate count
+     */
+    public long getCandidatesScoredCount() {
+        return candidatesScored.sum();
+    }
+
+    /**
+     * Get the number of references answered from a cache of the given kind.
+     *
+     * @param source Result source, other than a search
+     * @return Hit count
+     */
+    public long getCacheHitCount(MatchSource source) {
+        LongAdder hits = cacheHits.get(source);
+        return (hits == null) ? 0 : hits.sum();
+    }
+
+    /**
+     * Get the number of references answered from any of the caches.
+     *
+     * @return Hit count
+     */
+    public long getCacheHitCount() {
+        return cacheHits.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Get the number of API calls that failed.
+     *
+     * @return Failure count
+     */
+    public long getApiFailureCount() {
+        return apiFailures.sum();
+    }
+
+    /**
+     * Get the number of references whose matching failed with an exception.
+     *
+     * @return Failure count
+     */
+    public long getReferenceFailureCount() {
+        return referenceFailures.sum();
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getLatencies() {
+        Map<String, LatencyHistogram.Snapshot> latencies =
+                new LinkedHashMap<>();
+        for (LatencyHistogram histogram : new LatencyHistogram[]{queryBuild,
+            apiCall, responseParse, validation}) {
+            latencies.put(histogram.getName(), histogram.snapshot());
+        }
+        for (LatencyHistogram histogram : endToEnd.values()) {
+            latencies.put(histogram.getName(), histogram.snapshot());
+        }
+        return latencies;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("candidatesScored", getCandidatesScoredCount());
+        for (Map.Entry<MatchSource, LongAdder> hits : cacheHits.entrySet()) {
+            counters.put("cacheHits." + hits.getKey().getCode(),
+                    hits.getValue().sum());
+        }
+        counters.put("apiFailures", getApiFailureCount());
+        counters.put("referenceFailures", getReferenceFailureCount());
+        return counters;
+    }
+
+    @Override
+    public void reset() {
+        queryBuild.reset();
+        apiCall.reset();
+        responseParse.reset();
+        validation.reset();
+        endToEnd.values().forEach(LatencyHistogram::reset);
+        candidatesScored.reset();
+        cacheHits.values().forEach(LongAdder::reset);
+        apiFailures.reset();
+        referenceFailures.reset();
+    }
+
+    /**
+     * Register the metrics with the platform MBean server.
+     *
+     * @param name The name distinguishing this matcher in JMX
+     * @return The object name the metrics are registered under
+     * @throws JMException if the metrics cannot be registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(JMX_DOMAIN
+                + ":type=MatcherMetrics,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregister the metrics from the platform MBean server.
+     *
+     * @param objectName The name returned by {@link #register(String)}
+     * @throws JMException if the metrics cannot be unregistered
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+    @Override
+    public String toString() {
+        return "MatcherMetrics{latencies=" + getLatencies() + ", counters="
+                + getCounters() + "}";
+    }
+}
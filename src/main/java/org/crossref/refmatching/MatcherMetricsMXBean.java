@@ -0,0 +1,29 @@
+package org.crossref.refmatching;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link MatcherMetrics}, exposing the matcher
+ * metrics through JMX.
+ */
+public interface MatcherMetricsMXBean {
+
+    /**
+     * Get the latency histograms of the matching stages.
+     *
+     * @return Histogram snapshots by histogram name
+     */
+    Map<String, LatencyHistogram.Snapshot> getLatencies();
+
+    /**
+     * Get the matcher counters.
+     *
+     * @return Counter values by counter name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Clear all the histograms and counters.
+     */
+    void reset();
+}
@@ -0,0 +1,306 @@
+package org.crossref.refmatching;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A compact cache of references that recently failed to match, so that they
+ * are not searched again on every run. References are kept in Bloom filters
+ * over their {@link ReferenceFingerprint}. A false positive makes the
+ * matcher skip a reference that has never been seen unmatched, so the rate
+ * is the share of new references that are wrongly reported as unmatched.
+ * 
+ * To re-check references after a while, the cache is split into
+ * generations, each receiving the references of a quarter of the re-check
+ * interval. Generations older than the interval are dropped, so a reference
+ * is skipped for between three quarters of the interval and the full
+ * interval after it failed to match. A lookup checks every generation, so
+ * each one is sized for a share of the accepted false positive rate, which
+ * costs about 12.5 bits per reference for a 1% rate overall.
+ */
+public class NegativeCache {
+    
+    public static final int GENERATIONS = 4;
+    private static final int MAGIC = 0x524D4E31;
+    private static final int VERSION = 1;
+    
+    private final long numBits;
+    private final int numHashes;
+    private final long recheckIntervalMs;
+    private volatile List<Generation> generations = new ArrayList<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong insertCount = new AtomicLong();
+    
+    /**
+     * The filter of the references that failed to match in a period.
+     */
+    private static class Generation {
+        private final long startedAt;
+        private final AtomicLongArray bits;
+        
+        private Generation(long startedAt, int words) {
+            this.startedAt = startedAt;
+            this.bits = new AtomicLongArray(words);
+        }
+    }
+    
+    /**
+     * Create an empty cache.
+     * 
+     * @param expectedInsertions The expected number of references failing
+     * to match in a quarter of the re-check interval
+     * @param falsePositiveRate The accepted false positive rate of a
+     * lookup in all the generations
+     * @param recheckIntervalMs The time after which references are matched
+     * again, in milliseconds
+     */
+    public NegativeCache(long expectedInsertions, double falsePositiveRate,
+            long recheckIntervalMs) {
+        this(optimalBits(expectedInsertions, falsePositiveRate / GENERATIONS),
+                optimalHashes(falsePositiveRate / GENERATIONS),
+                recheckIntervalMs);
+    }
+    
+    private NegativeCache(long numBits, int numHashes,
+            long recheckIntervalMs) {
+        // Whole words, so that the filter is stored as a long array
+        this.numBits = Math.max(64, (numBits + 63) & ~63L);
+        this.numHashes = numHashes;
+        this.recheckIntervalMs = recheckIntervalMs;
+    }
+    
+    /**
+     * Compute the filter size for the given false positive rate.
+     */
+    private static long optimalBits(long expectedInsertions,
+            double falsePositiveRate) {
+        return (long) Math.ceil(-Math.max(1, expectedInsertions)
+                * Math.log(clampRate(falsePositiveRate))
+                / (Math.log(2) * Math.log(2)));
+    }
+    
+    /**
+     * Compute the number of hash functions for the given false positive
+     * rate, assuming a filter of the optimal size.
+     */
+    private static int optimalHashes(double falsePositiveRate) {
+        return Math.max(1, (int) Math.round(
+                -Math.log(clampRate(falsePositiveRate)) / Math.log(2)));
+    }
+    
+    private static double clampRate(double falsePositiveRate) {
+        return Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+    }
+    
+    /**
+     * Load a cache from a file. A missing file gives an empty cache of the
+     * given size.
+     * 
+     * @param file Cache file
+     * @param expectedInsertions The expected number of references failing
+     * to match in a quarter of the re-check interval
+     * @param falsePositiveRate The accepted false positive rate of a
+     * lookup in all the generations
+     * @param recheckIntervalMs The time after which references are matched
+     * again, in milliseconds
+     * @return The cache
+     * @throws IOException if the file cannot be read or is not a cache
+     */
+    public static NegativeCache load(File file, long expectedInsertions,
+            double falsePositiveRate, long recheckIntervalMs)
+            throws IOException {
+        if (!file.exists()) {
+            return new NegativeCache(expectedInsertions, falsePositiveRate,
+                    recheckIntervalMs);
+        }
+        try (DataInputStream in = new DataInputStream(
+                Codec.openInput(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a negative cache: " + file);
+            }
+            NegativeCache cache = new NegativeCache(in.readLong(),
+                    in.readInt(), recheckIntervalMs);
+            int count = in.readInt();
+            int words = (int) (cache.numBits / 64);
+            List<Generation> generations = new ArrayList<>(count);
+            for (int g = 0; g < count; g++) {
+                Generation generation = new Generation(in.readLong(), words);
+                for (int w = 0; w < words; w++) {
+                    generation.bits.set(w, in.readLong());
+                }
+                generations.add(generation);
+            }
+            cache.generations = generations;
+            return cache;
+        }
+    }
+    
+    /**
+     * Save the cache to a file. The file is replaced only once the cache is
+     * completely written.
+     * 
+     * @param file Cache file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        List<Generation> current = getLiveGenerations();
+        try (DataOutputStream out = new DataOutputStream(
+                Codec.openOutput(temp, Codec.getByFileName(file.getName())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(numBits);
+            out.writeInt(numHashes);
+            out.writeInt(current.size());
+            for (Generation generation : current) {
+                out.writeLong(generation.startedAt);
+                for (int w = 0; w < generation.bits.length(); w++) {
+                    out.writeLong(generation.bits.get(w));
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Check whether a reference failed to match within the re-check
+     * interval. May give false positives, but no false negatives.
+     * 
+     * @param key Reference fingerprint
+     * @return True if the reference probably failed to match
+     */
+    public boolean mightContain(ReferenceFingerprint key) {
+        for (Generation generation : getLiveGenerations()) {
+            if (contains(generation, key)) {
+                hitCount.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Record that a reference failed to match.
+     * 
+     * @param key Reference fingerprint
+     */
+    public void put(ReferenceFingerprint key) {
+        Generation generation = getCurrentGeneration();
+        for (int i = 0; i < numHashes; i++) {
+            long bit = bitIndex(key, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long old;
+            do {
+                old = generation.bits.get(word);
+            } while ((old & mask) == 0
+                    && !generation.bits.compareAndSet(word, old, old | mask));
+        }
+        insertCount.incrementAndGet();
+    }
+    
+    /**
+     * Forget all references.
+     */
+    public synchronized void invalidateAll() {
+        generations = new ArrayList<>();
+    }
+    
+    public long getBitCount() {
+        return numBits;
+    }
+    
+    public int getHashCount() {
+        return numHashes;
+    }
+    
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    public long getInsertCount() {
+        return insertCount.get();
+    }
+    
+    private boolean contains(Generation generation, ReferenceFingerprint key) {
+        for (int i = 0; i < numHashes; i++) {
+            long bit = bitIndex(key, i);
+            if ((generation.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Get the i-th bit of a reference, derived from the two halves of its
+     * fingerprint by double hashing.
+     */
+    private long bitIndex(ReferenceFingerprint key, int i) {
+        long hash = key.getHigh() + i * key.getLow();
+        return (hash & Long.MAX_VALUE) % numBits;
+    }
+    
+    /**
+     * Get the generations not older than the re-check interval, newest
+     * first.
+     */
+    private List<Generation> getLiveGenerations() {
+        List<Generation> current = generations;
+        long now = System.currentTimeMillis();
+        if (current.isEmpty()
+                || now - current.get(current.size() - 1).startedAt
+                        < recheckIntervalMs) {
+            return current;
+        }
+        synchronized (this) {
+            List<Generation> live = new ArrayList<>(GENERATIONS);
+            for (Generation generation : generations) {
+                if (now - generation.startedAt < recheckIntervalMs) {
+                    live.add(generation);
+                }
+            }
+            generations = live;
+            return live;
+        }
+    }
+    
+    /**
+     * Get the generation receiving new references, starting a new one when
+     * the current one is a quarter of the re-check interval old.
+     */
+    private Generation getCurrentGeneration() {
+        List<Generation> current = getLiveGenerations();
+        long now = System.currentTimeMillis();
+        if (!current.isEmpty() && now - current.get(0).startedAt
+                < recheckIntervalMs / GENERATIONS) {
+            return current.get(0);
+        }
+        synchronized (this) {
+            current = generations;
+            if (!current.isEmpty() && now - current.get(0).startedAt
+                    < recheckIntervalMs / GENERATIONS) {
+                return current.get(0);
+            }
+            List<Generation> rotated = new ArrayList<>(GENERATIONS);
+            rotated.add(new Generation(now, (int) (numBits / 64)));
+            for (Generation generation : current) {
+                if (rotated.size() < GENERATIONS
+                        && now - generation.startedAt < recheckIntervalMs) {
+                    rotated.add(generation);
+                }
+            }
+            generations = rotated;
+            return rotated.get(0);
+        }
+    }
+}
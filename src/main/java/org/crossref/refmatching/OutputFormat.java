@@ -0,0 +1,55 @@
+package org.crossref.refmatching;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the formats in which matching results may be output.
+ * 
+ * JSON - pretty-printed JSON array of results
+ * BINARY - compact columnar file, see {@link MatchResultWriter}
+ */
+public enum OutputFormat {
+    JSON("json"),
+    BINARY("binary");
+    
+    private static final Map<String, OutputFormat> formatsByCode =
+            new HashMap<>();
+    private final String code;
+    
+    static {
+        for (OutputFormat format : values()) {
+            formatsByCode.put(format.getCode(), format);
+        }
+    }
+    
+    /**
+     * Construct the enum.
+     * 
+     * @param code User specified code
+     */
+    OutputFormat(String code) {
+        this.code = code;
+    }
+    
+    /**
+     * Fetch a format by its code.
+     * 
+     * @param code Code to find
+     * 
+     * @return Found format, or null if not found
+     */
+    public static OutputFormat getByCode(String code) {
+        return formatsByCode.get(code);
+    }
+    
+    /**
+     * Get the internal code associated with the enum.
+     * 
+     * @return A user defined string code
+     */
+    public String getCode() {
+        return this.code;
+    }
+    
+}
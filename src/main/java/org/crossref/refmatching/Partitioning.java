@@ -0,0 +1,58 @@
+package org.crossref.refmatching;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the ways the references of an input are divided into shards,
+ * see {@link Shard}.
+ * 
+ * HASH - references are spread by a hash of their position in the input,
+ * which balances the shards even if the cost of references varies along
+ * the input
+ * RANGE - each shard gets a contiguous range of the input
+ */
+public enum Partitioning {
+    HASH("hash"),
+    RANGE("range");
+    
+    private static final Map<String, Partitioning> partitioningsByCode =
+            new HashMap<>();
+    private final String code;
+    
+    static {
+        for (Partitioning partitioning : values()) {
+            partitioningsByCode.put(partitioning.getCode(), partitioning);
+        }
+    }
+    
+    /**
+     * Construct the enum.
+     * 
+     * @param code User specified code
+     */
+    Partitioning(String code) {
+        this.code = code;
+    }
+    
+    /**
+     * Fetch a partitioning by its code.
+     * 
+     * @param code Code to find
+     * 
+     * @return Found partitioning, or null if not found
+     */
+    public static Partitioning getByCode(String code) {
+        return partitioningsByCode.get(code);
+    }
+    
+    /**
+     * Get the internal code associated with the enum.
+     * 
+     * @return A user defined string code
+     */
+    public String getCode() {
+        return this.code;
+    }
+    
+}
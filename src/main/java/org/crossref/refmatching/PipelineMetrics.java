@@ -0,0 +1,66 @@
+package org.crossref.refmatching;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-stage metrics of the staged matching pipeline.
+ */
+public class PipelineMetrics {
+    
+    private final StageMetrics build = new StageMetrics("build");
+    private final StageMetrics search = new StageMetrics("search");
+    private final StageMetrics validate = new StageMetrics("validate");
+    private final StageMetrics emit = new StageMetrics("emit");
+
+    /**
+     * Get the metrics of the query building stage.
+     * 
+     * @return Stage metrics
+     */
+    public StageMetrics getBuild() {
+        return build;
+    }
+
+    /**
+     * Get the metrics of the API search stage.
+     * 
+     * @return Stage metrics
+     */
+    public StageMetrics getSearch() {
+        return search;
+    }
+
+    /**
+     * Get the metrics of the candidate parsing and validation stage.
+     * 
+     * @return Stage metrics
+     */
+    public StageMetrics getValidate() {
+        return validate;
+    }
+
+    /**
+     * Get the metrics of the result emitting stage.
+     * 
+     * @return Stage metrics
+     */
+    public StageMetrics getEmit() {
+        return emit;
+    }
+    
+    /**
+     * Get the metrics of all stages, in pipeline order.
+     * 
+     * @return A list of stage metrics
+     */
+    public List<StageMetrics> getStages() {
+        return Arrays.asList(build, search, validate, emit);
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineMetrics" + getStages();
+    }
+    
+}
@@ -0,0 +1,70 @@
+package org.crossref.refmatching;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the priority class of a match request, which determines its
+ * share of a {@link FairScheduler}.
+ *
+ * INTERACTIVE - latency-sensitive lookups, such as single references
+ * NORMAL - ordinary batches
+ * BULK - large background jobs, which soak up the remaining capacity
+ */
+public enum Priority {
+    INTERACTIVE("interactive", 16),
+    NORMAL("normal", 4),
+    BULK("bulk", 1);
+
+    private static final Map<String, Priority> prioritiesByCode =
+            new HashMap<>();
+    private final String code;
+    private final double weight;
+
+    static {
+        for (Priority priority : values()) {
+            prioritiesByCode.put(priority.getCode(), priority);
+        }
+    }
+
+    /**
+     * Construct the enum.
+     *
+     * @param code User specified code
+     * @param weight Relative share of the scheduler
+     */
+    Priority(String code, double weight) {
+        this.code = code;
+        this.weight = weight;
+    }
+
+    /**
+     * Fetch a priority by its code.
+     *
+     * @param code Code to find
+     *
+     * @return Found priority, or null if not found
+     */
+    public static Priority getByCode(String code) {
+        return prioritiesByCode.get(code);
+    }
+
+    /**
+     * Get the internal code associated with the enum.
+     *
+     * @return A user defined string code
+     */
+    public String getCode() {
+        return this.code;
+    }
+
+    /**
+     * Get the share of the scheduler of this class, relative to the others.
+     *
+     * @return Weight
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+}
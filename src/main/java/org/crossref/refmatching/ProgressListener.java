@@ -0,0 +1,17 @@
+package org.crossref.refmatching;
+
+/**
+ * Receives the progress of a match request, periodically while the
+ * references are matched, and once more when the matching ends.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Called with the current progress, on the progress reporting thread of
+     * the request, never concurrently for the same request.
+     *
+     * @param progress The progress of the request
+     */
+    void onProgress(MatchProgress progress);
+}
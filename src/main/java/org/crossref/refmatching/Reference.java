@@ -2,56 +2,143 @@ package org.crossref.refmatching;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 /**
  * Represents a reference.
- * 
+ *
+ * Structured metadata is stored compactly: the values of the known Crossref
+ * reference keys occupy fixed slots of an array, and any other keys go to
+ * an overflow map, which is only allocated when needed. The slot array and
+ * the overflow map are never modified after construction, so a reference
+ * derived with {@link #withField(String, String)} shares them with its
+ * source and only stores the single overridden field.
+ *
  * @author Dominika Tkaczyk
  */
 public class Reference {
-    
-    private final Map<String, String> metadata;
+
+    /**
+     * Known Crossref reference keys, in slot order.
+     */
+    private static final String[] FIELD_NAMES = {
+        "author", "article-title", "journal-title", "series-title",
+        "volume-title", "year", "volume", "issue", "first-page", "edition",
+        "ISSN", "ISBN", "DOI", "key", "unstructured", "component",
+        "doi-asserted-by", "issn-type", "isbn-type", "standards-body",
+        "standard-designator"
+    };
+    private static final Map<String, Integer> FIELD_SLOTS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            FIELD_SLOTS.put(FIELD_NAMES[i], i);
+        }
+    }
+
+    private final String[] slots;
+    private final Map<String, String> overflow;
+    private final String overlayField;
+    private final String overlayValue;
     private final String formattedString;
     private final ReferenceType type;
-    
+
     public Reference(String formattedString) {
-        this(new HashMap<>(), formattedString, ReferenceType.UNSTRUCTURED);
+        this(null, null, null, null, formattedString,
+                ReferenceType.UNSTRUCTURED);
     }
-    
+
     public Reference(Map<String, String> metadata) {
         this(metadata, null, ReferenceType.STRUCTURED);
     }
-    
+
     public Reference(JSONObject metadata) {
         this(metadata, null, ReferenceType.STRUCTURED);
     }
-    
+
     public Reference(JSONObject metadata, String formattedString,
             ReferenceType type) {
-        this(metadata.toMap().entrySet().stream()
-                    .collect(Collectors.toMap(
-                            entry -> (String) entry.getKey(),
-                            entry -> (entry.getValue() instanceof Integer)
-                            ? String.valueOf(entry.getValue())
-                            : (String) entry.getValue())),
-            formattedString, type);
-    }
-    
+        String[] newSlots = new String[FIELD_NAMES.length];
+        Map<String, String> newOverflow = null;
+        for (String key : metadata.keySet()) {
+            Object value = metadata.get(key);
+            if (value == JSONObject.NULL) {
+                continue;
+            }
+            newOverflow = store(newSlots, newOverflow, key,
+                    (value instanceof String)
+                            ? (String) value : String.valueOf(value));
+        }
+        this.slots = newSlots;
+        this.overflow = newOverflow;
+        this.overlayField = null;
+        this.overlayValue = null;
+        this.formattedString = formattedString;
+        this.type = type;
+    }
+
     public Reference(Map<String, String> metadata, String formattedString,
             ReferenceType type) {
-        this.metadata = metadata;
+        String[] newSlots = new String[FIELD_NAMES.length];
+        Map<String, String> newOverflow = null;
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            newOverflow = store(newSlots, newOverflow, entry.getKey(),
+                    entry.getValue());
+        }
+        this.slots = newSlots;
+        this.overflow = newOverflow;
+        this.overlayField = null;
+        this.overlayValue = null;
         this.formattedString = formattedString;
         this.type = type;
     }
 
+    private Reference(String[] slots, Map<String, String> overflow,
+            String overlayField, String overlayValue, String formattedString,
+            ReferenceType type) {
+        this.slots = slots;
+        this.overflow = overflow;
+        this.overlayField = overlayField;
+        this.overlayValue = overlayValue;
+        this.formattedString = formattedString;
+        this.type = type;
+    }
+
+    /**
+     * Parse a structured reference from a flat JSON object, storing the
+     * values directly in the slots. Objects with values other than strings
+     * and small integers, duplicate keys, or non-standard syntax are handed
+     * over to the general JSON parser.
+     *
+     * @param json JSON object text
+     * @return A structured reference
+     * @throws JSONException if the text is not a valid JSON object
+     */
+    public static Reference fromJSON(String json) throws JSONException {
+        String[] newSlots = new String[FIELD_NAMES.length];
+        FlatJSONParser parser = new FlatJSONParser(json);
+        Map<String, String> newOverflow = parser.parse(newSlots);
+        if (parser.failed) {
+            return new Reference(new JSONObject(json));
+        }
+        return new Reference(newSlots, newOverflow, null, null, null,
+                ReferenceType.STRUCTURED);
+    }
+
     public String getFormattedString() {
         return formattedString;
     }
-    
+
     public String getFieldValue(String fieldName) {
-        return metadata.get(fieldName);
+        if (overlayField != null && overlayField.equals(fieldName)) {
+            return overlayValue;
+        }
+        Integer slot = FIELD_SLOTS.get(fieldName);
+        if (slot != null) {
+            return (slots == null) ? null : slots[slot];
+        }
+        return (overflow == null) ? null : overflow.get(fieldName);
     }
 
     public ReferenceType getType() {
@@ -59,17 +146,232 @@ public class Reference {
     }
 
     public Reference withField(String fieldType, String fieldValue) {
-        Map<String, String> newMetadata = new HashMap<>(metadata);
-        newMetadata.put(fieldType, fieldValue);
-        return new Reference(newMetadata, formattedString, type);
+        if (overlayField == null || overlayField.equals(fieldType)) {
+            return new Reference(slots, overflow, fieldType, fieldValue,
+                    formattedString, type);
+        }
+        // Overlays are not stacked, the current one is merged into a copy
+        String[] newSlots = (slots == null)
+                ? new String[FIELD_NAMES.length] : slots.clone();
+        Map<String, String> newOverflow =
+                (overflow == null) ? null : new HashMap<>(overflow);
+        newOverflow = store(newSlots, newOverflow, overlayField, overlayValue);
+        return new Reference(newSlots, newOverflow, fieldType, fieldValue,
+                formattedString, type);
     }
 
     public JSONObject getMetadataAsJSON() {
-        return new JSONObject(metadata);
+        return new JSONObject(getMetadataAsMap());
     }
 
     public Map<String, String> getMetadataAsMap() {
-        return new HashMap<>(metadata);
+        Map<String, String> metadata = new HashMap<>();
+        if (slots != null) {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null) {
+                    metadata.put(FIELD_NAMES[i], slots[i]);
+                }
+            }
+        }
+        if (overflow != null) {
+            metadata.putAll(overflow);
+        }
+        if (overlayField != null) {
+            metadata.put(overlayField, overlayValue);
+        }
+        return metadata;
+    }
+
+    /**
+     * Store a field value in its slot, or in the overflow map.
+     *
+     * @return The overflow map, allocated if it was needed
+     */
+    private static Map<String, String> store(String[] slots,
+            Map<String, String> overflow, String key, String value) {
+        Integer slot = FIELD_SLOTS.get(key);
+        if (slot != null) {
+            slots[slot] = value;
+            return overflow;
+        }
+        if (overflow == null) {
+            overflow = new HashMap<>(4);
+        }
+        overflow.put(key, value);
+        return overflow;
+    }
+
+    /**
+     * Single-pass parser of flat JSON objects with string and small integer
+     * values. Anything else sets the failed flag instead of throwing, so that
+     * the caller can fall back to the general parser.
+     */
+    private static class FlatJSONParser {
+
+        private final String json;
+        private int pos = 0;
+        private boolean failed = false;
+
+        private FlatJSONParser(String json) {
+            this.json = json;
+        }
+
+        private Map<String, String> parse(String[] slots) {
+            Map<String, String> overflow = null;
+            skipWhitespace();
+            if (!consume('{')) {
+                return fail();
+            }
+            skipWhitespace();
+            if (consume('}')) {
+                return atEnd() ? overflow : fail();
+            }
+            while (true) {
+                skipWhitespace();
+                String key = parseString();
+                skipWhitespace();
+                if (key == null || !consume(':')) {
+                    return fail();
+                }
+                skipWhitespace();
+                String value = (peek() == '"') ? parseString() : parseInteger();
+                if (value == null || getValue(slots, overflow, key) != null) {
+                    // Duplicate keys are left to the general parser
+                    return fail();
+                }
+                overflow = store(slots, overflow, key, value);
+                skipWhitespace();
+                if (consume('}')) {
+                    return atEnd() ? overflow : fail();
+                }
+                if (!consume(',')) {
+                    return fail();
+                }
+            }
+        }
+
+        private String getValue(String[] slots, Map<String, String> overflow,
+                String key) {
+            Integer slot = FIELD_SLOTS.get(key);
+            if (slot != null) {
+                return slots[slot];
+            }
+            return (overflow == null) ? null : overflow.get(key);
+        }
+
+        private String parseString() {
+            if (!consume('"')) {
+                return null;
+            }
+            int start = pos;
+            // Fast path for strings without escapes
+            while (pos < json.length()) {
+                char c = json.charAt(pos);
+                if (c == '"') {
+                    return json.substring(start, pos++);
+                }
+                if (c == '\\' || c < ' ') {
+                    break;
+                }
+                pos++;
+            }
+            StringBuilder sb = new StringBuilder(json.substring(start, pos));
+            while (pos < json.length()) {
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c < ' ') {
+                    return null;
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= json.length()) {
+                    return null;
+                }
+                char e = json.charAt(pos++);
+                switch (e) {
+                    case '"': case '\\': case '/': sb.append(e); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > json.length()) {
+                            return null;
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(json.charAt(pos++), 16);
+                            if (digit < 0) {
+                                return null;
+                            }
+                            code = code * 16 + digit;
+                        }
+                        sb.append((char) code);
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            return null;
+        }
+
+        private String parseInteger() {
+            // Only canonical integers that fit in an int are accepted, other
+            // numbers are converted differently by the general parser
+            int start = pos;
+            if (peek() == '-') {
+                pos++;
+            }
+            int digitsStart = pos;
+            while (pos < json.length() && json.charAt(pos) >= '0'
+                    && json.charAt(pos) <= '9') {
+                pos++;
+            }
+            int digits = pos - digitsStart;
+            if (digits == 0 || digits > 9
+                    || (digits > 1 && json.charAt(digitsStart) == '0')) {
+                return null;
+            }
+            char next = peek();
+            if (next == '.' || next == 'e' || next == 'E') {
+                return null;
+            }
+            String number = json.substring(start, pos);
+            return "-0".equals(number) ? null : number;
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && json.charAt(pos) <= ' ') {
+                pos++;
+            }
+        }
+
+        private boolean consume(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() {
+            return (pos < json.length()) ? json.charAt(pos) : 0;
+        }
+
+        private boolean atEnd() {
+            skipWhitespace();
+            return pos == json.length();
+        }
+
+        private Map<String, String> fail() {
+            failed = true;
+            return null;
+        }
     }
-    
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,132 @@
+package org.crossref.refmatching;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the relative cost of matching references, and orders references
+ * for dispatching according to a scheduling policy. The estimate counts
+ * the API searches a reference needs (two for structured references with
+ * an abbreviated journal title), the number of rows to validate, and for
+ * unstructured references the length of the string, which drives both
+ * the search and the validation time.
+ */
+public class ReferenceCostEstimator {
+    
+    // Cost of a single API search, the unit of the estimates
+    private static final double SEARCH_COST = 1.;
+    // Cost of validating a single search item
+    private static final double ROW_COST = 0.01;
+    // Unstructured string length adding one row cost per row
+    private static final double STRING_LENGTH_UNIT = 100.;
+    
+    private final JournalAbbreviations journalAbbreviations;
+
+    /**
+     * Constructor sets the journal abbreviation map.
+     * 
+     * @param journalAbbrevMap Journal abbreviation map, can be null
+     */
+    public ReferenceCostEstimator(Map<String, String> journalAbbrevMap) {
+        this((journalAbbrevMap == null) ? null :
+                JournalAbbreviations.of(journalAbbrevMap));
+    }
+
+    /**
+     * Constructor sets the journal abbreviations.
+     * 
+     * @param journalAbbreviations Journal abbreviations, can be null
+     */
+    public ReferenceCostEstimator(JournalAbbreviations journalAbbreviations) {
+        this.journalAbbreviations = journalAbbreviations;
+    }
+    
+    /**
+     * Estimate the cost of matching a reference.
+     * 
+     * @param reference The reference
+     * @param request Match request
+     * @return Relative cost, in API searches
+     */
+    public double estimate(Reference reference, MatchRequest request) {
+        if (reference.getType() != ReferenceType.STRUCTURED) {
+            String string = reference.getFormattedString();
+            return estimateUnstructured(
+                    (string == null) ? 0 : string.length(), request);
+        }
+        
+        int passes = 1;
+        if (journalAbbreviations != null && journalAbbreviations.contains(
+                reference.getFieldValue("journal-title"))) {
+            passes++;
+        }
+        return passes * (SEARCH_COST + request.getStructuredRows() * ROW_COST);
+    }
+    
+    /**
+     * Estimate the cost of matching a reference. Raw unstructured references
+     * are estimated without parsing them, raw structured references are
+     * parsed and released again.
+     * 
+     * @param data The reference data
+     * @param request Match request
+     * @return Relative cost, in API searches
+     */
+    public double estimate(ReferenceData data, MatchRequest request) {
+        if (data.getType() != ReferenceType.STRUCTURED) {
+            return estimateUnstructured(data.getTextLength(), request);
+        }
+        double cost = estimate(data.getReference(), request);
+        data.release();
+        return cost;
+    }
+    
+    private double estimateUnstructured(int length, MatchRequest request) {
+        return SEARCH_COST + request.getUnstructuredRows() * ROW_COST
+                * (1 + length / STRING_LENGTH_UNIT);
+    }
+    
+    /**
+     * Get the order in which references should be dispatched.
+     * 
+     * @param references The references
+     * @param request Match request
+     * @param policy Scheduling policy
+     * @return Reference indexes, in dispatch order
+     */
+    public int[] order(List<ReferenceData> references, MatchRequest request,
+            SchedulingPolicy policy) {
+        int n = references.size();
+        int[] order = new int[n];
+        if (policy == SchedulingPolicy.INPUT_ORDER) {
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+        
+        // Sort primitive keys: the cost in the high bits and the inverted
+        // index in the low bits, so that descending order keeps references
+        // of equal cost in the input order
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            float cost = (float) estimate(references.get(i), request);
+            keys[i] = ((long) Float.floatToIntBits(cost) << 32)
+                    | (Integer.MAX_VALUE - i);
+        }
+        Arrays.sort(keys);
+        
+        int head = n - 1;
+        int tail = 0;
+        for (int k = 0; k < n; k++) {
+            // Longest first takes from the expensive end only, interleaving
+            // alternates between the expensive and the cheap end
+            long key = (policy == SchedulingPolicy.INTERLEAVED && k % 2 == 1)
+                    ? keys[tail++] : keys[head--];
+            order[k] = Integer.MAX_VALUE - (int) (key & 0xFFFFFFFFL);
+        }
+        return order;
+    }
+    
+}
@@ -1,5 +1,7 @@
 package org.crossref.refmatching;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,26 +10,166 @@ import java.util.Map;
  * (optional). Additional information are not used for matching, but preserved
  * and returned back in the response. Example use case is an internal correlation
  * key.
- * 
+ *
+ * The reference can also be given in its raw form, as a slice of UTF-8 input
+ * bytes, possibly of a memory-mapped file. In that case it is only parsed
+ * when first needed, and the parsed form can be released once the reference
+ * is matched, and parsed again if needed later.
+ *
  * @author Joe Aparo
  */
 public class ReferenceData {
-    private final Reference reference;
-    private final Map<String, Object> options = new HashMap<>();
-    
+    private final ByteBuffer raw;
+    private final int offset;
+    private final int length;
+    private final ReferenceType typeHint;
+    private volatile Reference reference;
+    private long ordinal = -1;
+    private Map<String, Object> options = null;
+
     public ReferenceData(Reference reference) {
+        this.raw = null;
+        this.offset = 0;
+        this.length = 0;
+        this.typeHint = reference.getType();
         this.reference = reference;
     }
-    
+
+    /**
+     * Create reference data from a slice of raw UTF-8 input. The slice is not
+     * copied, and must not be modified afterwards.
+     *
+     * @param raw Input bytes
+     * @param offset Start of the reference in the input
+     * @param length Length of the reference in bytes
+     * @param typeHint Expected reference type
+     */
+    public ReferenceData(byte[] raw, int offset, int length,
+            ReferenceType typeHint) {
+        this(ByteBuffer.wrap(raw), offset, length, typeHint);
+    }
+
+    /**
+     * Create reference data from a slice of a buffer with raw UTF-8 input.
+     * The buffer is shared and must not be modified afterwards, and its
+     * position and limit are not used.
+     *
+     * @param raw Input buffer
+     * @param offset Start of the reference in the buffer
+     * @param length Length of the reference in bytes
+     * @param typeHint Expected reference type
+     */
+    public ReferenceData(ByteBuffer raw, int offset, int length,
+            ReferenceType typeHint) {
+        this.raw = raw;
+        this.offset = offset;
+        this.length = length;
+        this.typeHint = typeHint;
+        this.reference = null;
+    }
+
     public Reference getReference() {
-        return reference;
+        Reference ref = reference;
+        if (ref == null) {
+            ref = Utils.parseReference(decodeRaw());
+            reference = ref;
+        }
+        return ref;
+    }
+
+    private String decodeRaw() {
+        if (raw.hasArray()) {
+            return new String(raw.array(), raw.arrayOffset() + offset, length,
+                    StandardCharsets.UTF_8);
+        }
+        // The shared buffer is only read through a private view
+        ByteBuffer slice = raw.duplicate();
+        slice.limit(offset + length);
+        slice.position(offset);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    /**
+     * Get the position of the reference in its input.
+     *
+     * @return The ordinal, or -1 if it is not known
+     */
+    public long getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(long ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Get the type of the reference, without parsing it. For raw references
+     * not parsed yet, this is the expected type, which may differ from the
+     * actual type if the input is malformed.
+     *
+     * @return Reference type
+     */
+    public ReferenceType getType() {
+        Reference ref = reference;
+        return (ref == null) ? typeHint : ref.getType();
+    }
+
+    /**
+     * Get the length of the reference text, without parsing it.
+     *
+     * @return Length in bytes for raw references, in characters otherwise
+     */
+    public int getTextLength() {
+        if (raw != null) {
+            return length;
+        }
+        String string = reference.getFormattedString();
+        return (string == null) ? 0 : string.length();
+    }
+
+    /**
+     * Check whether the reference is kept in its raw form.
+     *
+     * @return A flag
+     */
+    public boolean isRaw() {
+        return raw != null;
+    }
+
+    ByteBuffer getRaw() {
+        return raw;
+    }
+
+    int getRawOffset() {
+        return offset;
     }
-    
+
+    int getRawLength() {
+        return length;
+    }
+
+    boolean hasOptions() {
+        return options != null && !options.isEmpty();
+    }
+
+    /**
+     * Release the parsed form of a raw reference. Has no effect on references
+     * not given in raw form.
+     */
+    public void release() {
+        if (raw != null) {
+            reference = null;
+        }
+    }
+
     public Object getOption(String key) {
-        return options.get(key);
+        return (options == null) ? null : options.get(key);
     }
-    
+
     public void putOption(String key, Object value) {
+        if (options == null) {
+            options = new HashMap<>();
+        }
         options.put(key, value);
     }
-}
\ No newline at end of file
+}
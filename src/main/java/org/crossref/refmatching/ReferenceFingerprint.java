@@ -0,0 +1,100 @@
+package org.crossref.refmatching;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A 128-bit hash of a canonicalised reference, combined with the matcher
+ * configuration the result depends on. Equal fingerprints identify
+ * references that are expected to match the same way.
+ * 
+ * References are canonicalised by transliterating and lowercasing their
+ * text and collapsing whitespace. For structured references the fields are
+ * taken in key order.
+ */
+public class ReferenceFingerprint {
+    
+    private final long high;
+    private final long low;
+    
+    ReferenceFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+    
+    /**
+     * Compute the fingerprint of a reference.
+     * 
+     * @param reference The reference
+     * @param configKey A description of the matcher configuration
+     * @return Reference fingerprint
+     */
+    public static ReferenceFingerprint of(Reference reference,
+            String configKey) {
+        StringBuilder canonical = new StringBuilder(configKey).append('\n');
+        if (reference.getType() == ReferenceType.STRUCTURED) {
+            canonical.append("S\n");
+            Map<String, String> metadata =
+                    new TreeMap<>(reference.getMetadataAsMap());
+            for (Map.Entry<String, String> field : metadata.entrySet()) {
+                canonical.append(field.getKey()).append('=')
+                        .append(canonicalize(field.getValue())).append('\n');
+            }
+        } else {
+            canonical.append("U\n")
+                    .append(canonicalize(reference.getFormattedString()));
+        }
+        
+        byte[] digest = newDigest().digest(
+                canonical.toString().getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        return new ReferenceFingerprint(buffer.getLong(), buffer.getLong());
+    }
+    
+    private static String canonicalize(String string) {
+        if (string == null) {
+            return "";
+        }
+        return Utils.normalize(string).trim().replaceAll("\\s+", " ");
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support MD5
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    long getHigh() {
+        return high;
+    }
+    
+    long getLow() {
+        return low;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ReferenceFingerprint)) {
+            return false;
+        }
+        ReferenceFingerprint fingerprint = (ReferenceFingerprint) other;
+        return high == fingerprint.high && low == fingerprint.low;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high ^ low);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
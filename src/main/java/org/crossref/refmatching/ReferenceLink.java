@@ -10,11 +10,29 @@ public class ReferenceLink {
     private final ReferenceData referenceData;
     private final String doi;
     private final double score;
+    private final MatchStatus status;
+    private final MatchSource source;
+    private final DegradationLevel degradationLevel;
 
     public ReferenceLink(ReferenceData referenceData, String doi, double score) {
+        this(referenceData, doi, score, MatchStatus.COMPLETED);
+    }
+
+    public ReferenceLink(ReferenceData referenceData, String doi, double score,
+            MatchStatus status) {
+        this(referenceData, doi, score, status, MatchSource.SEARCH,
+                DegradationLevel.NORMAL);
+    }
+
+    public ReferenceLink(ReferenceData referenceData, String doi, double score,
+            MatchStatus status, MatchSource source,
+            DegradationLevel degradationLevel) {
         this.referenceData = referenceData;
         this.doi = doi;
         this.score = score;
+        this.status = status;
+        this.source = source;
+        this.degradationLevel = degradationLevel;
     }
 
     /**
@@ -43,4 +61,33 @@ public class ReferenceLink {
         return score;
     }
 
+    /**
+     * Get the status of the matching process for this reference. Links that
+     * did not complete may carry a partial result or no DOI at all.
+     * 
+     * @return A match status
+     */
+    public MatchStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Get where the result of this reference came from.
+     * 
+     * @return A match source
+     */
+    public MatchSource getSource() {
+        return source;
+    }
+
+    /**
+     * Get the degradation level the reference was matched at. Results taken
+     * from the caches have the level of the request they were served to.
+     * 
+     * @return A degradation level
+     */
+    public DegradationLevel getDegradationLevel() {
+        return degradationLevel;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package org.crossref.refmatching;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the matching of a single reference, from
+ * the cache lookup to the link. Only created through {@link MatchEvents}.
+ */
+@Name(MatchEvents.NAME_PREFIX + "ReferenceMatched")
+@Label("Reference Matched")
+@Category(MatchEvents.CATEGORY)
+@Description("Matching of a single reference")
+@StackTrace(false)
+class ReferenceMatchedEvent extends Event {
+
+    @Label("Reference Type")
+    String referenceType;
+
+    @Label("Reference")
+    @Description("The reference string, truncated")
+    String reference;
+
+    @Label("Status")
+    String status;
+
+    @Label("Source")
+    @Description("Where the result came from: a search or a cache")
+    String source;
+
+    @Label("Degradation Level")
+    String degradation;
+
+    @Label("Matched")
+    boolean matched;
+
+    @Label("Score")
+    double score;
+}
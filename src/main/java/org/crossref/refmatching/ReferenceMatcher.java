@@ -1,18 +1,23 @@
 package org.crossref.refmatching;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.crossref.common.utils.LogUtils;
 import org.crossref.common.rest.api.ICrossRefApiClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 /**
  * Main point of entry for performing reference matching. Its logic relies on
@@ -25,11 +30,39 @@ import org.crossref.common.rest.api.ICrossRefApiClient;
  * @author Joe Aparo
  */
 public class ReferenceMatcher {
+    private static final long CANCEL_POLL_INTERVAL_MS = 100;
     private boolean cacheJournalAbbrevMap = true;
-    private final Map<String, String> journalAbbrevMap = new HashMap<>();
+    private JournalAbbreviations journalAbbreviations =
+            JournalAbbreviations.EMPTY;
+    private final MatcherMetrics metrics;
     private final CandidateSelector selector;
-    private final CandidateValidator validator = new CandidateValidator();
+    private final CandidateValidator validator;
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private volatile ResultStore resultStore = null;
+    private volatile NegativeCache negativeCache = null;
+    private volatile ExecutorService executor = null;
+    private volatile AdmissionController admissionController = null;
+    private volatile DegradationController degradationController = null;
+    private volatile SlowReferenceLog slowReferenceLog = null;
     private static final Logger LOGGER = LogUtils.getLogger();
+    private static final ThreadLocal<SlowReferenceLog.Trace> TRACE =
+            ThreadLocal.withInitial(SlowReferenceLog.Trace::new);
+    private static final String WARM_UP_ITEM = "{\"DOI\": \"10.5555/12345678\", "
+            + "\"score\": 62.5, \"title\": [\"Toward a Unified Theory of "
+            + "High-Energy Metaphysics\"], \"container-title\": "
+            + "[\"Journal of Psychoceramics\"], \"author\": [{\"given\": "
+            + "\"Josiah\", \"family\": \"Carberry\"}], \"volume\": \"5\", "
+            + "\"issue\": \"11\", \"page\": \"1-3\", \"issued\": "
+            + "{\"date-parts\": [[2008, 8, 13]]}}";
+    private static final String[] WARM_UP_REFERENCES = {
+        "Carberry, J. (2008). Toward a Unified Theory of High-Energy "
+            + "Metaphysics: Silly String Theory. Journal of Psychoceramics, "
+            + "5(11), 1-3.",
+        "{\"author\": \"Carberry\", \"article-title\": \"Toward a Unified "
+            + "Theory of High-Energy Metaphysics\", \"journal-title\": "
+            + "\"J. Psychoceram.\", \"volume\": \"5\", \"issue\": \"11\", "
+            + "\"first-page\": \"1\", \"year\": \"2008\"}"
+    };
 
     /**
      * Constructor sets apiClient.
@@ -37,7 +70,9 @@ public class ReferenceMatcher {
      * @param apiClient CR API client implementation
      */
     public ReferenceMatcher(ICrossRefApiClient apiClient) {
-         this.selector = new CandidateSelector(apiClient);
+         this.metrics = new MatcherMetrics();
+         this.selector = new CandidateSelector(apiClient, metrics);
+         this.validator = new CandidateValidator(metrics);
     }
         
     /**
@@ -52,59 +87,629 @@ public class ReferenceMatcher {
     /**
      * Get the cached journal abbreviations map.
      * 
-     * @return Journal abbreviations map
+     * @return Read-only journal abbreviations map
      */
     public Map<String, String> getJournalAbbrevMap() {
-        return journalAbbrevMap;
+        return journalAbbreviations.asMap();
+    }
+    
+    /**
+     * Get the journal abbreviation dictionary.
+     * 
+     * @return Journal abbreviations, empty if they are not cached
+     */
+    public JournalAbbreviations getJournalAbbreviations() {
+        return journalAbbreviations;
+    }
+
+    /**
+     * Set the store of previous results. References found in the store are
+     * not matched again, and newly matched references are added to it.
+     * 
+     * @param resultStore Result store, or null to disable it
+     */
+    public void setResultStore(ResultStore resultStore) {
+        this.resultStore = resultStore;
+    }
+    
+    /**
+     * Get the store of previous results.
+     * 
+     * @return Result store, or null if disabled
+     */
+    public ResultStore getResultStore() {
+        return resultStore;
+    }
+
+    /**
+     * Set the cache of references that recently failed to match. References
+     * found in the cache are reported as unmatched without searching, and
+     * newly unmatched references are added to it.
+     * 
+     * @param negativeCache Negative cache, or null to disable it
+     */
+    public void setNegativeCache(NegativeCache negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+    
+    /**
+     * Get the cache of references that recently failed to match.
+     * 
+     * @return Negative cache, or null if disabled
+     */
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    /**
+     * Set the executor shared by the requests matched with workers. By
+     * default, every request creates its own pool of numThreads workers.
+     * With a shared executor, the numThreads workers of a request are
+     * submitted to it instead, so concurrent requests share its threads.
+     * The executor is not shut down by the matcher.
+     * 
+     * @param executor Shared executor, or null to use a pool per request
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+    
+    /**
+     * Get the executor shared by the requests matched with workers.
+     * 
+     * @return Shared executor, or null if every request uses its own pool
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the controller limiting the work outstanding in this matcher.
+     * Requests beyond its limits are rejected with a
+     * {@link MatchRejectedException} before any reference is matched.
+     * 
+     * @param admissionController Admission controller, or null to admit
+     * all requests
+     */
+    public void setAdmissionController(
+            AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+    
+    /**
+     * Get the controller limiting the work outstanding in this matcher.
+     * 
+     * @return Admission controller, or null if all requests are admitted
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * Set the controller degrading the matching under load. Degraded results
+     * are not added to the result caches.
+     * 
+     * @param degradationController Degradation controller, or null to always
+     * match normally
+     */
+    public void setDegradationController(
+            DegradationController degradationController) {
+        this.degradationController = degradationController;
+    }
+    
+    /**
+     * Get the controller degrading the matching under load.
+     * 
+     * @return Degradation controller, or null if matching is never degraded
+     */
+    public DegradationController getDegradationController() {
+        return degradationController;
+    }
+    
+    /**
+     * Set the log of the slowest references matched.
+     * 
+     * @param slowReferenceLog Slow reference log, or null to disable it
+     */
+    public void setSlowReferenceLog(SlowReferenceLog slowReferenceLog) {
+        this.slowReferenceLog = slowReferenceLog;
+    }
+    
+    /**
+     * Get the log of the slowest references matched.
+     * 
+     * @return Slow reference log, or null if disabled
+     */
+    public SlowReferenceLog getSlowReferenceLog() {
+        return slowReferenceLog;
+    }
+    
+    /**
+     * Add a reference to the slow reference log, if it is enabled and the
+     * reference is among the slowest.
+     * 
+     * @param query The reference
+     * @param start The time the matching started, in nanoseconds
+     * @param trace The cost breakdown of the reference
+     * @param link Reference link
+     */
+    void recordSlow(ReferenceData query, long start,
+            SlowReferenceLog.Trace trace, ReferenceLink link) {
+        SlowReferenceLog log = slowReferenceLog;
+        long now = System.nanoTime();
+        if (log != null && log.isSlow(now - start, now)) {
+            Reference reference = query.getReference();
+            log.add(new SlowReference(selector.getQuery(reference),
+                    reference.getType(), now - start, trace,
+                    link.getStatus()));
+        }
+    }
+    
+    /**
+     * Get the level references are currently matched at.
+     * 
+     * @return Degradation level
+     */
+    public DegradationLevel getDegradationLevel() {
+        DegradationController controller = degradationController;
+        return (controller == null) ?
+                DegradationLevel.NORMAL : controller.getLevel();
+    }
+    
+    /**
+     * Record the latency of an API search.
+     * 
+     * @param start The time the search started, in nanoseconds
+     */
+    void recordSearch(long start) {
+        DegradationController controller = degradationController;
+        if (controller != null) {
+            controller.recordSearch(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Get the cumulative latencies and counters of this matcher, for all
+     * requests.
+     * 
+     * @return Matcher metrics
+     */
+    public MatcherMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Record the end-to-end latency of matching a reference.
+     * 
+     * @param type Reference type
+     * @param start The time the matching started, in nanoseconds
+     */
+    void recordReference(ReferenceType type, long start) {
+        MatcherMetrics m = metrics;
+        if (m != null) {
+            m.getEndToEnd(type).recordSince(start);
+        }
+    }
+
+    /**
+     * Get the cumulative per-stage metrics of pipelined requests.
+     * 
+     * @return Pipeline metrics
+     */
+    public PipelineMetrics getPipelineMetrics() {
+        return pipelineMetrics;
     }
 
     /**
      * Initialize the instance based on current state. Currently
-     * this just caches the journals depending on a flag.
+     * this just caches the journals depending on a flag. The journal
+     * abbreviations are shared by all the matchers in the process.
      */
     public void initialize() {
-        if (cacheJournalAbbrevMap) {
-            try {
-                InputStream is = ReferenceMatcher.class.getResourceAsStream(
-                        "journal-abbreviations.txt");
-                new BufferedReader(new InputStreamReader(is, "utf-8")).lines()
-                        .map(l -> l.trim().split("\t"))
-                        .forEach(a -> {journalAbbrevMap.put(a[0], a[1]);});
-            } catch (IOException ex) {
-                LogUtils.getLogger().warn("Error caching journal entries", ex);
+        journalAbbreviations = cacheJournalAbbrevMap ?
+                JournalAbbreviations.getDefault() : JournalAbbreviations.EMPTY;
+    }
+    
+    /**
+     * Warm up the local matching code, so that the first requests served by
+     * a long-running matcher are not slowed down by the JIT compilation of
+     * the hot paths: reference parsing, query building, search planning,
+     * candidate validation and fingerprinting. The API is not called.
+     * 
+     * @param iterations The number of iterations
+     */
+    public void warmUp(int iterations) {
+        MatchRequest request = new MatchRequest(null);
+        String configKey = getConfigKey(request);
+        Candidate candidate = new Candidate(new JSONObject(WARM_UP_ITEM));
+        double total = 0.;
+        for (int i = 0; i < iterations; i++) {
+            for (String string : WARM_UP_REFERENCES) {
+                Reference reference = Utils.parseReference(string);
+                for (SearchPass pass : planSearches(reference, request,
+                        DegradationLevel.NORMAL)) {
+                    selector.getQuery(pass.getReference());
+                }
+                total += candidate.getValidationSimilarity(reference);
+                fingerprint(new ReferenceData(reference), configKey);
             }
         }
+        LOGGER.debug(String.format("Warmed up with %d iterations (%f).",
+                iterations, total));
     }
     
     /**
-     * Main method for performing reference matching.
+     * Main method for performing reference matching. If the request has
+     * a timeout and it expires, or the request is cancelled, the references
+     * matched so far are returned, and the remaining ones are returned
+     * without a DOI and with the corresponding status.
      * 
      * @param request Request object
      * @return A match response
      * @throws org.crossref.refmatching.MatchException
      */
     public MatchResponse match(MatchRequest request) throws MatchException {
+        int numThreads = Math.max(1, request.getNumThreads());
+        LOGGER.debug(String.format("Performing match with %d threads.",
+                numThreads));
+        
+        Deadline deadline = request.startDeadline();
+        List<ReferenceData> references = request.getReferences();
+        // Admit the request before any work is spent on it
+        AdmissionController admission = admissionController;
+        if (admission != null) {
+            admission.admit(references.size());
+        }
+        long start = System.nanoTime();
+        try {
+            return matchAdmitted(request, references, deadline, numThreads);
+        } finally {
+            if (admission != null) {
+                admission.release(references.size(), numThreads,
+                        System.nanoTime() - start);
+            }
+        }
+    }
+    
+    private MatchResponse matchAdmitted(MatchRequest request,
+            List<ReferenceData> references, Deadline deadline,
+            int numThreads) {
+        int[] order = new ReferenceCostEstimator(journalAbbreviations).order(
+                references, request, request.getSchedulingPolicy());
+        String configKey = (resultStore == null && negativeCache == null) ?
+                null : getConfigKey(request);
+        LinkCollector links = request.isColumnarResponse() ?
+                new ColumnarMatchResponse(request) :
+                new ListLinkCollector(request, references.size());
+        CheckpointJournal journal = request.getCheckpointJournal();
+        if (journal != null) {
+            // Skip the references matched in a previous run
+            journal.restore(references, links, getConfigKey(request));
+            order = unrecorded(order, links);
+            links = journal.journaling(links);
+            LOGGER.info(String.format("Resuming with %d of %d references "
+                    + "already matched.", journal.getRestoredCount(),
+                    references.size()));
+        }
+        ProgressListener listener = request.getProgressListener();
+        MatchProgress.Reporter reporter = null;
+        if (listener != null) {
+            MatchProgress progress = new MatchProgress(order.length);
+            links = progress.tracking(links);
+            reporter = progress.report(listener,
+                    request.getProgressInterval());
+        }
+        DegradationController.Entry entry = null;
+        try {
+            DegradationController degradation = degradationController;
+            if (degradation != null) {
+                entry = degradation.entering(order.length);
+                links = entry.tracking(links);
+            }
+            try {
+                if (request.isPipelined()) {
+                    new MatchPipeline(this, selector, validator,
+                            pipelineMetrics).run(request, references, order,
+                                    deadline, configKey, links);
+                } else {
+                    runWorkers(request, references, order, deadline,
+                            numThreads, configKey, links);
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                throw new MatchException(ex);
+            } finally {
+                if (entry != null) {
+                    entry.close();
+                }
+            }
+        
+            MatchStatus missingStatus = request.isCancelled() ?
+                    MatchStatus.CANCELLED : MatchStatus.TIMED_OUT;
+            int missing = 0;
+            for (int i = 0; i < references.size(); i++) {
+                if (!links.isRecorded(i) && deadline.isExpired()) {
+                    links.record(i, new ReferenceLink(references.get(i), null,
+                            0.0, missingStatus));
+                    missing++;
+                }
+            }
+            if (missing > 0) {
+                LOGGER.warn(String.format("Matching %s, %d of %d "
+                        + "references not completed.",
+                        missingStatus == MatchStatus.CANCELLED ?
+                                "cancelled" : "timed out",
+                        missing, references.size()));
+            }
+        
+            return links.toResponse();
+        } finally {
+            if (reporter != null) {
+                reporter.close();
+            }
+        }
+    }
+    
+    private static int[] unrecorded(int[] order, LinkCollector links) {
+        return Arrays.stream(order).filter(i -> !links.isRecorded(i))
+                .toArray();
+    }
+    
+    /**
+     * Match the references with a pool of workers, each of which runs all
+     * the matching steps for one reference at a time. On a shared
+     * {@link FairScheduler}, every worker is rescheduled after each
+     * reference, according to the tenant and the priority of the request.
+     * 
+     * @param request Request object
+     * @param references The references to match
+     * @param order Reference indexes, in dispatch order
+     * @param deadline The request deadline
+     * @param numThreads The number of workers
+     * @param configKey Matcher configuration key, or null if there are no
+     * result caches
+     * @param links Collects the links of the references matched before the
+     * deadline expired
+     */
+    private void runWorkers(MatchRequest request,
+            List<ReferenceData> references, int[] order, Deadline deadline,
+            int numThreads, String configKey, LinkCollector links)
+            throws InterruptedException, ExecutionException {
+        AtomicInteger next = new AtomicInteger();
+        
+        // Use the shared executor, or our own thread pool
+        ExecutorService shared = executor;
+        ExecutorService threadPool = (shared != null) ? shared :
+                Executors.newFixedThreadPool(numThreads);
+        List<Future<?>> workers = new ArrayList<>();
         try {
-            LOGGER.debug(String.format("Performing match with %d threads.",
-                    request.getNumThreads()));
-            
-            // Use our own thread pool
-            ForkJoinPool threadPool = new ForkJoinPool(request.getNumThreads());
-            
             // Process the references, which may be a mix of
-            // structured/unstructured
-            List<ReferenceLink> links = threadPool.submit(()
-                    -> request.getReferences()
-                    .parallelStream().map(q ->
-                        q.getReference().getType() == ReferenceType.STRUCTURED ?
-                                    matchStructured(q, request) :
-                                    matchUnstructured(q, request))
-                    .collect(Collectors.toList())).get();
+            // structured/unstructured. Workers stop picking up new
+            // references once the deadline expires.
+            for (int t = 0; t < numThreads; t++) {
+                if (threadPool instanceof FairScheduler) {
+                    workers.add(((FairScheduler) threadPool).submitRepeated(
+                            request.getTenant(), request.getPriority(),
+                            () -> matchNext(request, references, order,
+                                    deadline, next, configKey, links)));
+                } else {
+                    workers.add(threadPool.submit(() -> {
+                        while (matchNext(request, references, order,
+                                deadline, next, configKey, links)) {
+                        }
+                    }));
+                }
+            }
             
-            return new MatchResponse(request, links);
-        } catch (InterruptedException | ExecutionException ex) {
-            throw new MatchException(ex);
+            awaitWorkers(workers, deadline);
+        } finally {
+            // Interrupts the references still in progress
+            if (shared != null) {
+                workers.forEach(w -> w.cancel(true));
+            } else {
+                threadPool.shutdownNow();
+            }
+        }
+    }
+    
+    /**
+     * Match the next reference in dispatch order.
+     * 
+     * @return False if there are no references left, or the deadline expired
+     */
+    private boolean matchNext(MatchRequest request,
+            List<ReferenceData> references, int[] order, Deadline deadline,
+            AtomicInteger next, String configKey, LinkCollector links) {
+        int k;
+        if (deadline.isExpired()
+                || (k = next.getAndIncrement()) >= order.length) {
+            return false;
         }
+        int i = order[k];
+        ReferenceData q = references.get(i);
+        links.record(i, matchReference(q, request, configKey));
+        // Raw references are parsed again when needed
+        q.release();
+        return true;
+    }
+    
+    /**
+     * Wait for the workers to finish, or for the deadline to expire.
+     * 
+     * @param workers Worker futures
+     * @param deadline The request deadline
+     */
+    private void awaitWorkers(List<Future<?>> workers, Deadline deadline)
+            throws InterruptedException, ExecutionException {
+        for (Future<?> worker : workers) {
+            while (true) {
+                try {
+                    // Poll, so that cancellation is noticed also when
+                    // there is no time limit
+                    worker.get(Math.min(deadline.remainingMs(),
+                            CANCEL_POLL_INTERVAL_MS), TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException ex) {
+                    if (deadline.isExpired()) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Match a reference, unless its result is found in the result store or
+     * the negative cache.
+     * 
+     * @param query The reference
+     * @param request Match request
+     * @param configKey Matcher configuration key, or null if there are no
+     * result caches
+     * @return Reference link
+     */
+    private ReferenceLink matchReference(ReferenceData query,
+            MatchRequest request, String configKey) {
+        long start = System.nanoTime();
+        Object event = MatchEvents.beginReference();
+        ReferenceType type = query.getReference().getType();
+        // The search passes add to this trace only if the reference is
+        // traced, even if the log is enabled or disabled in the meantime
+        SlowReferenceLog.Trace trace = TRACE.get();
+        trace.reset(slowReferenceLog != null);
+        try {
+            ReferenceFingerprint key = fingerprint(query, configKey);
+            ReferenceLink link = getCachedLink(query, key);
+            if (link == null) {
+                link = type == ReferenceType.STRUCTURED ?
+                        matchStructured(query, request) :
+                        matchUnstructured(query, request);
+                cacheLink(key, link);
+            }
+            recordReference(type, start);
+            MatchEvents.endReference(event, query, link);
+            if (trace.isActive()) {
+                recordSlow(query, start, trace, link);
+            }
+            return link;
+        } catch (RuntimeException ex) {
+            if (metrics != null) {
+                metrics.recordReferenceFailure();
+            }
+            throw ex;
+        }
+    }
+    
+    /**
+     * Describe the configuration that affects the results of a request.
+     * 
+     * @param request Match request
+     * @return Configuration key
+     */
+    String getConfigKey(MatchRequest request) {
+        return String.format("ct=%s;ut=%s;st=%s;ur=%d;sr=%d;abbrev=%s",
+                request.getCandidateMinScore(),
+                request.getUnstructuredMinScore(),
+                request.getStructuredMinScore(),
+                request.getUnstructuredRows(), request.getStructuredRows(),
+                journalAbbreviations.getVersion());
+    }
+    
+    /**
+     * Compute the result cache key of a reference.
+     * 
+     * @param query The reference
+     * @param configKey Matcher configuration key, or null if there are no
+     * result caches
+     * @return Reference fingerprint, or null if there are no result caches
+     */
+    ReferenceFingerprint fingerprint(ReferenceData query, String configKey) {
+        if ((resultStore == null && negativeCache == null)
+                || configKey == null) {
+            return null;
+        }
+        return ReferenceFingerprint.of(query.getReference(), configKey);
+    }
+    
+    /**
+     * Get the cached result of a reference, either a stored match, or no
+     * match if the reference recently failed to match. Stale stored matches
+     * are returned when the degradation level allows it.
+     * 
+     * @param query The reference
+     * @param key Reference fingerprint, or null
+     * @return Reference link, or null if there is no cached result
+     */
+    ReferenceLink getCachedLink(ReferenceData query, ReferenceFingerprint key) {
+        if (key == null) {
+            return null;
+        }
+        DegradationLevel level = getDegradationLevel();
+        ResultStore store = resultStore;
+        if (store != null) {
+            ResultStore.StoredResult result =
+                    store.get(key, level.isStaleServed());
+            if (result != null) {
+                return recordCacheHit(new ReferenceLink(query,
+                        result.getDOI(), result.getScore(),
+                        MatchStatus.COMPLETED, store.isStale(result) ?
+                                MatchSource.STALE_RESULT :
+                                MatchSource.RESULT_STORE, level));
+            }
+        }
+        NegativeCache cache = negativeCache;
+        if (cache != null && cache.mightContain(key)) {
+            return recordCacheHit(new ReferenceLink(query, null, 0.0,
+                    MatchStatus.COMPLETED, MatchSource.NEGATIVE_CACHE, level));
+        }
+        return null;
+    }
+    
+    private ReferenceLink recordCacheHit(ReferenceLink link) {
+        MatcherMetrics m = metrics;
+        if (m != null) {
+            m.recordCacheHit(link.getSource());
+        }
+        return link;
+    }
+    
+    /**
+     * Add the result of a reference to the result caches, if the matching
+     * ran to completion, all its searches succeeded, and it was not
+     * degraded. References matched to a DOI go to the result store, and
+     * unmatched ones to the negative cache.
+     * 
+     * @param key Reference fingerprint, or null
+     * @param link Reference link
+     */
+    void cacheLink(ReferenceFingerprint key, ReferenceLink link) {
+        if (key == null || link == null
+                || link.getStatus() != MatchStatus.COMPLETED
+                || link.getSource() != MatchSource.SEARCH
+                || link.getDegradationLevel() != DegradationLevel.NORMAL) {
+            return;
+        }
+        ResultStore store = resultStore;
+        NegativeCache cache = negativeCache;
+        if (link.getDOI() != null && store != null) {
+            store.put(key, link.getDOI(), link.getScore());
+        } else if (link.getDOI() == null && cache != null) {
+            cache.put(key);
+        }
+    }
+    
+    /**
+     * Get the final status of a reference matched under the given deadline.
+     * 
+     * @param deadline The reference deadline
+     * @param searchFailed Whether any search of the reference failed
+     * @return A match status
+     */
+    private MatchStatus getStatus(Deadline deadline, boolean searchFailed) {
+        if (!deadline.isExpired()) {
+            return searchFailed ? MatchStatus.FAILED : MatchStatus.COMPLETED;
+        }
+        return deadline.isCancelled() ?
+                MatchStatus.CANCELLED : MatchStatus.TIMED_OUT;
     }
         
     /**
@@ -116,18 +721,7 @@ public class ReferenceMatcher {
      */
     protected ReferenceLink matchUnstructured(ReferenceData query,
             MatchRequest request) {
-        Reference ref = query.getReference();
-        
-        List<Candidate> candidates = selector.findCandidates(
-            ref, request.getUnstructuredRows(), 
-            request.getCandidateMinScore(), request.getHeaders());
-        
-        Candidate candidate = validator.chooseCandidate(
-            ref, candidates, request.getUnstructuredMinScore());       
-         
-        return new ReferenceLink(
-            query, candidate == null ? null : candidate.getDOI(), 
-            candidate == null ? 0.0 : candidate.getValidationScore());
+        return matchPasses(query, request);
     }
 
     /**
@@ -140,42 +734,188 @@ public class ReferenceMatcher {
      */
     protected ReferenceLink matchStructured(ReferenceData query,
             MatchRequest request) {
-        Reference reference = query.getReference();
-        
-        List<Candidate> candidates = selector.findCandidates(
-            reference, request.getStructuredRows(),
-            request.getCandidateMinScore(), request.getHeaders());
-        
-        Candidate candidate = validator.chooseCandidate(reference, 
-            candidates, request.getStructuredMinScore());        
+        return matchPasses(query, request);
+    }
+    
+    /**
+     * Plan the search passes needed to match a reference. Unstructured
+     * references are searched once. Structured references are searched once
+     * as given, and once more with the journal title expanded, if it is
+     * a known abbreviation. Degraded levels request fewer search results
+     * and skip the second pass.
+     * 
+     * @param reference The reference
+     * @param request Match request
+     * @param level Degradation level
+     * @return A list of search passes, in the order they should be run
+     */
+    List<SearchPass> planSearches(Reference reference, MatchRequest request,
+            DegradationLevel level) {
+        List<SearchPass> passes = new ArrayList<>(2);
+        if (reference.getType() != ReferenceType.STRUCTURED) {
+            passes.add(new SearchPass(reference,
+                    level.getRows(request.getUnstructuredRows()),
+                    request.getUnstructuredMinScore()));
+            return passes;
+        }
         
-        String journalNorm = reference.getFieldValue("journal-title");
-        if (journalNorm == null) {
-            journalNorm = "";
+        passes.add(new SearchPass(reference,
+                level.getRows(request.getStructuredRows()),
+                request.getStructuredMinScore()));
+        if (level.isSinglePass()) {
+            return passes;
         }
-        journalNorm = journalNorm.toLowerCase().replaceAll("[^a-z]", "");
         
-        if (journalAbbrevMap.containsKey(journalNorm)) {
+        int abbreviation = journalAbbreviations.indexOf(
+                reference.getFieldValue("journal-title"));
+        if (abbreviation >= 0) {
             Reference referenceJournalNorm = reference.withField("journal-title",
-                    journalAbbrevMap.get(journalNorm));
-            candidates = selector.findCandidates(referenceJournalNorm, 
-                request.getStructuredRows(),
-                    request.getCandidateMinScore(), request.getHeaders());
-            
-            Candidate candidate2 = validator.chooseCandidate(referenceJournalNorm,
-                    candidates, request.getCandidateMinScore());
-            
-            if (candidate == null) {
-                candidate = candidate2;
-            } else if (candidate2 != null && candidate2.getValidationScore() 
-                    > candidate.getValidationScore()) {
-                candidate = candidate2;
+                    journalAbbreviations.getValue(abbreviation));
+            passes.add(new SearchPass(referenceJournalNorm,
+                    level.getRows(request.getStructuredRows()),
+                    request.getCandidateMinScore()));
+        }
+        return passes;
+    }
+    
+    /**
+     * Normalize a journal title to the form used as a key in the journal
+     * abbreviation map.
+     * 
+     * @param journalTitle Journal title, can be null
+     * @return Normalized journal title
+     */
+    static String normalizeJournalTitle(String journalTitle) {
+        return JournalAbbreviations.normalize(journalTitle);
+    }
+    
+    /**
+     * Run the search passes planned at the current degradation level one
+     * after another and keep the best candidate. Passes after the first one
+     * are skipped once the deadline expires.
+     * 
+     * @param query The reference
+     * @param request Match request
+     * @return Reference link
+     */
+    private ReferenceLink matchPasses(ReferenceData query,
+            MatchRequest request) {
+        Deadline deadline = request.newReferenceDeadline();
+        DegradationLevel level = getDegradationLevel();
+        List<SearchPass> passes =
+                planSearches(query.getReference(), request, level);
+        SlowReferenceLog.Trace trace = TRACE.get();
+        
+        Candidate candidate = null;
+        boolean searchFailed = false;
+        for (int i = 0; i < passes.size(); i++) {
+            if (i > 0 && deadline.isExpired()) {
+                break;
+            }
+            SearchPass pass = passes.get(i);
+            long start = System.nanoTime();
+            List<Candidate> candidates = selector.searchCandidates(
+                pass.getReference(), pass.getRows(),
+                request.getCandidateMinScore(), request.getHeaders(), deadline);
+            recordSearch(start);
+            if (candidates == null) {
+                searchFailed = true;
+                candidates = Collections.<Candidate>emptyList();
+            }
+            long validationStart = System.nanoTime();
+            candidate = chooseBetter(candidate, validator.chooseCandidate(
+                pass.getReference(), candidates, pass.getMinScore(), deadline));
+            if (trace.isActive()) {
+                trace.addPass(pass.getRows(), validationStart - start,
+                        System.nanoTime() - validationStart, candidates.size());
             }
         }
         
+        return createLink(query, candidate, deadline, level, searchFailed);
+    }
+    
+    /**
+     * Search for the candidates of a reference in all the search passes,
+     * without applying any thresholds, and compute their validation
+     * similarities.
+     * 
+     * @param query The reference
+     * @param ordinal The index of the reference in the request
+     * @param request Match request, only the numbers of rows are used
+     * @return The recorded candidates
+     */
+    CandidateSet recordCandidates(ReferenceData query, int ordinal,
+            MatchRequest request) {
+        Reference reference = query.getReference();
+        CandidateSet set = new CandidateSet(ordinal, reference.getType());
+        List<SearchPass> passes = planSearches(reference, request,
+                DegradationLevel.NORMAL);
+        for (int p = 0; p < passes.size(); p++) {
+            SearchPass pass = passes.get(p);
+            String searchQuery = selector.getQuery(pass.getReference());
+            JSONArray items = StringUtils.isEmpty(searchQuery) ? null :
+                    selector.searchWorks(searchQuery, pass.getRows(),
+                            request.getHeaders(),
+                            pass.getReference().getType());
+            int count = (items == null) ? 0 : items.length();
+            double[] normalizedScores = new double[count];
+            double[] similarities = new double[count];
+            String[] dois = new String[count];
+            for (int i = 0; i < count; i++) {
+                Candidate candidate = new Candidate(items.getJSONObject(i));
+                normalizedScores[i] = items.getJSONObject(i).getDouble("score")
+                        / searchQuery.length();
+                similarities[i] = candidate.getValidationSimilarity(
+                        pass.getReference());
+                dois[i] = candidate.getDOI();
+            }
+            // Passes after the first one validate with the candidate
+            // threshold, see planSearches
+            CandidateSet.PassThreshold threshold = (p > 0) ?
+                    CandidateSet.PassThreshold.CANDIDATE :
+                    (reference.getType() == ReferenceType.STRUCTURED) ?
+                            CandidateSet.PassThreshold.STRUCTURED :
+                            CandidateSet.PassThreshold.UNSTRUCTURED;
+            set.addPass(threshold, normalizedScores, similarities, dois);
+        }
+        return set;
+    }
+    
+    /**
+     * Choose the better of two candidates, preferring the current one
+     * in case of equal validation scores.
+     * 
+     * @param current The current candidate, can be null
+     * @param other The other candidate, can be null
+     * @return The better candidate, or null if both are null
+     */
+    static Candidate chooseBetter(Candidate current, Candidate other) {
+        if (current == null) {
+            return other;
+        }
+        if (other != null
+                && other.getValidationScore() > current.getValidationScore()) {
+            return other;
+        }
+        return current;
+    }
+    
+    /**
+     * Create a link for a reference from the chosen candidate.
+     * 
+     * @param query The reference
+     * @param candidate The chosen candidate, can be null
+     * @param deadline The reference deadline
+     * @param level The degradation level the reference was matched at
+     * @param searchFailed Whether any search of the reference failed
+     * @return Reference link
+     */
+    ReferenceLink createLink(ReferenceData query, Candidate candidate,
+            Deadline deadline, DegradationLevel level, boolean searchFailed) {
         return new ReferenceLink(query,
             candidate == null ? null : candidate.getDOI(), 
-            candidate == null ? 0.0 : candidate.getValidationScore());
+            candidate == null ? 0.0 : candidate.getValidationScore(),
+            getStatus(deadline, searchFailed), MatchSource.SEARCH, level);
     }
 
 }
\ No newline at end of file
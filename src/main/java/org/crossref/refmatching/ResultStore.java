@@ -0,0 +1,284 @@
+package org.crossref.refmatching;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent store of previously matched references. Results are keyed by
+ * {@link ReferenceFingerprint}, which covers both the canonical reference
+ * and the matcher configuration, so a result is only reused for a request
+ * that would have matched the reference in the same way. Only references
+ * matched to a DOI are stored, unmatched references are expected to be
+ * matched again.
+ * 
+ * Results older than the maximum age are stale, they are only returned
+ * when stale results are explicitly allowed, for example to keep serving
+ * references while the matcher is overloaded. Stale results are kept for
+ * the stale age past the maximum age, and dropped afterwards. Stores are
+ * saved to and loaded from files, compressed according to the file
+ * extension, see {@link Codec}.
+ */
+public class ResultStore {
+    
+    private static final int MAGIC = 0x524D5331;
+    private static final int VERSION = 1;
+    
+    private final Map<ReferenceFingerprint, StoredResult> results =
+            new ConcurrentHashMap<>();
+    private final long maxAgeMs;
+    private final long staleAgeMs;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    
+    /**
+     * A stored matching result.
+     */
+    public static class StoredResult {
+        private final String doi;
+        private final double score;
+        private final long storedAt;
+
+        private StoredResult(String doi, double score, long storedAt) {
+            this.doi = doi;
+            this.score = score;
+            this.storedAt = storedAt;
+        }
+
+        public String getDOI() {
+            return doi;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Get the time the result was stored.
+         * 
+         * @return Epoch time in milliseconds
+         */
+        public long getStoredAt() {
+            return storedAt;
+        }
+    }
+    
+    /**
+     * Create an empty store. Stale results are kept for as long as the
+     * maximum age.
+     * 
+     * @param maxAgeMs Maximum age of the results in milliseconds,
+     * non-positive means no limit
+     */
+    public ResultStore(long maxAgeMs) {
+        this(maxAgeMs, maxAgeMs);
+    }
+    
+    /**
+     * Create an empty store.
+     * 
+     * @param maxAgeMs Maximum age of the results in milliseconds,
+     * non-positive means no limit
+     * @param staleAgeMs The time stale results are kept for past the
+     * maximum age, in milliseconds, non-positive means they are not kept
+     */
+    public ResultStore(long maxAgeMs, long staleAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+        this.staleAgeMs = Math.max(0, staleAgeMs);
+    }
+    
+    /**
+     * Load a store from a file. A missing file gives an empty store. Stale
+     * results are kept for as long as the maximum age.
+     * 
+     * @param file Store file
+     * @param maxAgeMs Maximum age of the results in milliseconds,
+     * non-positive means no limit
+     * @return The store
+     * @throws IOException if the file cannot be read or is not a store
+     */
+    public static ResultStore load(File file, long maxAgeMs)
+            throws IOException {
+        return load(file, maxAgeMs, maxAgeMs);
+    }
+    
+    /**
+     * Load a store from a file. A missing file gives an empty store.
+     * 
+     * @param file Store file
+     * @param maxAgeMs Maximum age of the results in milliseconds,
+     * non-positive means no limit
+     * @param staleAgeMs The time stale results are kept for past the
+     * maximum age, in milliseconds, non-positive means they are not kept
+     * @return The store
+     * @throws IOException if the file cannot be read or is not a store
+     */
+    public static ResultStore load(File file, long maxAgeMs, long staleAgeMs)
+            throws IOException {
+        ResultStore store = new ResultStore(maxAgeMs, staleAgeMs);
+        if (!file.exists()) {
+            return store;
+        }
+        try (DataInputStream in = new DataInputStream(
+                Codec.openInput(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a result store: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                ReferenceFingerprint key = new ReferenceFingerprint(
+                        in.readLong(), in.readLong());
+                long storedAt = in.readLong();
+                double score = in.readDouble();
+                String doi = in.readUTF();
+                if (!store.isDiscarded(storedAt)) {
+                    store.results.put(key,
+                            new StoredResult(doi, score, storedAt));
+                }
+            }
+        }
+        return store;
+    }
+    
+    /**
+     * Save the store to a file. The file is replaced only once the store is
+     * completely written.
+     * 
+     * @param file Store file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                Codec.openOutput(temp, Codec.getByFileName(file.getName())))) {
+            results.values().removeIf(r -> isDiscarded(r.getStoredAt()));
+            Map<ReferenceFingerprint, StoredResult> snapshot =
+                    new HashMap<>(results);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<ReferenceFingerprint, StoredResult> entry :
+                    snapshot.entrySet()) {
+                out.writeLong(entry.getKey().getHigh());
+                out.writeLong(entry.getKey().getLow());
+                out.writeLong(entry.getValue().getStoredAt());
+                out.writeDouble(entry.getValue().getScore());
+                out.writeUTF(entry.getValue().getDOI());
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Get the stored result of a reference.
+     * 
+     * @param key Reference fingerprint
+     * @return The result, or null if there is no result or it is too old
+     */
+    public StoredResult get(ReferenceFingerprint key) {
+        return get(key, false);
+    }
+    
+    /**
+     * Get the stored result of a reference, possibly a stale one. Results
+     * past the stale age are removed when they are looked up.
+     * 
+     * @param key Reference fingerprint
+     * @param allowStale Whether to return a result older than the maximum
+     * age
+     * @return The result, or null if there is no result, or it is too old
+     * and stale results are not allowed
+     */
+    public StoredResult get(ReferenceFingerprint key, boolean allowStale) {
+        StoredResult result = results.get(key);
+        if (result != null && isDiscarded(result.getStoredAt())) {
+            results.remove(key, result);
+            result = null;
+        } else if (result != null && !allowStale && isStale(result)) {
+            result = null;
+        }
+        (result == null ? missCount : hitCount).incrementAndGet();
+        return result;
+    }
+    
+    /**
+     * Store the result of a reference.
+     * 
+     * @param key Reference fingerprint
+     * @param doi Matched DOI
+     * @param score Matching score
+     */
+    public void put(ReferenceFingerprint key, String doi, double score) {
+        results.put(key, new StoredResult(doi, score,
+                System.currentTimeMillis()));
+    }
+    
+    /**
+     * Remove the result of a reference.
+     * 
+     * @param key Reference fingerprint
+     * @return True if a result was removed
+     */
+    public boolean invalidate(ReferenceFingerprint key) {
+        return results.remove(key) != null;
+    }
+    
+    /**
+     * Remove all the results matched to a DOI, for example when its
+     * metadata was corrected.
+     * 
+     * @param doi The DOI
+     * @return The number of results removed
+     */
+    public int invalidateDOI(String doi) {
+        int before = results.size();
+        results.values().removeIf(r -> r.getDOI().equalsIgnoreCase(doi));
+        return before - results.size();
+    }
+    
+    /**
+     * Remove all results.
+     */
+    public void invalidateAll() {
+        results.clear();
+    }
+    
+    public int size() {
+        return results.size();
+    }
+    
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    public long getMissCount() {
+        return missCount.get();
+    }
+    
+    /**
+     * Check whether a result is older than the maximum age.
+     * 
+     * @param result Stored result
+     * @return A flag
+     */
+    public boolean isStale(StoredResult result) {
+        return isExpired(result.getStoredAt());
+    }
+    
+    private boolean isExpired(long storedAt) {
+        return maxAgeMs > 0 && System.currentTimeMillis() - storedAt > maxAgeMs;
+    }
+    
+    private boolean isDiscarded(long storedAt) {
+        return maxAgeMs > 0
+                && System.currentTimeMillis() - storedAt > maxAgeMs + staleAgeMs;
+    }
+}
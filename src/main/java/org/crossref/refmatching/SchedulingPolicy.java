@@ -0,0 +1,60 @@
+package org.crossref.refmatching;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the order in which references are dispatched to the workers.
+ * Results are always returned in the input order.
+ * 
+ * INPUT_ORDER - references are dispatched in the input order
+ * LONGEST_FIRST - references expected to be the most expensive to match
+ * are dispatched first, which shortens the tail of a batch
+ * INTERLEAVED - the most and the least expensive references are dispatched
+ * alternately, which mixes search-heavy and validation-light work
+ */
+public enum SchedulingPolicy {
+    INPUT_ORDER("input"),
+    LONGEST_FIRST("longest"),
+    INTERLEAVED("interleaved");
+    
+    private static final Map<String, SchedulingPolicy> policiesByCode =
+            new HashMap<>();
+    private final String code;
+    
+    static {
+        for (SchedulingPolicy policy : values()) {
+            policiesByCode.put(policy.getCode(), policy);
+        }
+    }
+    
+    /**
+     * Construct the enum.
+     * 
+     * @param code User specified code
+     */
+    SchedulingPolicy(String code) {
+        this.code = code;
+    }
+    
+    /**
+     * Fetch a policy by its code.
+     * 
+     * @param code Code to find
+     * 
+     * @return Found policy, or null if not found
+     */
+    public static SchedulingPolicy getByCode(String code) {
+        return policiesByCode.get(code);
+    }
+    
+    /**
+     * Get the internal code associated with the enum.
+     * 
+     * @return A user defined string code
+     */
+    public String getCode() {
+        return this.code;
+    }
+    
+}
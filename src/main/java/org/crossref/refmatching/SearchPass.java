@@ -0,0 +1,47 @@
+package org.crossref.refmatching;
+
+/**
+ * A single search-and-validate step performed for a reference. Unstructured
+ * references are matched in one pass, structured references whose journal
+ * title has a known abbreviation get a second pass with the expanded title.
+ */
+public class SearchPass {
+    
+    private final Reference reference;
+    private final int rows;
+    private final double minScore;
+
+    public SearchPass(Reference reference, int rows, double minScore) {
+        this.reference = reference;
+        this.rows = rows;
+        this.minScore = minScore;
+    }
+
+    /**
+     * Get the reference used to build the query and validate candidates.
+     * 
+     * @return A reference
+     */
+    public Reference getReference() {
+        return reference;
+    }
+
+    /**
+     * Get the number of search items to consider as candidates.
+     * 
+     * @return Number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the minimum validation score for a candidate to be accepted.
+     * 
+     * @return A score threshold
+     */
+    public double getMinScore() {
+        return minScore;
+    }
+    
+}
@@ -0,0 +1,113 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One of N shards of an input. The assignment of references to shards
+ * depends only on their positions in the input and on the input size, so
+ * independent processes given the same input file select disjoint shards
+ * covering the whole input without any coordination, and the shard outputs
+ * can be merged back into the input order, see {@link ShardMerger}.
+ */
+public class Shard {
+    
+    private final int index;
+    private final int count;
+    private final Partitioning partitioning;
+    
+    /**
+     * Create a shard.
+     * 
+     * @param index Shard index, from 0 to count - 1
+     * @param count The number of shards
+     * @param partitioning Partitioning of the input
+     */
+    public Shard(int index, int count, Partitioning partitioning) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard: " + index
+                    + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+        this.partitioning = partitioning;
+    }
+    
+    /**
+     * Parse a shard specification of the form i/N.
+     * 
+     * @param spec Shard specification
+     * @param partitioning Partitioning of the input
+     * @return Shard
+     */
+    public static Shard parse(String spec, Partitioning partitioning) {
+        String[] parts = spec.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid shard: " + spec);
+        }
+        try {
+            return new Shard(Integer.parseInt(parts[0].trim()),
+                    Integer.parseInt(parts[1].trim()), partitioning);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid shard: " + spec, ex);
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+    
+    /**
+     * Select the references of this shard, keeping their input order.
+     * 
+     * @param references All the references of the input
+     * @return The references of this shard
+     */
+    public List<ReferenceData> select(List<ReferenceData> references) {
+        List<ReferenceData> selected = new ArrayList<>(
+                references.size() / count + 1);
+        for (int i = 0; i < references.size(); i++) {
+            if (shardOf(partitioning, count, i, references.size()) == index) {
+                selected.add(references.get(i));
+            }
+        }
+        return selected;
+    }
+    
+    /**
+     * Get the shard a reference belongs to.
+     * 
+     * @param partitioning Partitioning of the input
+     * @param count The number of shards
+     * @param ordinal The position of the reference in the input
+     * @param total The number of references in the input
+     * @return Shard index
+     */
+    static int shardOf(Partitioning partitioning, int count, long ordinal,
+            long total) {
+        if (partitioning == Partitioning.RANGE) {
+            return (int) (ordinal * count / total);
+        }
+        // Murmur3 finalizer, so that consecutive ordinals spread evenly
+        long h = ordinal;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) Long.remainderUnsigned(h, count);
+    }
+    
+    @Override
+    public String toString() {
+        return index + "/" + count + " (" + partitioning.getCode() + ")";
+    }
+}
@@ -0,0 +1,113 @@
+package org.crossref.refmatching;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Merges the outputs of the shards of an input back into the input order.
+ * The position of every result in the input is recomputed from the
+ * partitioning, so the shard outputs do not need to carry it.
+ */
+public class ShardMerger {
+    
+    private final Partitioning partitioning;
+    
+    public ShardMerger(Partitioning partitioning) {
+        this.partitioning = partitioning;
+    }
+    
+    /**
+     * Merge shard outputs, possibly compressed, see {@link Codec}.
+     * 
+     * @param shardFiles Output files of shards 0 to N - 1
+     * @param format Format of the shard outputs
+     * @return Merged response
+     * @throws IOException if an output cannot be read, or the outputs do not
+     * match the partitioning
+     */
+    public MatchResponse merge(List<File> shardFiles, OutputFormat format)
+            throws IOException {
+        List<List<ReferenceLink>> shards = new ArrayList<>();
+        for (File file : shardFiles) {
+            try (InputStream in = Codec.openInput(file)) {
+                shards.add((format == OutputFormat.BINARY) ?
+                        readBinary(in) : readJSON(in));
+            }
+        }
+        List<ReferenceLink> links = interleave(shards);
+        List<ReferenceData> references = new ArrayList<>(links.size());
+        links.forEach(l -> references.add(l.getReferenceData()));
+        return new MatchResponse(new MatchRequest(references), links);
+    }
+    
+    /**
+     * Interleave the items of shards in the input order.
+     * 
+     * @param <T> Item type
+     * @param shards The items of shards 0 to N - 1, in the input order
+     * @return Items in the input order
+     * @throws IOException if the shard sizes do not match the partitioning
+     */
+    public <T> List<T> interleave(List<List<T>> shards) throws IOException {
+        int total = 0;
+        for (List<T> shard : shards) {
+            total += shard.size();
+        }
+        int[] next = new int[shards.size()];
+        List<T> merged = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            int s = Shard.shardOf(partitioning, shards.size(), i, total);
+            if (next[s] >= shards.get(s).size()) {
+                throw new IOException(String.format("Shard %d/%d has %d "
+                        + "results, which does not match %s partitioning of "
+                        + "%d references", s, shards.size(),
+                        shards.get(s).size(), partitioning.getCode(), total));
+            }
+            merged.add(shards.get(s).get(next[s]++));
+        }
+        return merged;
+    }
+    
+    private static List<ReferenceLink> readBinary(InputStream in)
+            throws IOException {
+        List<ReferenceLink> links = new ArrayList<>();
+        MatchResultReader.stream(in, links::add);
+        return links;
+    }
+    
+    static List<ReferenceLink> readJSON(InputStream in) {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        JSONArray results = new JSONArray(new JSONTokener(reader));
+        List<ReferenceLink> links = new ArrayList<>(results.length());
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            Object value = result.get("reference");
+            Reference reference = (value instanceof JSONObject) ?
+                    new Reference((JSONObject) value) :
+                    new Reference(value.toString());
+            MatchSource source = result.has("source") ?
+                    MatchSource.getByCode(result.getString("source")) : null;
+            DegradationLevel level = result.has("degradation") ?
+                    DegradationLevel.getByCode(result.getString("degradation"))
+                    : null;
+            links.add(new ReferenceLink(new ReferenceData(reference),
+                    result.isNull("DOI") ? null : result.getString("DOI"),
+                    result.getDouble("score"),
+                    result.has("status") ?
+                            MatchStatus.valueOf(result.getString("status")) :
+                            MatchStatus.COMPLETED,
+                    (source == null) ? MatchSource.SEARCH : source,
+                    (level == null) ? DegradationLevel.NORMAL : level));
+        }
+        return links;
+    }
+}
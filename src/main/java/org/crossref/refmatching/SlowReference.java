@@ -0,0 +1,166 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+
+/**
+ * A reference kept in the {@link SlowReferenceLog}, with the breakdown of
+ * its matching time.
+ */
+public class SlowReference {
+
+    private final String query;
+    private final ReferenceType type;
+    private final int rows;
+    private final long totalNanos;
+    private final long searchNanos;
+    private final long validationNanos;
+    private final int candidates;
+    private final boolean abbreviationPass;
+    private final MatchStatus status;
+    private final long timestamp;
+
+    SlowReference(String query, ReferenceType type, long totalNanos,
+            SlowReferenceLog.Trace trace, MatchStatus status) {
+        this.query = query;
+        this.type = type;
+        this.rows = trace.getRows();
+        this.totalNanos = totalNanos;
+        this.searchNanos = trace.getSearchNanos();
+        this.validationNanos = trace.getValidationNanos();
+        this.candidates = trace.getCandidates();
+        this.abbreviationPass = trace.getPasses() > 1;
+        this.status = status;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Get the search query of the reference, as given, without the journal
+     * title expanded.
+     *
+     * @return Query string
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Get the type of the reference.
+     *
+     * @return Reference type
+     */
+    public ReferenceType getType() {
+        return type;
+    }
+
+    /**
+     * Get the number of search results requested in the first search pass.
+     *
+     * @return Row count, 0 if the reference was not searched
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the time it took to match the reference.
+     *
+     * @return Time in milliseconds
+     */
+    public double getTotalMs() {
+        return toMs(totalNanos);
+    }
+
+    long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Get the time spent in the API searches of all the passes, including
+     * reading their results.
+     *
+     * @return Time in milliseconds
+     */
+    public double getSearchMs() {
+        return toMs(searchNanos);
+    }
+
+    /**
+     * Get the time spent validating the candidates of all the passes.
+     *
+     * @return Time in milliseconds
+     */
+    public double getValidationMs() {
+        return toMs(validationNanos);
+    }
+
+    /**
+     * Get the number of candidates validated in all the passes.
+     *
+     * @return Candidate count
+     */
+    public int getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Check whether the reference was searched again with its journal title
+     * abbreviation expanded.
+     *
+     * @return A flag
+     */
+    public boolean isAbbreviationPass() {
+        return abbreviationPass;
+    }
+
+    /**
+     * Get the final status of the reference.
+     *
+     * @return Match status
+     */
+    public MatchStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the time the matching of the reference ended.
+     *
+     * @return Time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Create the JSON representation of the entry.
+     *
+     * @return JSON object
+     */
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("query", query);
+        json.put("type", type.name());
+        json.put("rows", rows);
+        json.put("totalMs", getTotalMs());
+        json.put("searchMs", getSearchMs());
+        json.put("validationMs", getValidationMs());
+        json.put("candidates", candidates);
+        json.put("abbreviationPass", abbreviationPass);
+        json.put("status", status.name());
+        json.put("timestamp", timestamp);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f ms (search %.1f ms, validation %.1f ms, "
+                + "%d candidates, %d rows%s, %s, %s): %s", getTotalMs(),
+                getSearchMs(), getValidationMs(), candidates, rows,
+                abbreviationPass ? ", abbreviation pass" : "", type, status,
+                query);
+    }
+}
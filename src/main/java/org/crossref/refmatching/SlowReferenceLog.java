@@ -0,0 +1,200 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+
+/**
+ * Keeps the slowest references matched in every time window, with the
+ * breakdown of their matching time, so that outliers can be found and
+ * reproduced. The log holds at most capacity references of the current
+ * window and of the previous one.
+ *
+ * References faster than the slowest ones already kept are rejected with
+ * a single comparison, without locking or allocating, so the log can stay
+ * enabled in production.
+ */
+public class SlowReferenceLog {
+
+    public static final int DEFAULT_CAPACITY = 20;
+    public static final long DEFAULT_WINDOW_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Comparator<SlowReference> BY_TIME =
+            Comparator.comparingLong(SlowReference::getTotalNanos);
+
+    private final int capacity;
+    private final long windowNanos;
+    private final PriorityQueue<SlowReference> current;
+    private List<SlowReference> previous = Collections.emptyList();
+    private long windowStart = System.nanoTime();
+    private volatile long windowEnd;
+    private volatile long thresholdNanos = -1;
+
+    /**
+     * The cost breakdown of a reference, collected while it is matched.
+     */
+    static class Trace {
+        private boolean active;
+        private int rows;
+        private int passes;
+        private int candidates;
+        private long searchNanos;
+        private long validationNanos;
+
+        /**
+         * Clear the trace for the next reference.
+         *
+         * @param traced Whether the reference is traced, decided once when
+         * its matching starts
+         */
+        void reset(boolean traced) {
+            active = traced;
+            rows = 0;
+            passes = 0;
+            candidates = 0;
+            searchNanos = 0;
+            validationNanos = 0;
+        }
+
+        /**
+         * Add the cost of a search pass.
+         *
+         * @param passRows The number of search results requested
+         * @param passSearchNanos The search time, in nanoseconds
+         * @param passValidationNanos The validation time, in nanoseconds
+         * @param passCandidates The number of candidates validated
+         */
+        void addPass(int passRows, long passSearchNanos,
+                long passValidationNanos, int passCandidates) {
+            if (passes == 0) {
+                rows = passRows;
+            }
+            passes++;
+            searchNanos += passSearchNanos;
+            validationNanos += passValidationNanos;
+            candidates += passCandidates;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+
+        int getRows() {
+            return rows;
+        }
+
+        int getPasses() {
+            return passes;
+        }
+
+        int getCandidates() {
+            return candidates;
+        }
+
+        long getSearchNanos() {
+            return searchNanos;
+        }
+
+        long getValidationNanos() {
+            return validationNanos;
+        }
+    }
+
+    /**
+     * Create a log.
+     *
+     * @param capacity The number of references kept per window
+     * @param windowMs The length of a window in milliseconds
+     */
+    public SlowReferenceLog(int capacity, long windowMs) {
+        if (capacity <= 0 || windowMs <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid slow "
+                    + "reference log size: %d, window: %d", capacity,
+                    windowMs));
+        }
+        this.capacity = capacity;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.current = new PriorityQueue<>(capacity, BY_TIME);
+        this.windowEnd = windowStart + windowNanos;
+    }
+
+    /**
+     * Get the number of references kept per window.
+     *
+     * @return Reference count
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Check whether a reference would be kept, without locking.
+     *
+     * @param totalNanos The time it took to match the reference
+     * @param nowNanos The current time, from {@link System#nanoTime()}
+     * @return A flag
+     */
+    boolean isSlow(long totalNanos, long nowNanos) {
+        return totalNanos > thresholdNanos || nowNanos - windowEnd >= 0;
+    }
+
+    /**
+     * Add a reference, if it is among the slowest in the current window.
+     *
+     * @param reference The reference
+     */
+    synchronized void add(SlowReference reference) {
+        rotate(System.nanoTime());
+        if (current.size() < capacity) {
+            current.add(reference);
+        } else if (reference.getTotalNanos()
+                > current.peek().getTotalNanos()) {
+            current.poll();
+            current.add(reference);
+        }
+        if (current.size() == capacity) {
+            thresholdNanos = current.peek().getTotalNanos();
+        }
+    }
+
+    private void rotate(long now) {
+        if (now - windowEnd < 0) {
+            return;
+        }
+        // The previous window is kept only if it just ended
+        previous = (now - windowEnd < windowNanos) ?
+                new ArrayList<>(current) : Collections.emptyList();
+        current.clear();
+        windowStart += ((now - windowStart) / windowNanos) * windowNanos;
+        windowEnd = windowStart + windowNanos;
+        thresholdNanos = -1;
+    }
+
+    /**
+     * Get the slowest references of the current and the previous window.
+     *
+     * @return References, the slowest first
+     */
+    public synchronized List<SlowReference> getSlowest() {
+        rotate(System.nanoTime());
+        List<SlowReference> slowest = new ArrayList<>(previous);
+        slowest.addAll(current);
+        slowest.sort(BY_TIME.reversed());
+        return slowest;
+    }
+
+    /**
+     * Create the JSON representation of the slowest references.
+     *
+     * @return JSON array, the slowest first
+     */
+    public JSONArray toJSON() {
+        JSONArray json = new JSONArray();
+        getSlowest().forEach(r -> json.put(r.toJSON()));
+        return json;
+    }
+}
@@ -0,0 +1,127 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing a single stage of the matching pipeline: the depth
+ * of its input queue, the number of items processed and the time spent
+ * processing them. All counters are cumulative and safe to update from
+ * many threads.
+ */
+public class StageMetrics {
+    
+    private final String name;
+    private final LongAdder queueDepth = new LongAdder();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final AtomicLong firstNanos = new AtomicLong();
+    private volatile long lastNanos = 0;
+
+    public StageMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of the stage.
+     * 
+     * @return Stage name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    void recordEnqueued() {
+        queueDepth.increment();
+        long depth = queueDepth.sum();
+        long max = maxQueueDepth.get();
+        while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+            max = maxQueueDepth.get();
+        }
+    }
+    
+    void recordDequeued() {
+        queueDepth.decrement();
+    }
+    
+    void recordProcessed(long startNanos) {
+        long now = System.nanoTime();
+        processed.increment();
+        busyNanos.add(now - startNanos);
+        firstNanos.compareAndSet(0, startNanos);
+        lastNanos = now;
+    }
+    
+    /**
+     * Get the number of items currently waiting in the input queue
+     * of the stage.
+     * 
+     * @return Queue depth
+     */
+    public long getQueueDepth() {
+        return queueDepth.sum();
+    }
+
+    /**
+     * Get the largest input queue depth observed.
+     * 
+     * @return Queue depth
+     */
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+    
+    /**
+     * Get the number of items processed by the stage.
+     * 
+     * @return Item count
+     */
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+    
+    /**
+     * Get the total time the stage threads spent processing items.
+     * 
+     * @return Time in milliseconds
+     */
+    public long getBusyTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(busyNanos.sum());
+    }
+    
+    /**
+     * Get the average time needed to process a single item.
+     * 
+     * @return Time in milliseconds
+     */
+    public double getMeanServiceTimeMs() {
+        long count = processed.sum();
+        return count == 0 ? 0. : busyNanos.sum() / 1e6 / count;
+    }
+    
+    /**
+     * Get the number of items processed per second, between the first and
+     * the last item processed.
+     * 
+     * @return Items per second
+     */
+    public double getThroughput() {
+        long first = firstNanos.get();
+        long elapsed = lastNanos - first;
+        if (first == 0 || elapsed <= 0) {
+            return 0.;
+        }
+        return processed.sum() * 1e9 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{queued=%d, maxQueued=%d, processed=%d, "
+                + "meanMs=%.2f, perSec=%.1f}", name, getQueueDepth(),
+                getMaxQueueDepth(), getProcessedCount(), getMeanServiceTimeMs(),
+                getThroughput());
+    }
+    
+}
@@ -0,0 +1,68 @@
+package org.crossref.refmatching;
+
+import org.json.JSONObject;
+
+/**
+ * The outcome of re-scoring recorded candidates under one combination of
+ * thresholds.
+ */
+public class SweepResult {
+    
+    private final double candidateMinScore;
+    private final double unstructuredMinScore;
+    private final double structuredMinScore;
+    private final int referenceCount;
+    private final int matchedUnstructured;
+    private final int matchedStructured;
+    
+    public SweepResult(double candidateMinScore, double unstructuredMinScore,
+            double structuredMinScore, int referenceCount,
+            int matchedUnstructured, int matchedStructured) {
+        this.candidateMinScore = candidateMinScore;
+        this.unstructuredMinScore = unstructuredMinScore;
+        this.structuredMinScore = structuredMinScore;
+        this.referenceCount = referenceCount;
+        this.matchedUnstructured = matchedUnstructured;
+        this.matchedStructured = matchedStructured;
+    }
+
+    public double getCandidateMinScore() {
+        return candidateMinScore;
+    }
+
+    public double getUnstructuredMinScore() {
+        return unstructuredMinScore;
+    }
+
+    public double getStructuredMinScore() {
+        return structuredMinScore;
+    }
+
+    public int getReferenceCount() {
+        return referenceCount;
+    }
+
+    public int getMatchedUnstructured() {
+        return matchedUnstructured;
+    }
+
+    public int getMatchedStructured() {
+        return matchedStructured;
+    }
+
+    public int getMatched() {
+        return matchedUnstructured + matchedStructured;
+    }
+    
+    public JSONObject toJSON() {
+        JSONObject result = new JSONObject();
+        result.put("candidateMinScore", candidateMinScore);
+        result.put("unstructuredMinScore", unstructuredMinScore);
+        result.put("structuredMinScore", structuredMinScore);
+        result.put("references", referenceCount);
+        result.put("matched", getMatched());
+        result.put("matchedUnstructured", matchedUnstructured);
+        result.put("matchedStructured", matchedStructured);
+        return result;
+    }
+}
@@ -0,0 +1,204 @@
+package org.crossref.refmatching;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import org.crossref.common.utils.LogUtils;
+
+/**
+ * Threshold tuning without repeated API searches. The candidates of a batch
+ * of references are searched once and recorded in a local file, together
+ * with their validation similarities. The recorded candidates are then
+ * re-scored under many combinations of the candidate, unstructured and
+ * structured thresholds in parallel, which only compares numbers.
+ * 
+ * The numbers of rows cannot be swept, as they determine the search items
+ * recorded.
+ */
+public class ThresholdSweep {
+    
+    private static final int MAGIC = 0x524D4331;
+    private static final int VERSION = 1;
+    private static final Logger LOGGER = LogUtils.getLogger();
+    
+    private final ReferenceMatcher matcher;
+    
+    public ThresholdSweep(ReferenceMatcher matcher) {
+        this.matcher = matcher;
+    }
+    
+    /**
+     * Search for the candidates of the references of a request and record
+     * them in a file, compressed according to its extension. The references
+     * are searched with request.getNumThreads() threads.
+     * 
+     * @param request Match request
+     * @param file Candidate file
+     * @return The number of references recorded
+     * @throws IOException if the file cannot be written
+     * @throws MatchException if the search is interrupted
+     */
+    public int record(MatchRequest request, File file)
+            throws IOException, MatchException {
+        List<ReferenceData> references = request.getReferences();
+        int numThreads = Math.max(1, request.getNumThreads());
+        AtomicInteger next = new AtomicInteger();
+        
+        ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+        try (DataOutputStream out = new DataOutputStream(
+                Codec.openOutput(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            
+            // Candidate sets are written as they are completed, in any order
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                workers.add(threadPool.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < references.size()) {
+                        ReferenceData data = references.get(i);
+                        CandidateSet set =
+                                matcher.recordCandidates(data, i, request);
+                        data.release();
+                        synchronized (out) {
+                            out.writeBoolean(true);
+                            set.write(out);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+            out.writeBoolean(false);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MatchException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new MatchException(ex);
+        } finally {
+            threadPool.shutdownNow();
+        }
+        
+        LOGGER.info(String.format("Recorded candidates of %d references.",
+                references.size()));
+        return references.size();
+    }
+    
+    /**
+     * Load the candidate sets recorded in a file.
+     * 
+     * @param file Candidate file
+     * @return Candidate sets, in the order recorded
+     * @throws IOException if the file cannot be read
+     */
+    public static List<CandidateSet> load(File file) throws IOException {
+        List<CandidateSet> sets = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                Codec.openInput(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a candidate file: " + file);
+            }
+            while (in.readBoolean()) {
+                sets.add(CandidateSet.read(in));
+            }
+        }
+        return sets;
+    }
+    
+    /**
+     * Re-score the recorded candidates under all combinations of the given
+     * thresholds.
+     * 
+     * @param file Candidate file
+     * @param candidateMinScores Candidate selection thresholds
+     * @param unstructuredMinScores Unstructured validation thresholds
+     * @param structuredMinScores Structured validation thresholds
+     * @param numThreads The number of threads
+     * @return The results of all combinations
+     * @throws IOException if the file cannot be read
+     */
+    public static List<SweepResult> sweep(File file,
+            double[] candidateMinScores, double[] unstructuredMinScores,
+            double[] structuredMinScores, int numThreads) throws IOException {
+        return sweep(load(file), candidateMinScores, unstructuredMinScores,
+                structuredMinScores, numThreads);
+    }
+    
+    /**
+     * Re-score candidate sets under all combinations of the given thresholds.
+     * 
+     * @param sets Candidate sets
+     * @param candidateMinScores Candidate selection thresholds
+     * @param unstructuredMinScores Unstructured validation thresholds
+     * @param structuredMinScores Structured validation thresholds
+     * @param numThreads The number of threads
+     * @return The results of all combinations
+     */
+    public static List<SweepResult> sweep(List<CandidateSet> sets,
+            double[] candidateMinScores, double[] unstructuredMinScores,
+            double[] structuredMinScores, int numThreads) {
+        List<Callable<SweepResult>> combinations = new ArrayList<>();
+        for (double ct : candidateMinScores) {
+            for (double ut : unstructuredMinScores) {
+                for (double st : structuredMinScores) {
+                    combinations.add(() -> evaluate(sets, ct, ut, st));
+                }
+            }
+        }
+        
+        ExecutorService threadPool =
+                Executors.newFixedThreadPool(Math.max(1, numThreads));
+        try {
+            List<SweepResult> results = new ArrayList<>();
+            for (Future<SweepResult> result :
+                    threadPool.invokeAll(combinations)) {
+                results.add(result.get());
+            }
+            return results;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Threshold sweep interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Threshold sweep failed",
+                    ex.getCause());
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+    
+    private static SweepResult evaluate(List<CandidateSet> sets,
+            double candidateMinScore, double unstructuredMinScore,
+            double structuredMinScore) {
+        int matchedUnstructured = 0;
+        int matchedStructured = 0;
+        for (CandidateSet set : sets) {
+            if (set.chooseDOI(candidateMinScore, unstructuredMinScore,
+                    structuredMinScore) == null) {
+                continue;
+            }
+            if (set.getType() == ReferenceType.STRUCTURED) {
+                matchedStructured++;
+            } else {
+                matchedUnstructured++;
+            }
+        }
+        return new SweepResult(candidateMinScore, unstructuredMinScore,
+                structuredMinScore, sets.size(), matchedUnstructured,
+                matchedStructured);
+    }
+}
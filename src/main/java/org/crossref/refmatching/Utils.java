@@ -3,6 +3,10 @@ package org.crossref.refmatching;
 import cz.jirutka.unidecode.Unidecode;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -11,6 +15,7 @@ import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import me.xdrop.fuzzywuzzy.FuzzySearch;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.crossref.common.utils.JsonUtils;
@@ -28,6 +33,8 @@ import org.json.JSONObject;
 public class Utils {
     
     private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String LINE_DELIMITER = "\r?\n";
+    private static final String LINE_DELIMITER_REGEX = "\\r?\\n";
 
     public static String normalize(String string) {
         string = Unidecode.toAscii().decode(string).toLowerCase();
@@ -96,14 +103,52 @@ public class Utils {
     
     public static List<ReferenceData> parseInputReferences(InputType inputType,
             String input, String delimiter) throws IOException {
-        String data;
+        byte[] data;
         if (inputType == InputType.FILE) {
-            data = FileUtils.readFileToString(new File(input), "UTF-8");
+            // Compressed files are decompressed on the fly
+            try (InputStream in = Codec.openInput(new File(input))) {
+                data = IOUtils.toByteArray(in);
+            }
         } else {
-            data = input;
+            data = input.getBytes(StandardCharsets.UTF_8);
         }
+        return parseInputReferences(data, delimiter);
+    }
+    
+    /**
+     * Check whether a delimiter splits the input into lines, whether it is
+     * given with the line break characters themselves, or as the regular
+     * expression text of the default command line delimiter.
+     * 
+     * @param delimiter Reference delimiter regular expression
+     * @return A flag
+     */
+    public static boolean isLineDelimiter(String delimiter) {
+        return LINE_DELIMITER.equals(delimiter)
+                || LINE_DELIMITER_REGEX.equals(delimiter);
+    }
+    
+    /**
+     * Parse references from UTF-8 input, which is either a JSON array of
+     * references, or a delimited list of references. Line-delimited input
+     * is not parsed upfront: every line is kept as a slice of the input and
+     * only parsed when it is matched.
+     * 
+     * @param data Input bytes
+     * @param delimiter Reference delimiter regular expression
+     * @return A list of references
+     */
+    public static List<ReferenceData> parseInputReferences(byte[] data,
+            String delimiter) {
+        if (isLineDelimiter(delimiter)
+                && firstNonWhitespace(ByteBuffer.wrap(data), 0, data.length)
+                        != '[') {
+            return splitLines(data, 0, data.length);
+        }
+        
+        String string = new String(data, StandardCharsets.UTF_8);
         try {
-            JSONArray arr = JsonUtils.createJSONArray(data);
+            JSONArray arr = JsonUtils.createJSONArray(string);
             List<Object> refs = StreamSupport.stream(arr.spliterator(), true)
                                     .collect(Collectors.toList());
             return refs.parallelStream()
@@ -113,19 +158,114 @@ public class Utils {
                         .map(r -> new ReferenceData(r))
                         .collect(Collectors.toList());
         } catch (JSONException ex) {
-            List<String> strs = Arrays.asList(data.split(delimiter));
+            List<String> strs = Arrays.asList(string.split(delimiter));
             return strs.parallelStream()
-                    .map(s -> {
-                        try {
-                            JSONObject refObject = new JSONObject(s);
-                            return new Reference(refObject);
-                        } catch (JSONException ex1) {
-                            return new Reference(s);
-                        }
-                    })
+                    .map(s -> parseReference(s))
                     .map(r -> new ReferenceData(r))
                     .collect(Collectors.toList());
         }
     }
     
+    /**
+     * Split a range of UTF-8 input into raw line references, following
+     * the semantics of String.split("\\r?\\n"): empty lines are kept,
+     * except for the trailing ones.
+     * 
+     * @param data Input bytes
+     * @param from Start of the range
+     * @param to End of the range (exclusive)
+     * @return A list of raw references
+     */
+    static List<ReferenceData> splitLines(byte[] data, int from, int to) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        List<ReferenceData> refs = new ArrayList<>();
+        if (from == to) {
+            refs.add(createRawReference(buffer, from, to));
+        } else {
+            splitLines(buffer, from, to, refs);
+            trimTrailingEmptyLines(refs);
+        }
+        for (int i = 0; i < refs.size(); i++) {
+            refs.get(i).setOrdinal(i);
+        }
+        return refs;
+    }
+    
+    /**
+     * Split a range of UTF-8 input into raw line references, keeping all
+     * empty lines. The part after the last line break is a reference only
+     * if it is not empty.
+     * 
+     * @param data Input buffer
+     * @param from Start of the range
+     * @param to End of the range (exclusive)
+     * @param refs The list the references are added to
+     */
+    static void splitLines(ByteBuffer data, int from, int to,
+            List<ReferenceData> refs) {
+        int start = from;
+        for (int i = from; i < to; i++) {
+            if (data.get(i) == '\n') {
+                int end = (i > start && data.get(i - 1) == '\r') ? i - 1 : i;
+                refs.add(createRawReference(data, start, end));
+                start = i + 1;
+            }
+        }
+        if (start < to) {
+            refs.add(createRawReference(data, start, to));
+        }
+    }
+    
+    /**
+     * Remove the references of the trailing empty lines.
+     * 
+     * @param refs Line references
+     */
+    static void trimTrailingEmptyLines(List<ReferenceData> refs) {
+        while (!refs.isEmpty()
+                && refs.get(refs.size() - 1).getTextLength() == 0) {
+            refs.remove(refs.size() - 1);
+        }
+    }
+    
+    private static ReferenceData createRawReference(ByteBuffer data,
+            int start, int end) {
+        return new ReferenceData(data, start, end - start,
+                firstNonWhitespace(data, start, end) == '{' ?
+                        ReferenceType.STRUCTURED : ReferenceType.UNSTRUCTURED);
+    }
+    
+    static int firstNonWhitespace(ByteBuffer data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((data.get(i) & 0xFF) > ' ') {
+                return data.get(i);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Parse a single reference, which is either a JSON object with structured
+     * metadata, or a reference string.
+     * 
+     * @param string Reference text
+     * @return A structured or unstructured reference
+     */
+    public static Reference parseReference(String string) {
+        // Only try to parse strings starting with an object, like the JSON
+        // parser requires, to avoid an exception for every reference string
+        int i = 0;
+        while (i < string.length() && string.charAt(i) <= ' ') {
+            i++;
+        }
+        if (i < string.length() && string.charAt(i) == '{') {
+            try {
+                return Reference.fromJSON(string);
+            } catch (JSONException ex) {
+                // not a structured reference
+            }
+        }
+        return new Reference(string);
+    }
+    
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void shouldRejectBeyondQueuedLimit() {
+        AdmissionController admission = new AdmissionController(10, 0, 4);
+        admission.admit(6);
+        admission.admit(4);
+        try {
+            admission.admit(1);
+            fail("Request should be rejected");
+        } catch (MatchRejectedException ex) {
+            assertTrue(ex.getRetryAfterMs() > 0);
+        }
+        assertEquals(10, admission.getQueuedReferences());
+
+        admission.release(6, 4, TimeUnit.MILLISECONDS.toNanos(60));
+        admission.admit(5);
+        assertEquals(9, admission.getQueuedReferences());
+        assertEquals(3, admission.getAcceptedCount());
+        assertEquals(15, admission.getAcceptedReferences());
+        assertEquals(1, admission.getRejectedCount());
+        assertEquals(10, admission.getMaxQueuedReferences());
+    }
+
+    @Test
+    public void shouldAdmitOversizedRequestWhenIdle() {
+        AdmissionController admission = new AdmissionController(10, 0, 4);
+        admission.admit(50);
+        try {
+            admission.admit(1);
+            fail("Request should be rejected");
+        } catch (MatchRejectedException ex) {
+        }
+        admission.release(50, 4, TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, admission.getQueuedReferences());
+        admission.admit(50);
+    }
+
+    @Test
+    public void shouldRejectBeyondEstimatedWait() {
+        AdmissionController admission = new AdmissionController(0, 100, 2);
+        // 10 references with 2 threads in 1 s: 200 ms of thread time each
+        admission.admit(10);
+        admission.release(10, 2, TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, admission.getEstimatedWaitMs());
+
+        admission.admit(1);
+        assertEquals(100, admission.getEstimatedWaitMs());
+        admission.admit(1);
+        assertEquals(200, admission.getEstimatedWaitMs());
+        try {
+            admission.admit(1);
+            fail("Request should be rejected");
+        } catch (MatchRejectedException ex) {
+            assertEquals(100, ex.getRetryAfterMs());
+        }
+        assertEquals(1, admission.getRejectedCount());
+        assertEquals(2, admission.getQueuedReferences());
+    }
+}
@@ -0,0 +1,158 @@
+package org.crossref.refmatching;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CheckpointJournalTest {
+
+    private static final String INPUT = "input=0123;shard=null";
+    private static final String CONFIG = "ct=0.4";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResume() throws IOException {
+        File file = folder.newFile("journal.txt");
+        List<ReferenceData> references = references(4);
+        MatchRequest request = new MatchRequest(references);
+
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, false, 0, INPUT)) {
+            ListLinkCollector links = new ListLinkCollector(request, 4);
+            journal.restore(references, links, CONFIG);
+            LinkCollector journaling = journal.journaling(links);
+            journaling.record(2, new ReferenceLink(references.get(2),
+                    "10.1/b", 0.5));
+            journaling.record(0, new ReferenceLink(references.get(0),
+                    null, 0.0));
+            journaling.record(1, new ReferenceLink(references.get(1),
+                    null, 0.0, MatchStatus.TIMED_OUT));
+            assertEquals(2, journal.getJournaledCount());
+        }
+        
+        // Simulate a crash in the middle of a line
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("3\t0.7\t10.1/".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, true, 0, INPUT)) {
+            assertEquals(2, journal.getRestoredCount());
+            ListLinkCollector links = new ListLinkCollector(request, 4);
+            journal.restore(references, links, CONFIG);
+            assertTrue(links.isRecorded(0));
+            assertFalse(links.isRecorded(1));
+            assertTrue(links.isRecorded(2));
+            assertFalse(links.isRecorded(3));
+            journal.journaling(links).record(3, new ReferenceLink(
+                    references.get(3), "10.1/d", 0.9));
+            
+            MatchResponse response = links.toResponse();
+            assertNull(response.getMatchedLinks().get(0).getDOI());
+            assertEquals("10.1/b", response.getMatchedLinks().get(2).getDOI());
+            assertEquals(0.5, response.getMatchedLinks().get(2).getScore(),
+                    0.0001);
+        }
+
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, true, 0, INPUT)) {
+            assertEquals(3, journal.getRestoredCount());
+        }
+    }
+
+    @Test(expected = MatchException.class)
+    public void testResumeDifferentInput() throws IOException {
+        File file = folder.newFile("journal.txt");
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, false, 0, INPUT)) {
+            journal.restore(references(4), new ListLinkCollector(
+                    new MatchRequest(references(4)), 4), CONFIG);
+        }
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, true, 0, INPUT)) {
+            journal.restore(references(5), new ListLinkCollector(
+                    new MatchRequest(references(5)), 5), CONFIG);
+        }
+    }
+
+    @Test(expected = MatchException.class)
+    public void testResumeDifferentConfiguration() throws IOException {
+        File file = folder.newFile("journal.txt");
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, false, 0, INPUT)) {
+            journal.restore(references(4), new ListLinkCollector(
+                    new MatchRequest(references(4)), 4), CONFIG);
+        }
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, true, 0, INPUT)) {
+            journal.restore(references(4), new ListLinkCollector(
+                    new MatchRequest(references(4)), 4), "ct=0.5");
+        }
+    }
+
+    @Test(expected = MatchException.class)
+    public void testResumeDifferentShard() throws IOException {
+        File file = folder.newFile("journal.txt");
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, false, 0, INPUT)) {
+            journal.restore(references(4), new ListLinkCollector(
+                    new MatchRequest(references(4)), 4), CONFIG);
+        }
+        try (CheckpointJournal journal = new CheckpointJournal(file, true, 0,
+                "input=0123;shard=1/4 (hash)")) {
+            journal.restore(references(4), new ListLinkCollector(
+                    new MatchRequest(references(4)), 4), CONFIG);
+        }
+    }
+
+    @Test
+    public void testMalformedLine() throws IOException {
+        File file = folder.newFile("journal.txt");
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, false, 0, INPUT)) {
+            journal.restore(references(4), new ListLinkCollector(
+                    new MatchRequest(references(4)), 4), CONFIG);
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("0\t0.5\t10.1/a\n1 0.5\n".getBytes(
+                    StandardCharsets.UTF_8));
+        }
+        try {
+            new CheckpointJournal(file, true, 0, INPUT).close();
+            fail("Malformed journal was loaded");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains(file.toString()));
+            assertTrue(ex.getMessage().contains("line 3"));
+        }
+    }
+
+    @Test
+    public void testDigest() throws IOException {
+        String digest = CheckpointJournal.digest(new ByteArrayInputStream(
+                "reference".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(32, digest.length());
+        assertEquals(digest, CheckpointJournal.digest(new ByteArrayInputStream(
+                "reference".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(digest.equals(CheckpointJournal.digest(
+                new ByteArrayInputStream(
+                        "references".getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    private List<ReferenceData> references(int count) {
+        List<ReferenceData> references = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            references.add(new ReferenceData(new Reference("Reference " + i)));
+        }
+        return references;
+    }
+}
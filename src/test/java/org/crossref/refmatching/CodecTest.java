@@ -0,0 +1,70 @@
+package org.crossref.refmatching;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CodecTest {
+
+    private static final String CONTENT =
+            "Reference one\n{\"volume\": \"12\"}\nReference two\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (Codec codec : new Codec[] {Codec.NONE, Codec.GZIP, Codec.LZ4}) {
+            File file = folder.newFile("refs.txt" + codec.getCode());
+            try (OutputStream out = Codec.openOutput(file, codec)) {
+                out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+            }
+            try (InputStream in = Codec.openInput(file)) {
+                assertEquals(CONTENT, IOUtils.toString(in, "UTF-8"));
+            }
+        }
+    }
+
+    @Test
+    public void testGetByFileName() {
+        assertEquals(Codec.GZIP, Codec.getByFileName("refs.txt.gz"));
+        assertEquals(Codec.LZ4, Codec.getByFileName("results.bin.lz4"));
+        assertEquals(Codec.ZSTD, Codec.getByFileName("refs.zst"));
+        assertEquals(Codec.NONE, Codec.getByFileName("refs.txt"));
+    }
+
+    @Test
+    public void testDetect() throws IOException {
+        assertEquals(Codec.ZSTD, Codec.detect(new ByteArrayInputStream(
+                new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0})));
+        assertEquals(Codec.NONE, Codec.detect(new ByteArrayInputStream(
+                new byte[] {0x1f})));
+        InputStream in = new BufferedInputStream(
+                new ByteArrayInputStream(new byte[] {0x1f, (byte) 0x8b}));
+        assertEquals(Codec.GZIP, Codec.detect(in));
+        assertEquals(0x1f, in.read());
+    }
+
+    @Test
+    public void testParseCompressedInput() throws IOException {
+        File file = folder.newFile("refs.txt.gz");
+        try (OutputStream out = Codec.openOutput(file)) {
+            out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+        List<ReferenceData> refs = Utils.parseInputReferences(InputType.FILE,
+                file.getPath(), "\r?\n");
+        assertEquals(3, refs.size());
+        assertEquals("Reference two",
+                refs.get(2).getReference().getFormattedString());
+    }
+}
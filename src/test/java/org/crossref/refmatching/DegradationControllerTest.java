@@ -0,0 +1,84 @@
+package org.crossref.refmatching;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class DegradationControllerTest {
+
+    @Test
+    public void shouldDegradeWithQueueDepth() {
+        DegradationController degradation = new DegradationController(0, 100);
+        degradation.enter(50);
+        assertEquals(DegradationLevel.NORMAL, degradation.getLevel());
+        degradation.enter(50);
+        assertEquals(DegradationLevel.REDUCED_ROWS, degradation.getLevel());
+        degradation.enter(100);
+        assertEquals(DegradationLevel.SINGLE_PASS, degradation.getLevel());
+        degradation.enter(200);
+        assertEquals(DegradationLevel.STALE_CACHE, degradation.getLevel());
+
+        // Levels are left only well below their entry points
+        degradation.exit(50);
+        assertEquals(DegradationLevel.STALE_CACHE, degradation.getLevel());
+        degradation.exit(100);
+        assertEquals(DegradationLevel.SINGLE_PASS, degradation.getLevel());
+        degradation.exit(250);
+        assertEquals(DegradationLevel.NORMAL, degradation.getLevel());
+        assertEquals(0, degradation.getQueuedReferences());
+        assertEquals(5, degradation.getLevelChanges());
+    }
+
+    @Test
+    public void shouldExitReferencesAsTheyComplete() {
+        DegradationController degradation = new DegradationController(0, 100);
+        ListLinkCollector links = new ListLinkCollector(null, 3);
+        try (DegradationController.Entry entry = degradation.entering(3)) {
+            LinkCollector tracking = entry.tracking(links);
+            assertEquals(3, degradation.getQueuedReferences());
+            tracking.record(0, new ReferenceLink(
+                    new ReferenceData(new Reference("ref1")), null, 0.));
+            assertEquals(2, degradation.getQueuedReferences());
+            assertTrue(links.isRecorded(0));
+        }
+        assertEquals(0, degradation.getQueuedReferences());
+    }
+
+    @Test
+    public void shouldDegradeWithLatency() {
+        DegradationController degradation = new DegradationController(100, 0);
+        degradation.recordSearch(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(DegradationLevel.NORMAL, degradation.getLevel());
+        assertEquals(50., degradation.getLatencyMs(), 0.001);
+        for (int i = 0; i < 100; i++) {
+            degradation.recordSearch(TimeUnit.MILLISECONDS.toNanos(1000));
+        }
+        assertEquals(DegradationLevel.STALE_CACHE, degradation.getLevel());
+        for (int i = 0; i < 100; i++) {
+            degradation.recordSearch(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(DegradationLevel.NORMAL, degradation.getLevel());
+    }
+
+    @Test
+    public void shouldForceLevel() {
+        DegradationController degradation = new DegradationController(0, 10);
+        degradation.setForcedLevel(DegradationLevel.SINGLE_PASS);
+        assertEquals(DegradationLevel.SINGLE_PASS, degradation.getLevel());
+        degradation.enter(100);
+        assertEquals(DegradationLevel.SINGLE_PASS, degradation.getLevel());
+        degradation.setForcedLevel(null);
+        assertEquals(DegradationLevel.STALE_CACHE, degradation.getLevel());
+    }
+
+    @Test
+    public void shouldReduceSearches() {
+        assertEquals(100, DegradationLevel.NORMAL.getRows(100));
+        assertEquals(25, DegradationLevel.REDUCED_ROWS.getRows(100));
+        assertEquals(1, DegradationLevel.STALE_CACHE.getRows(2));
+        assertFalse(DegradationLevel.REDUCED_ROWS.isSinglePass());
+        assertTrue(DegradationLevel.SINGLE_PASS.isSinglePass());
+        assertFalse(DegradationLevel.SINGLE_PASS.isStaleServed());
+        assertTrue(DegradationLevel.STALE_CACHE.isStaleServed());
+    }
+}
@@ -0,0 +1,151 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class FairSchedulerTest {
+
+    @Test(timeout = 60000)
+    public void shouldRunInteractiveBeforeQueuedBulk()
+            throws InterruptedException, ExecutionException {
+        FairScheduler scheduler = new FairScheduler(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(scheduler.submit("import", Priority.BULK,
+                    () -> order.add("bulk")));
+        }
+        for (int i = 0; i < 10; i++) {
+            futures.add(scheduler.submit("search", Priority.INTERACTIVE,
+                    () -> order.add("interactive")));
+        }
+        blocked.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals(20, order.size());
+        assertEquals(Collections.nCopies(10, "interactive"),
+                order.subList(0, 10));
+        assertEquals(10, scheduler.getServedCount("import", Priority.BULK));
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 60000)
+    public void shouldShareByTenantWeight()
+            throws InterruptedException, ExecutionException {
+        FairScheduler scheduler = new FairScheduler(1);
+        scheduler.setTenantWeight("heavy", 3);
+        CountDownLatch blocked = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicInteger remaining = new AtomicInteger(400);
+        Future<?> heavy = scheduler.submitRepeated("heavy", Priority.NORMAL,
+                () -> remaining.decrementAndGet() > 0);
+        Future<?> light = scheduler.submitRepeated("light", Priority.NORMAL,
+                () -> remaining.decrementAndGet() > 0);
+        blocked.countDown();
+        heavy.get();
+        light.get();
+
+        long heavyServed = scheduler.getServedCount("heavy", Priority.NORMAL);
+        long lightServed = scheduler.getServedCount("light", Priority.NORMAL);
+        assertEquals(3., (double) heavyServed / lightServed, 0.1);
+        scheduler.shutdownNow();
+    }
+
+    @Test(timeout = 60000)
+    public void shouldInterruptCancelledTask() throws InterruptedException {
+        FairScheduler scheduler = new FairScheduler(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<?> future = scheduler.submitRepeated("default",
+                Priority.NORMAL, () -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(60000);
+                    } catch (InterruptedException ex) {
+                        interrupted.countDown();
+                    }
+                    return true;
+                });
+        started.await();
+        future.cancel(true);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+
+        // The thread is still usable
+        AtomicInteger ran = new AtomicInteger();
+        scheduler.submit("default", Priority.NORMAL, ran::incrementAndGet);
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1, ran.get());
+    }
+
+    @Test(timeout = 60000)
+    public void shouldSurviveFailedAndCancelledTasks()
+            throws InterruptedException, ExecutionException {
+        FairScheduler scheduler = new FairScheduler(1);
+        scheduler.execute(() -> {
+            throw new IllegalStateException("Task failure");
+        });
+
+        // Cancelling a plain future leaves the thread interrupted
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<?> future = scheduler.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException ex) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        future.cancel(true);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+
+        AtomicInteger ran = new AtomicInteger();
+        scheduler.submit("default", Priority.NORMAL, ran::incrementAndGet)
+                .get();
+        assertEquals(1, ran.get());
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 60000)
+    public void shouldDropIdleFlows()
+            throws InterruptedException, ExecutionException {
+        FairScheduler scheduler = new FairScheduler(2);
+        for (int i = 0; i < 3 * FairScheduler.MAX_IDLE_FLOWS; i++) {
+            scheduler.submit("tenant" + i, Priority.NORMAL, () -> { }).get();
+        }
+        assertTrue(scheduler.getFlowCount() <= FairScheduler.MAX_IDLE_FLOWS);
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,102 @@
+package org.crossref.refmatching;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalAbbreviationsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Map<String, String> createMap() {
+        Map<String, String> map = new HashMap<>();
+        map.put("physrevlett", "physical review letters");
+        map.put("nengljmed", "new england journal of medicine");
+        map.put("zphys", "zeitschrift für physik");
+        map.put("phys", "physics");
+        return map;
+    }
+
+    @Test
+    public void shouldLookUpNormalizedTitles() {
+        JournalAbbreviations abbreviations =
+                JournalAbbreviations.of(createMap());
+        assertEquals(4, abbreviations.size());
+        assertEquals("physical review letters",
+                abbreviations.expand("Phys. Rev. Lett."));
+        assertEquals("zeitschrift für physik",
+                abbreviations.expand("Z. Phys."));
+        assertEquals("physics", abbreviations.expand("PHYS"));
+        assertNull(abbreviations.expand("Phys. Rev."));
+        assertNull(abbreviations.expand("Phys. Rev. Lett. A"));
+        assertNull(abbreviations.expand(null));
+        assertFalse(abbreviations.contains(""));
+        assertEquals(ReferenceMatcher.normalizeJournalTitle("N. Engl. J. Med."),
+                "nengljmed");
+    }
+
+    @Test
+    public void shouldViewAsMap() {
+        Map<String, String> map = createMap();
+        JournalAbbreviations abbreviations = JournalAbbreviations.of(map);
+        assertEquals(map, abbreviations.asMap());
+        assertEquals(map.hashCode(), abbreviations.asMap().hashCode());
+        assertTrue(abbreviations.asMap().containsKey("zphys"));
+        // The map view does not normalize keys
+        assertFalse(abbreviations.asMap().containsKey("Z. Phys."));
+        assertEquals(map.size() + ":" + Integer.toHexString(map.hashCode()),
+                abbreviations.getVersion());
+    }
+
+    @Test
+    public void shouldReadWrittenDictionary() throws IOException {
+        JournalAbbreviations abbreviations =
+                JournalAbbreviations.of(createMap());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        abbreviations.write(out);
+
+        JournalAbbreviations read = JournalAbbreviations.read(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(abbreviations.asMap(), read.asMap());
+        assertEquals(abbreviations.getVersion(), read.getVersion());
+
+        File file = folder.newFile("journal-abbreviations.bin");
+        try (OutputStream fileOut = new FileOutputStream(file)) {
+            abbreviations.write(fileOut);
+        }
+        JournalAbbreviations mapped = JournalAbbreviations.map(file);
+        assertEquals("zeitschrift für physik", mapped.expand("Z Phys"));
+        assertEquals(abbreviations.asMap(), mapped.asMap());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectInvalidDictionary() throws IOException {
+        JournalAbbreviations.read(new ByteArrayInputStream(new byte[32]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNotNormalizedKeys() {
+        Map<String, String> map = createMap();
+        map.put("Phys. Rev.", "physical review");
+        JournalAbbreviations.of(map);
+    }
+
+    @Test
+    public void shouldLoadDefaultDictionary() {
+        JournalAbbreviations abbreviations = JournalAbbreviations.getDefault();
+        assertSame(abbreviations, JournalAbbreviations.getDefault());
+        assertTrue(abbreviations.size() > 6000);
+        assertEquals("physical review letters",
+                abbreviations.expand("Phys Rev Lett"));
+    }
+}
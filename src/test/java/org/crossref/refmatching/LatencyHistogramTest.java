@@ -0,0 +1,78 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldMapBucketsContiguously() {
+        for (long nanos = 0; nanos < 100000; nanos++) {
+            int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue(nanos <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0
+                    || nanos > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+        long hour = TimeUnit.HOURS.toNanos(1);
+        assertTrue(LatencyHistogram.upperBoundOf(
+                LatencyHistogram.bucketOf(hour)) >= hour);
+        assertEquals(LatencyHistogram.bucketOf(Long.MAX_VALUE),
+                LatencyHistogram.bucketOf(TimeUnit.DAYS.toNanos(1)));
+    }
+
+    @Test
+    public void shouldEstimatePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        // 1 to 1000 ms
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.5, snapshot.getMeanMs(), 1e-6);
+        assertEquals(500., snapshot.getP50Ms(), 500 * 0.035);
+        assertEquals(900., snapshot.getP90Ms(), 900 * 0.035);
+        assertEquals(990., snapshot.getP99Ms(), 990 * 0.035);
+        assertEquals(1000., snapshot.getP999Ms(), 1000 * 0.035);
+        assertEquals(1000., snapshot.getMaxMs(), 1e-6);
+        assertTrue(snapshot.getP999Ms() <= snapshot.getMaxMs());
+    }
+
+    @Test
+    public void shouldReset() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(12345);
+        histogram.record(-1);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0., histogram.snapshot().getP50Ms(), 0.);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0., snapshot.getMeanMs(), 0.);
+        assertEquals(0., snapshot.getP99Ms(), 0.);
+    }
+
+    @Test(timeout = 60000)
+    public void shouldRecordConcurrently() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(i * 1000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80000, histogram.getCount());
+        assertEquals(80000, histogram.snapshot().getCount());
+        assertEquals(9.999, histogram.snapshot().getMaxMs(), 1e-9);
+    }
+}
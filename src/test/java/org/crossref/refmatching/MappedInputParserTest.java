@@ -0,0 +1,64 @@
+package org.crossref.refmatching;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedInputParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParseInChunks() throws IOException {
+        String[] inputs = {
+            "Reference one\nReference two\n",
+            "Reference one\r\n\r\n{\"volume\": \"12\"}\r\nReference two",
+            "\nReference one\n\n\nReference two\n\n\n",
+            "Reference one",
+            "\n\n\n"
+        };
+        for (String input : inputs) {
+            byte[] data = input.getBytes(StandardCharsets.UTF_8);
+            File file = folder.newFile();
+            FileUtils.writeByteArrayToFile(file, data);
+            List<ReferenceData> expected =
+                    Utils.splitLines(data, 0, data.length);
+
+            for (int chunkSize = 1; chunkSize <= data.length; chunkSize++) {
+                MappedInputParser parser = new MappedInputParser(3, chunkSize);
+                parser.setMaxRegionSize(Math.max(chunkSize, 24));
+                assertSameReferences(expected, parser.parse(file));
+            }
+        }
+    }
+
+    @Test
+    public void testParseArrayFile() throws IOException {
+        File file = folder.newFile();
+        FileUtils.writeStringToFile(file, " [\"Reference one\"]", "UTF-8");
+        List<ReferenceData> refs = new MappedInputParser(2).parse(file);
+        assertEquals(1, refs.size());
+        assertFalse(refs.get(0).isRaw());
+    }
+
+    private void assertSameReferences(List<ReferenceData> expected,
+            List<ReferenceData> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, actual.get(i).getOrdinal());
+            assertEquals(expected.get(i).getType(), actual.get(i).getType());
+            assertEquals(expected.get(i).getTextLength(),
+                    actual.get(i).getTextLength());
+            assertEquals(
+                    expected.get(i).getReference().getFormattedString(),
+                    actual.get(i).getReference().getFormattedString());
+        }
+    }
+}
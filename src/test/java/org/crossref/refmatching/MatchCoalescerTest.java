@@ -0,0 +1,148 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import org.mockito.Mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.MockitoAnnotations;
+
+public class MatchCoalescerTest {
+
+    @Mock
+    ReferenceMatcher matcherMock;
+
+    @Before
+    public void setupMock() {
+        MockitoAnnotations.initMocks(this);
+        // Every reference is matched to a DOI equal to its text
+        when(matcherMock.match(any(MatchRequest.class))).thenAnswer(inv -> {
+            MatchRequest request = (MatchRequest) inv.getArguments()[0];
+            List<ReferenceLink> links = new ArrayList<>();
+            for (ReferenceData data : request.getReferences()) {
+                links.add(new ReferenceLink(data,
+                        data.getReference().getFormattedString(), 1.0));
+            }
+            return new MatchResponse(request, links);
+        });
+    }
+
+    @Test(timeout = 60000)
+    public void shouldCoalesceWithinWindow()
+            throws InterruptedException, ExecutionException {
+        MatchCoalescer coalescer = new MatchCoalescer(matcherMock, 200, 100);
+        MatchRequest settings = new MatchRequest(null);
+        List<CompletableFuture<ReferenceLink>> futures = new ArrayList<>();
+        for (String ref : new String[]{"ref1", "ref2", "ref1", "ref3"}) {
+            futures.add(coalescer.submit(
+                    new ReferenceData(new Reference(ref)), settings));
+        }
+
+        assertEquals("ref1", futures.get(0).get().getDOI());
+        assertEquals("ref2", futures.get(1).get().getDOI());
+        assertEquals("ref1", futures.get(2).get().getDOI());
+        assertEquals("ref3", futures.get(3).get().getDOI());
+        assertEquals(4, coalescer.getSubmittedCount());
+        assertEquals(1, coalescer.getDuplicateCount());
+        assertEquals(1, coalescer.getBatchCount());
+        verify(matcherMock, times(1)).match(any(MatchRequest.class));
+        coalescer.close();
+    }
+
+    @Test(timeout = 60000)
+    public void shouldKeepOwnReference_whenCoalesced()
+            throws InterruptedException, ExecutionException {
+        MatchCoalescer coalescer = new MatchCoalescer(matcherMock, 200, 100);
+        MatchRequest settings = new MatchRequest(null);
+        CompletableFuture<ReferenceLink> first = coalescer.submit(
+                new ReferenceData(new Reference("Reference One")), settings);
+        CompletableFuture<ReferenceLink> second = coalescer.submit(
+                new ReferenceData(new Reference("reference  one")), settings);
+
+        assertEquals("Reference One", second.get().getDOI());
+        assertEquals("reference  one", second.get().getReferenceData()
+                .getReference().getFormattedString());
+        assertEquals("Reference One", first.get().getReferenceData()
+                .getReference().getFormattedString());
+        assertEquals(1, coalescer.getDuplicateCount());
+        coalescer.close();
+    }
+
+    @Test(timeout = 60000)
+    public void shouldDispatchFullBatch()
+            throws InterruptedException, ExecutionException {
+        // The window is long enough for the test to time out if full
+        // batches waited for it
+        MatchCoalescer coalescer =
+                new MatchCoalescer(matcherMock, 3600000, 2);
+        MatchRequest settings = new MatchRequest(null);
+        CompletableFuture<ReferenceLink> first = coalescer.submit(
+                new ReferenceData(new Reference("ref1")), settings);
+        CompletableFuture<ReferenceLink> second = coalescer.submit(
+                new ReferenceData(new Reference("ref2")), settings);
+
+        assertEquals("ref1", first.get().getDOI());
+        assertEquals("ref2", second.get().getDOI());
+        coalescer.close();
+    }
+
+    @Test(timeout = 60000)
+    public void shouldNotCoalesceDifferentSettings()
+            throws InterruptedException, ExecutionException {
+        MatchCoalescer coalescer = new MatchCoalescer(matcherMock, 50, 100);
+        MatchRequest settings = new MatchRequest(null);
+        MatchRequest other = new MatchRequest(null);
+        other.setTimeout(1000);
+        CompletableFuture<ReferenceLink> first = coalescer.submit(
+                new ReferenceData(new Reference("ref1")), settings);
+        CompletableFuture<ReferenceLink> second = coalescer.submit(
+                new ReferenceData(new Reference("ref1")), other);
+
+        assertEquals("ref1", first.get().getDOI());
+        assertEquals("ref1", second.get().getDOI());
+        assertEquals(0, coalescer.getDuplicateCount());
+        assertEquals(2, coalescer.getBatchCount());
+        coalescer.close();
+    }
+
+    @Test(timeout = 60000)
+    public void shouldFailSubmit_whenClosed() throws InterruptedException {
+        MatchCoalescer coalescer = new MatchCoalescer(matcherMock, 50, 100);
+        coalescer.close();
+        CompletableFuture<ReferenceLink> future = coalescer.submit(
+                new ReferenceData(new Reference("ref1")),
+                new MatchRequest(null));
+
+        try {
+            future.get();
+            fail("Submission after close should fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof MatchException);
+        }
+        assertEquals(0, coalescer.getSubmittedCount());
+    }
+
+    @Test(timeout = 60000)
+    public void shouldTimeOut_whenWindowExceedsTimeout()
+            throws InterruptedException, ExecutionException {
+        // The timeout expires while the reference waits for its batch
+        MatchCoalescer coalescer = new MatchCoalescer(matcherMock, 200, 100);
+        MatchRequest settings = new MatchRequest(null);
+        settings.setTimeout(50);
+        ReferenceLink link = coalescer.submit(
+                new ReferenceData(new Reference("ref1")), settings).get();
+
+        assertEquals(MatchStatus.TIMED_OUT, link.getStatus());
+        assertNull(link.getDOI());
+        verify(matcherMock, never()).match(any(MatchRequest.class));
+        coalescer.close();
+    }
+}
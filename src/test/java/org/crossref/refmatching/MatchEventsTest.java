@@ -0,0 +1,74 @@
+package org.crossref.refmatching;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MatchEventsTest {
+
+    @Test
+    public void shouldNotCreateEvents_whenNotRecording() {
+        assertNull(MatchEvents.beginReference());
+        assertNull(MatchEvents.beginSearch());
+        assertNull(MatchEvents.beginValidation());
+        // Ending an event that was not started is a no-op
+        MatchEvents.endSearch(null, ReferenceType.STRUCTURED, 20, 10, 0,
+                false);
+    }
+
+    @Test
+    public void shouldRecordEvents() throws IOException {
+        Path file = Files.createTempFile("match-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ReferenceMatchedEvent.class);
+            recording.enable(CandidateSearchEvent.class);
+            recording.disable(CandidateValidationEvent.class);
+            recording.start();
+
+            ReferenceData data = new ReferenceData(
+                    new Reference("Carberry J. (2008) J. Psychoceram. 5, 1"));
+            Object search = MatchEvents.beginSearch();
+            assertNotNull(search);
+            MatchEvents.endSearch(search, ReferenceType.UNSTRUCTURED, 20, 39,
+                    3, true);
+            Object reference = MatchEvents.beginReference();
+            MatchEvents.endReference(reference, data, new ReferenceLink(data,
+                    "10.5555/12345678", 0.9, MatchStatus.COMPLETED,
+                    MatchSource.SEARCH, DegradationLevel.NORMAL));
+            // Disabled in the recording
+            assertNull(MatchEvents.beginValidation());
+
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent searchEvent = find(events, "CandidateSearch");
+            assertEquals("UNSTRUCTURED",
+                    searchEvent.getString("referenceType"));
+            assertEquals(20, searchEvent.getInt("rows"));
+            assertEquals(39, searchEvent.getInt("queryLength"));
+            assertEquals(3, searchEvent.getInt("results"));
+            assertTrue(searchEvent.getBoolean("failed"));
+            RecordedEvent referenceEvent = find(events, "ReferenceMatched");
+            assertEquals("Carberry J. (2008) J. Psychoceram. 5, 1",
+                    referenceEvent.getString("reference"));
+            assertEquals("COMPLETED", referenceEvent.getString("status"));
+            assertTrue(referenceEvent.getBoolean("matched"));
+            assertEquals(0.9, referenceEvent.getDouble("score"), 1e-9);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events,
+            String name) {
+        return events.stream().filter(e -> e.getEventType().getName()
+                .equals(MatchEvents.NAME_PREFIX + name)).findFirst()
+                .orElseThrow(() -> new AssertionError(name + " not recorded"));
+    }
+}
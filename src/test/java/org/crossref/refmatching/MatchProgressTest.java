@@ -0,0 +1,90 @@
+package org.crossref.refmatching;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MatchProgressTest {
+
+    private static ReferenceLink link(String doi, MatchStatus status) {
+        return new ReferenceLink(new ReferenceData(new Reference("ref")), doi,
+                doi == null ? 0. : 0.9, status);
+    }
+
+    @Test
+    public void shouldCountOutcomes() {
+        MatchProgress progress = new MatchProgress(10);
+        LinkCollector links = progress.tracking(
+                new ListLinkCollector(new MatchRequest(null), 10));
+        links.record(0, link("10.5555/1", MatchStatus.COMPLETED));
+        links.record(1, link("10.5555/2", MatchStatus.COMPLETED));
+        links.record(2, link(null, MatchStatus.COMPLETED));
+        links.record(3, link(null, MatchStatus.TIMED_OUT));
+        links.record(4, link(null, MatchStatus.CANCELLED));
+
+        assertTrue(links.isRecorded(4));
+        assertFalse(links.isRecorded(5));
+        assertEquals(10, progress.getTotal());
+        assertEquals(5, progress.getCompletedCount());
+        assertEquals(2, progress.getMatchedCount());
+        assertEquals(1, progress.getUnmatchedCount());
+        assertEquals(2, progress.getFailedCount());
+        // No rate before the first sample
+        assertEquals(-1, progress.getEtaMs());
+        assertFalse(progress.isFinished());
+    }
+
+    @Test
+    public void shouldEstimateRemainingTime() throws InterruptedException {
+        MatchProgress progress = new MatchProgress(100);
+        for (int i = 0; i < 50; i++) {
+            progress.record(link(null, MatchStatus.COMPLETED));
+        }
+        Thread.sleep(100);
+        progress.sample();
+        double rate = progress.getRate();
+        assertTrue(rate > 0 && rate <= 500);
+        // 50 remaining references at about the same rate as the first 50
+        long eta = progress.getEtaMs();
+        assertTrue(eta >= 100 && eta < 60000);
+
+        for (int i = 0; i < 50; i++) {
+            progress.record(link("10.5555/1", MatchStatus.COMPLETED));
+        }
+        assertEquals(0, progress.getEtaMs());
+        assertTrue(progress.toString().contains("100 of 100"));
+    }
+
+    @Test(timeout = 60000)
+    public void shouldReportPeriodicallyAndFinally()
+            throws InterruptedException {
+        MatchProgress progress = new MatchProgress(3);
+        List<Boolean> finished = Collections.synchronizedList(
+                new ArrayList<>());
+        CountDownLatch reported = new CountDownLatch(2);
+        MatchProgress.Reporter reporter = progress.report(p -> {
+            finished.add(p.isFinished());
+            reported.countDown();
+        }, 10);
+        assertTrue(reported.await(10, TimeUnit.SECONDS));
+        progress.record(link(null, MatchStatus.COMPLETED));
+        reporter.close();
+
+        int reports = finished.size();
+        assertTrue(reports >= 3);
+        assertFalse(finished.get(0));
+        assertTrue(finished.get(reports - 1));
+        // Nothing is reported after closing
+        Thread.sleep(50);
+        assertEquals(reports, finished.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidInterval() {
+        new MatchRequest(null).setProgressInterval(0);
+    }
+}
@@ -0,0 +1,148 @@
+package org.crossref.refmatching;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MatchResultReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryMappedRoundTrip() throws IOException {
+        List<ReferenceLink> links = createLinks();
+        File file = folder.newFile("results.bin");
+        MatchResultWriter.write(createResponse(links), file);
+
+        try (MatchResultReader reader = new MatchResultReader(file)) {
+            assertEquals(links.size(), reader.size());
+            for (int i = 0; i < links.size(); i++) {
+                assertLinkEquals(links.get(i), reader.getLink(i));
+            }
+            assertEquals(reader.getDOICode(0), reader.getDOICode(2));
+            assertEquals(-1, reader.getDOICode(1));
+            assertNull(reader.getDOIBytes(1));
+            assertEquals("10.1016/j.cell.2019.01.001", StandardCharsets.UTF_8
+                    .decode(reader.getDOIBytes(0)).toString());
+        }
+    }
+
+    @Test
+    public void testStreamedRoundTrip() throws IOException {
+        List<ReferenceLink> links = createLinks();
+        File file = folder.newFile("results.bin");
+        MatchRequest request = new MatchRequest(links.stream()
+                .map(ReferenceLink::getReferenceData)
+                .collect(Collectors.toList()));
+        ColumnarMatchResponse response = new ColumnarMatchResponse(request);
+        for (int i = 0; i < links.size(); i++) {
+            response.record(i, links.get(i));
+        }
+        MatchResultWriter.write(response.toResponse(), file);
+
+        List<ReferenceLink> read = new ArrayList<>();
+        try (InputStream in = new FileInputStream(file)) {
+            MatchResultReader.stream(in, read::add);
+        }
+        assertEquals(links.size(), read.size());
+        for (int i = 0; i < links.size(); i++) {
+            assertLinkEquals(links.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    public void testRawReferenceRoundTrip() throws IOException {
+        List<ReferenceData> references = Utils.parseInputReferences(
+                "Raw reference one\nRaw reference two\n"
+                        .getBytes(StandardCharsets.UTF_8), "\r?\n");
+        ColumnarMatchResponse response = new ColumnarMatchResponse(
+                new MatchRequest(references));
+        response.record(0, new ReferenceLink(references.get(0),
+                "10.1016/j.cell.2019.01.001", 0.92));
+        response.record(1, new ReferenceLink(references.get(1), null, 0.0));
+
+        ReferenceData data = response.getReferenceData(1);
+        assertTrue(data.isRaw());
+        assertEquals("Raw reference two",
+                data.getReference().getFormattedString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MatchResultWriter.write(response.toResponse(), out);
+        List<ReferenceLink> read = new ArrayList<>();
+        MatchResultReader.stream(new ByteArrayInputStream(out.toByteArray()),
+                read::add);
+        assertEquals(2, read.size());
+        assertEquals("10.1016/j.cell.2019.01.001", read.get(0).getDOI());
+        assertEquals("Raw reference one", read.get(0).getReferenceData()
+                .getReference().getFormattedString());
+        assertNull(read.get(1).getDOI());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        File file = folder.newFile("results.json");
+        FileUtils.writeStringToFile(file,
+                "[{\"DOI\": null, \"score\": 0.0, \"reference\": \"\"}]",
+                "UTF-8");
+        new MatchResultReader(file).close();
+    }
+
+    private List<ReferenceLink> createLinks() {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("journal-title", "Cell");
+        metadata.put("volume", "176");
+        metadata.put("first-page", "1");
+        return Arrays.asList(
+                new ReferenceLink(new ReferenceData(new Reference(
+                        "Müller A. Cell 176 (2019) 1.")),
+                        "10.1016/j.cell.2019.01.001", 0.92),
+                new ReferenceLink(new ReferenceData(new Reference(
+                        "Unknown reference")), null, 0.0,
+                        MatchStatus.TIMED_OUT),
+                new ReferenceLink(new ReferenceData(new Reference(metadata)),
+                        "10.1016/j.cell.2019.01.001", 88.5),
+                new ReferenceLink(new ReferenceData(new Reference(
+                        "Stale reference")), "10.1000/stale", 0.8,
+                        MatchStatus.COMPLETED, MatchSource.STALE_RESULT,
+                        DegradationLevel.STALE_CACHE));
+    }
+
+    private MatchResponse createResponse(List<ReferenceLink> links) {
+        List<ReferenceData> references = new ArrayList<>();
+        links.forEach(l -> references.add(l.getReferenceData()));
+        return new MatchResponse(new MatchRequest(references), links);
+    }
+
+    private void assertLinkEquals(ReferenceLink expected,
+            ReferenceLink actual) {
+        assertEquals(expected.getDOI(), actual.getDOI());
+        assertEquals(expected.getScore(), actual.getScore(), 0.0);
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getSource(), actual.getSource());
+        assertEquals(expected.getDegradationLevel(),
+                actual.getDegradationLevel());
+        Reference expectedRef = expected.getReferenceData().getReference();
+        Reference actualRef = actual.getReferenceData().getReference();
+        assertEquals(expectedRef.getType(), actualRef.getType());
+        assertEquals(expectedRef.getFormattedString(),
+                actualRef.getFormattedString());
+        assertEquals(expectedRef.getMetadataAsMap(),
+                actualRef.getMetadataAsMap());
+    }
+}
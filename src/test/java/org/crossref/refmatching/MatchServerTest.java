@@ -0,0 +1,167 @@
+package org.crossref.refmatching;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MatchServerTest {
+
+    @Test
+    public void testParseQuery() {
+        Map<String, String> params =
+                MatchServer.parseQuery("ct=0.5&to=1000&x=a%20b&flag");
+        assertEquals("0.5", params.get("ct"));
+        assertEquals("1000", params.get("to"));
+        assertEquals("a b", params.get("x"));
+        assertFalse(params.containsKey("flag"));
+        assertTrue(MatchServer.parseQuery(null).isEmpty());
+    }
+
+    @Test
+    public void testCreateRequest() throws IOException {
+        MatchRequest template = new MatchRequest(null);
+        template.setStructuredMinScore(0.8);
+        template.setReferenceTimeout(500);
+        MatchServer server = new MatchServer(mock(ReferenceMatcher.class),
+                template, new InetSocketAddress("127.0.0.1", 0), 1);
+        server.setRequestThreads(2);
+
+        MatchRequest request = server.createRequest(Arrays.asList(
+                new ReferenceData(new Reference("ref1")),
+                new ReferenceData(new Reference("ref2")),
+                new ReferenceData(new Reference("ref3"))),
+                MatchServer.parseQuery("ct=0.5&to=1000"));
+        assertEquals(3, request.getReferences().size());
+        assertEquals(0.5, request.getCandidateMinScore(), 0.0001);
+        assertEquals(MatchRequest.DEFAULT_UNSTR_MIN_SCORE,
+                request.getUnstructuredMinScore(), 0.0001);
+        assertEquals(0.8, request.getStructuredMinScore(), 0.0001);
+        assertEquals(2, request.getNumThreads());
+        assertEquals(1000, request.getTimeout());
+        assertEquals(500, request.getReferenceTimeout());
+    }
+
+    @Test(timeout = 60000)
+    public void testStreamNDJSONBatch() throws IOException {
+        ReferenceMatcher matcher = mock(ReferenceMatcher.class);
+        when(matcher.match(any())).thenAnswer(invocation -> {
+            MatchRequest request = (MatchRequest) invocation.getArguments()[0];
+            List<ReferenceLink> links = request.getReferences().stream()
+                    .map(r -> new ReferenceLink(r, "10.5555/"
+                            + r.getReference().getFormattedString(), 0.9))
+                    .collect(Collectors.toList());
+            return new MatchResponse(request, links);
+        });
+        MatchServer server = new MatchServer(matcher, new MatchRequest(null),
+                new InetSocketAddress("127.0.0.1", 0), 1);
+        server.setCoalescingWindow(0);
+        server.start(0);
+        try {
+            // One thread, so the references are matched in chunks of four
+            URL url = new URL("http://127.0.0.1:"
+                    + server.getAddress().getPort() + "/match/batch?t=1");
+            HttpURLConnection connection =
+                    (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type",
+                    "application/x-ndjson");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write("ref1\n\nref2\nref3\r\nref4\nref5\n"
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            List<String> lines;
+            try (InputStream in = connection.getInputStream()) {
+                lines = IOUtils.readLines(in, StandardCharsets.UTF_8);
+            }
+
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(5, lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                assertEquals("10.5555/ref" + (i + 1),
+                        new JSONObject(lines.get(i)).getString("DOI"));
+            }
+            verify(matcher, times(2)).match(any());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testInvalidBatch() throws IOException {
+        ReferenceMatcher matcher = mock(ReferenceMatcher.class);
+        MatchServer server = new MatchServer(matcher, new MatchRequest(null),
+                new InetSocketAddress("127.0.0.1", 0), 1);
+        server.start(0);
+        try {
+            HttpURLConnection connection = post(server, "/match/batch",
+                    "[1, 2]");
+            assertEquals(400, connection.getResponseCode());
+            try (InputStream in = connection.getErrorStream()) {
+                assertTrue(new JSONObject(IOUtils.toString(in,
+                        StandardCharsets.UTF_8)).has("error"));
+            }
+            verify(matcher, times(0)).match(any());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testUnexpectedError() throws IOException {
+        ReferenceMatcher matcher = mock(ReferenceMatcher.class);
+        when(matcher.match(any())).thenThrow(
+                new IllegalStateException("broken"));
+        MatchServer server = new MatchServer(matcher, new MatchRequest(null),
+                new InetSocketAddress("127.0.0.1", 0), 1);
+        server.start(0);
+        try {
+            HttpURLConnection connection = post(server, "/match/batch",
+                    "[\"ref1\", \"ref2\"]");
+            assertEquals(500, connection.getResponseCode());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testCreateRequestInvalidParameter() throws IOException {
+        MatchServer server = new MatchServer(mock(ReferenceMatcher.class),
+                new MatchRequest(null), new InetSocketAddress("127.0.0.1", 0),
+                1);
+        server.createRequest(Arrays.asList(
+                new ReferenceData(new Reference("ref1"))),
+                MatchServer.parseQuery("ct=high"));
+    }
+
+    private static HttpURLConnection post(MatchServer server, String path,
+            String body) throws IOException {
+        URL url = new URL("http://127.0.0.1:"
+                + server.getAddress().getPort() + path);
+        HttpURLConnection connection =
+                (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+}
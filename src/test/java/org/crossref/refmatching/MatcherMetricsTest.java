@@ -0,0 +1,71 @@
+package org.crossref.refmatching;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MatcherMetricsTest {
+
+    @Test
+    public void shouldCountCacheHitsBySource() {
+        MatcherMetrics metrics = new MatcherMetrics();
+        metrics.recordCacheHit(MatchSource.RESULT_STORE);
+        metrics.recordCacheHit(MatchSource.RESULT_STORE);
+        metrics.recordCacheHit(MatchSource.NEGATIVE_CACHE);
+        metrics.recordCacheHit(MatchSource.SEARCH);
+        assertEquals(2, metrics.getCacheHitCount(MatchSource.RESULT_STORE));
+        assertEquals(0, metrics.getCacheHitCount(MatchSource.SEARCH));
+        assertEquals(3, metrics.getCacheHitCount());
+
+        Map<String, Long> counters = metrics.getCounters();
+        assertEquals(Long.valueOf(2), counters.get("cacheHits.store"));
+        assertEquals(Long.valueOf(1), counters.get("cacheHits.negative-cache"));
+        metrics.reset();
+        assertEquals(0, metrics.getCacheHitCount());
+    }
+
+    @Test
+    public void shouldListAllHistograms() {
+        MatcherMetrics metrics = new MatcherMetrics();
+        metrics.getApiCall().record(1000000);
+        metrics.getEndToEnd(ReferenceType.STRUCTURED).record(2000000);
+        Map<String, LatencyHistogram.Snapshot> latencies =
+                metrics.getLatencies();
+        assertEquals(6, latencies.size());
+        assertEquals(1, latencies.get("apiCall").getCount());
+        assertEquals(1, latencies.get("endToEnd.structured").getCount());
+        assertEquals(0, latencies.get("endToEnd.unstructured").getCount());
+    }
+
+    @Test
+    public void shouldExposeThroughJmx() throws JMException {
+        MatcherMetrics metrics = new MatcherMetrics();
+        metrics.recordCandidatesScored(7);
+        metrics.getValidation().record(3000000);
+        ObjectName name = metrics.register("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            TabularData counters =
+                    (TabularData) server.getAttribute(name, "Counters");
+            assertEquals(7L, counters.get(new Object[]{"candidatesScored"})
+                    .get("value"));
+            TabularData latencies =
+                    (TabularData) server.getAttribute(name, "Latencies");
+            CompositeData validation = (CompositeData) latencies.get(
+                    new Object[]{"validation"}).get("value");
+            assertEquals(1L, validation.get("count"));
+            assertEquals(3., (Double) validation.get("maxMs"), 1e-9);
+
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0, metrics.getCandidatesScoredCount());
+        } finally {
+            MatcherMetrics.unregister(name);
+        }
+    }
+}
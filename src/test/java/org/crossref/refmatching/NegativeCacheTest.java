@@ -0,0 +1,95 @@
+package org.crossref.refmatching;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NegativeCacheTest {
+
+    private static final long DAY_MS = 24 * 3600 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFalsePositiveRate() {
+        NegativeCache cache = new NegativeCache(10000, 0.01, DAY_MS);
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            ReferenceFingerprint key = randomKey(random);
+            cache.put(key);
+            assertTrue(cache.mightContain(key));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (cache.mightContain(randomKey(random))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 150);
+        assertEquals(9, cache.getHashCount());
+    }
+
+    @Test
+    public void testFalsePositiveRateOfAllGenerations()
+            throws InterruptedException {
+        // A new generation every 500 ms, none expires during the test
+        NegativeCache cache = new NegativeCache(10000, 0.01, 2000);
+        Random random = new Random(42);
+        for (int g = 0; g < NegativeCache.GENERATIONS; g++) {
+            if (g > 0) {
+                Thread.sleep(510);
+            }
+            for (int i = 0; i < 10000; i++) {
+                cache.put(randomKey(random));
+            }
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (cache.mightContain(randomKey(random))) {
+                falsePositives++;
+            }
+        }
+        // 1% of 20000 lookups, with some slack
+        assertTrue(falsePositives < 300);
+    }
+
+    @Test
+    public void testRecheckInterval() throws InterruptedException {
+        NegativeCache cache = new NegativeCache(100, 0.01, 40);
+        ReferenceFingerprint key = randomKey(new Random(42));
+        cache.put(key);
+        assertTrue(cache.mightContain(key));
+        Thread.sleep(60);
+        assertFalse(cache.mightContain(key));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        NegativeCache cache = new NegativeCache(1000, 0.01, DAY_MS);
+        Random random = new Random(42);
+        ReferenceFingerprint[] keys = new ReferenceFingerprint[100];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = randomKey(random);
+            cache.put(keys[i]);
+        }
+        File file = new File(folder.getRoot(), "negative.bin.gz");
+        cache.save(file);
+
+        NegativeCache loaded = NegativeCache.load(file, 10, 0.1, DAY_MS);
+        assertEquals(cache.getBitCount(), loaded.getBitCount());
+        for (ReferenceFingerprint key : keys) {
+            assertTrue(loaded.mightContain(key));
+        }
+        loaded.invalidateAll();
+        assertFalse(loaded.mightContain(keys[0]));
+    }
+
+    private ReferenceFingerprint randomKey(Random random) {
+        return new ReferenceFingerprint(random.nextLong(), random.nextLong());
+    }
+}
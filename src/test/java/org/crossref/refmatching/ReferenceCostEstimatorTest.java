@@ -0,0 +1,58 @@
+package org.crossref.refmatching;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReferenceCostEstimatorTest {
+    
+    private final Map<String, String> journalAbbrevMap = new HashMap<>();
+    
+    private List<ReferenceData> createReferences() {
+        journalAbbrevMap.put("physrevlett", "physical review letters");
+        
+        Map<String, String> plain = new HashMap<>();
+        plain.put("author", "West");
+        plain.put("journal-title", "J. Amer. chem. Soc.");
+        Map<String, String> abbreviated = new HashMap<>();
+        abbreviated.put("author", "Hirsch");
+        abbreviated.put("journal-title", "Phys. Rev. Lett.");
+        
+        return Arrays.asList(
+                new ReferenceData(new Reference("Short ref 2001")),
+                new ReferenceData(new Reference(plain)),
+                new ReferenceData(new Reference(abbreviated)),
+                new ReferenceData(new Reference("Short ref 2002")));
+    }
+    
+    @Test
+    public void shouldKeepInputOrder_whenInputOrderPolicy() {
+        List<ReferenceData> references = createReferences();
+        int[] order = new ReferenceCostEstimator(journalAbbrevMap).order(
+                references, new MatchRequest(references),
+                SchedulingPolicy.INPUT_ORDER);
+        Assert.assertArrayEquals(new int[]{0, 1, 2, 3}, order);
+    }
+    
+    @Test
+    public void shouldDispatchExpensiveFirst_whenLongestFirstPolicy() {
+        List<ReferenceData> references = createReferences();
+        int[] order = new ReferenceCostEstimator(journalAbbrevMap).order(
+                references, new MatchRequest(references),
+                SchedulingPolicy.LONGEST_FIRST);
+        Assert.assertArrayEquals(new int[]{2, 1, 0, 3}, order);
+    }
+    
+    @Test
+    public void shouldAlternate_whenInterleavedPolicy() {
+        List<ReferenceData> references = createReferences();
+        int[] order = new ReferenceCostEstimator(journalAbbrevMap).order(
+                references, new MatchRequest(references),
+                SchedulingPolicy.INTERLEAVED);
+        Assert.assertArrayEquals(new int[]{2, 3, 1, 0}, order);
+    }
+    
+}
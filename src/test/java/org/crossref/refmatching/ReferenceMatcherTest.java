@@ -2,9 +2,11 @@ package org.crossref.refmatching;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.commons.io.FileUtils;
@@ -17,6 +19,8 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.mockito.Matchers.any;
 import org.mockito.Mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
 
@@ -178,6 +182,306 @@ public class ReferenceMatcherTest {
         });
     }
     
+    @Test
+    public void shouldPreserveReferenceOrder_whenPipelined()
+            throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any()))
+                .thenReturn(extractMockItems("single-doi-response-1.json"));
+
+        List<ReferenceData> references = sampleRefsStructured.stream().map(
+                r -> new ReferenceData(r)
+            ).collect(Collectors.toList());
+
+        MatchRequest request = new MatchRequest(references);
+        request.setPipelined(true);
+        MatchResponse response = matcher.match(request);
+
+        Assert.assertEquals(references.size(), response.getMatchedLinks().size());
+        IntStream.range(0, references.size()).forEach(i -> 
+            Assert.assertSame(references.get(i),
+                    response.getMatchedLinks().get(i).getReferenceData()));
+        
+        PipelineMetrics metrics = matcher.getPipelineMetrics();
+        Assert.assertEquals(references.size(),
+                metrics.getEmit().getProcessedCount());
+        metrics.getStages().forEach(
+                s -> Assert.assertEquals(0, s.getQueueDepth()));
+    }
+    
+    @Test
+    public void shouldStoreResultsColumnwise_whenColumnarResponse()
+            throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any()))
+                .thenReturn(extractMockItems("single-doi-response-1.json"));
+
+        List<ReferenceData> references = sampleRefsUnstructured.stream().map(
+                r -> new ReferenceData(new Reference(r))
+            ).collect(Collectors.toList());
+
+        MatchRequest request = new MatchRequest(references);
+        MatchResponse expected = matcher.match(request);
+        request.setColumnarResponse(true);
+        MatchResponse response = matcher.match(request);
+
+        Assert.assertTrue(response instanceof ColumnarMatchResponse);
+        ColumnarMatchResponse columnar = (ColumnarMatchResponse) response;
+        Assert.assertEquals(references.size(), columnar.size());
+        Assert.assertTrue(columnar.getDOIDictionary().size() <= 1);
+        IntStream.range(0, references.size()).forEach(i -> {
+            ReferenceLink link = response.getMatchedLinks().get(i);
+            Assert.assertSame(references.get(i), link.getReferenceData());
+            Assert.assertEquals(expected.getMatchedLinks().get(i).getDOI(),
+                    link.getDOI());
+            Assert.assertEquals(expected.getMatchedLinks().get(i).getScore(),
+                    link.getScore(), 0.0001);
+        });
+        Assert.assertEquals(expected.toJSON().toString(),
+                response.toJSON().toString());
+        // The request is left intact for the caller
+        Assert.assertEquals(references.size(),
+                request.getReferences().size());
+    }
+    
+    @Test
+    public void shouldNotSearch_whenResultIsStored()
+            throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any()))
+                .thenReturn(extractMockItems("unstructured-ref-response-1.json"));
+        ResultStore store = new ResultStore(0);
+        matcher.setResultStore(store);
+        
+        String reference = 
+            "[1]D. Tkaczyk, P. Szostek, M. Fedoryszak, P. J. Dendek, and "
+            + "Bolikowski,“CERMINE: automatic extraction of structured "
+            + "metadata from scientific literature,” International Journal "
+            + "on Document Analysis and Recognition (IJDAR), vol. 18, no. 4, "
+            + "pp. 317–335, 2015.";
+        List<ReferenceData> references = Utils.parseInputReferences(
+                InputType.STRING, reference, "\r?\n");
+        MatchResponse first = matcher.match(new MatchRequest(references));
+        Assert.assertEquals(1, store.size());
+
+        MatchRequest request = new MatchRequest(references);
+        request.setPipelined(true);
+        MatchResponse second = matcher.match(request);
+
+        Assert.assertEquals(1, store.getHitCount());
+        verify(apiTestClient, times(1)).getWorks(any(), any());
+        Assert.assertEquals("10.1007/s10032-015-0249-8",
+                second.getMatchedLinks().get(0).getDOI());
+        Assert.assertEquals(first.getMatchedLinks().get(0).getScore(),
+                second.getMatchedLinks().get(0).getScore(), 0.0);
+    }
+    
+    @Test(timeout = 60000)
+    public void shouldReturnPartialResults_whenRequestTimesOut()
+            throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return extractMockItems("single-doi-response-1.json");
+        });
+
+        List<ReferenceData> references = sampleRefsUnstructured.subList(0, 20)
+                .stream().map(r -> new ReferenceData(new Reference(r)))
+                .collect(Collectors.toList());
+
+        MatchRequest request = new MatchRequest(references);
+        request.setNumThreads(1);
+        request.setTimeout(500);
+        MatchResponse response = matcher.match(request);
+
+        Assert.assertEquals(references.size(), response.getMatchedLinks().size());
+        Assert.assertEquals(MatchStatus.COMPLETED,
+                response.getMatchedLinks().get(0).getStatus());
+        Assert.assertEquals(MatchStatus.TIMED_OUT,
+                response.getMatchedLinks().get(references.size() - 1)
+                        .getStatus());
+        Assert.assertNull(response.getMatchedLinks().get(references.size() - 1)
+                .getDOI());
+    }
+    
+    @Test
+    public void shouldMatchLongestFirst_whenRequestTimesOut()
+            throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return extractMockItems("single-doi-response-1.json");
+        });
+
+        List<ReferenceData> references = sampleRefsUnstructured.subList(0, 19)
+                .stream().map(r -> new ReferenceData(new Reference(r)))
+                .collect(Collectors.toCollection(ArrayList::new));
+        // The most expensive reference comes last in the input
+        references.add(new ReferenceData(new Reference(String.join(" ",
+                sampleRefsUnstructured.subList(19, 25)))));
+
+        MatchRequest request = new MatchRequest(references);
+        request.setNumThreads(1);
+        request.setTimeout(500);
+        request.setSchedulingPolicy(SchedulingPolicy.LONGEST_FIRST);
+        int[] order = new ReferenceCostEstimator((JournalAbbreviations) null)
+                .order(references, request, SchedulingPolicy.LONGEST_FIRST);
+        MatchResponse response = matcher.match(request);
+
+        Assert.assertEquals(references.size() - 1, order[0]);
+        Assert.assertEquals(references.size(), response.getMatchedLinks().size());
+        Assert.assertEquals(MatchStatus.COMPLETED,
+                response.getMatchedLinks().get(order[0]).getStatus());
+        Assert.assertEquals(MatchStatus.TIMED_OUT,
+                response.getMatchedLinks().get(order[order.length - 1])
+                        .getStatus());
+    }
+    
+    @Test
+    public void shouldNotMatch_whenRequestIsCancelled()
+            throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any()))
+                .thenReturn(extractMockItems("single-doi-response-1.json"));
+
+        List<ReferenceData> references = sampleRefsUnstructured.subList(0, 5)
+                .stream().map(r -> new ReferenceData(new Reference(r)))
+                .collect(Collectors.toList());
+
+        MatchRequest request = new MatchRequest(references);
+        request.cancel();
+        MatchResponse response = matcher.match(request);
+
+        Assert.assertEquals(references.size(), response.getMatchedLinks().size());
+        response.getMatchedLinks().forEach(l -> {
+            Assert.assertEquals(MatchStatus.CANCELLED, l.getStatus());
+            Assert.assertNull(l.getDOI());
+        });
+    }
+    
+    @Test
+    public void shouldRejectBeforeResuming_whenOverloaded()
+            throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any()))
+                .thenReturn(extractMockItems("single-doi-response-1.json"));
+        AdmissionController admission = new AdmissionController(10, 0, 1);
+        admission.admit(10);
+        matcher.setAdmissionController(admission);
+
+        List<ReferenceData> references = sampleRefsUnstructured.subList(0, 5)
+                .stream().map(r -> new ReferenceData(new Reference(r)))
+                .collect(Collectors.toList());
+        File file = File.createTempFile("journal", ".txt");
+        file.deleteOnExit();
+
+        try (CheckpointJournal journal =
+                new CheckpointJournal(file, false, 0, "input")) {
+            MatchRequest request = new MatchRequest(references);
+            request.setCheckpointJournal(journal);
+            try {
+                matcher.match(request);
+                Assert.fail("Request was admitted");
+            } catch (MatchRejectedException ex) {
+                // The journal was not started for a rejected request
+                Assert.assertEquals(0, file.length());
+            }
+            admission.release(10, 1, 0);
+            matcher.match(request);
+        }
+        Assert.assertEquals(0, admission.getQueuedReferences());
+        Assert.assertEquals(2, admission.getAcceptedCount());
+    }
+    
+    @Test
+    public void shouldRecordMetrics_whenStructuredRefIsMatched()
+            throws IOException, MatchException {
+        JSONObject reference = new JSONObject();
+        reference.put("author", "Tkaczyk");
+        reference.put("volume", "18");
+        reference.put("first-page", "317");
+        reference.put("year", "2015");
+        reference.put("journal-title", "IJDAR");
+        
+        invokeMockStringRequest(reference.toString(),
+                "structured-ref-response-1.json");
+        
+        MatcherMetrics metrics = matcher.getMetrics();
+        Assert.assertEquals(1, metrics.getEndToEnd(ReferenceType.STRUCTURED)
+                .getCount());
+        Assert.assertEquals(0, metrics.getEndToEnd(ReferenceType.UNSTRUCTURED)
+                .getCount());
+        Assert.assertEquals(metrics.getQueryBuild().getCount(),
+                metrics.getApiCall().getCount());
+        Assert.assertTrue(metrics.getApiCall().getCount() >= 1);
+        Assert.assertTrue(metrics.getCandidatesScoredCount() >= 1);
+        Assert.assertEquals(0, metrics.getApiFailureCount());
+        Assert.assertEquals(0, metrics.getCacheHitCount());
+    }
+    
+    @Test
+    public void shouldCountApiFailures() throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any()))
+                .thenThrow(new IOException("unavailable"));
+        
+        MatchResponse response = matcher.match(new MatchRequest(
+                Utils.parseInputReferences(InputType.STRING,
+                        "Tkaczyk D. (2015) IJDAR 18, 317", "\r?\n")));
+        
+        Assert.assertNull(response.getMatchedLinks().get(0).getDOI());
+        Assert.assertEquals(MatchStatus.FAILED,
+                response.getMatchedLinks().get(0).getStatus());
+        Assert.assertEquals(1, matcher.getMetrics().getApiFailureCount());
+        Assert.assertEquals(1, matcher.getMetrics()
+                .getEndToEnd(ReferenceType.UNSTRUCTURED).getCount());
+    }
+    
+    @Test
+    public void shouldNotCacheUnmatched_whenSearchFails()
+            throws IOException, MatchException {
+        when(apiTestClient.getWorks(any(), any()))
+                .thenThrow(new IOException("unavailable"))
+                .thenThrow(new IOException("unavailable"))
+                .thenReturn(extractMockItems("unstructured-ref-response-1.json"));
+        matcher.setNegativeCache(new NegativeCache(1000, 0.01,
+                TimeUnit.DAYS.toMillis(7)));
+        List<ReferenceData> references = Utils.parseInputReferences(
+                InputType.STRING, "Tkaczyk D. (2015) IJDAR 18, 317", "\r?\n");
+
+        MatchResponse failed = matcher.match(new MatchRequest(references));
+        MatchRequest request = new MatchRequest(references);
+        request.setPipelined(true);
+        MatchResponse failedPipelined = matcher.match(request);
+        MatchResponse matched = matcher.match(new MatchRequest(references));
+
+        Assert.assertEquals(MatchStatus.FAILED,
+                failed.getMatchedLinks().get(0).getStatus());
+        Assert.assertEquals(MatchStatus.FAILED,
+                failedPipelined.getMatchedLinks().get(0).getStatus());
+        // The failures were not cached, so the reference is searched again
+        verify(apiTestClient, times(3)).getWorks(any(), any());
+        Assert.assertEquals(MatchSource.SEARCH,
+                matched.getMatchedLinks().get(0).getSource());
+        Assert.assertEquals(MatchStatus.COMPLETED,
+                matched.getMatchedLinks().get(0).getStatus());
+    }
+    
+    @Test
+    public void shouldReduceRowsOfBothPasses_whenDegraded() {
+        JSONObject metadata = new JSONObject();
+        metadata.put("author", "Kim");
+        metadata.put("volume", "100");
+        metadata.put("year", "2008");
+        metadata.put("journal-title", "Phys Rev Lett");
+        MatchRequest request = new MatchRequest(new ArrayList<>());
+        request.setStructuredRows(20);
+
+        List<SearchPass> passes = matcher.planSearches(
+                new Reference(metadata), request,
+                DegradationLevel.REDUCED_ROWS);
+
+        Assert.assertEquals(2, passes.size());
+        Assert.assertEquals(DegradationLevel.REDUCED_ROWS.getRows(20),
+                passes.get(0).getRows());
+        Assert.assertEquals(DegradationLevel.REDUCED_ROWS.getRows(20),
+                passes.get(1).getRows());
+        Assert.assertEquals("physical review letters", passes.get(1)
+                .getReference().getFieldValue("journal-title"));
+    }
+    
     private MatchResponse invokeMockStringRequest(String reference,
             String mockJsonFileName) throws IOException, MatchException {
         when(apiTestClient.getWorks(any(), any()))
@@ -0,0 +1,117 @@
+package org.crossref.refmatching;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResultStoreTest {
+
+    private static final String CONFIG = "ct=0.4;ut=0.34";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFingerprint() {
+        ReferenceFingerprint key = ReferenceFingerprint.of(
+                new Reference("Tkaczyk D.  Reference Matching, 2019."), CONFIG);
+        assertEquals(key, ReferenceFingerprint.of(
+                new Reference(" tkaczyk d. reference matching, 2019."),
+                CONFIG));
+        assertNotEquals(key, ReferenceFingerprint.of(
+                new Reference("Tkaczyk D. Reference Matching, 2018."),
+                CONFIG));
+        assertNotEquals(key, ReferenceFingerprint.of(
+                new Reference("Tkaczyk D. Reference Matching, 2019."),
+                CONFIG + ";sr=100"));
+
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("journal-title", "Cell");
+        metadata.put("volume", "176");
+        Reference structured = new Reference(metadata);
+        assertEquals(ReferenceFingerprint.of(structured, CONFIG),
+                ReferenceFingerprint.of(
+                        structured.withField("journal-title", "CELL"), CONFIG));
+        assertEquals(32, key.toString().length());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        ResultStore store = new ResultStore(0);
+        ReferenceFingerprint key1 = fingerprint("Reference one");
+        ReferenceFingerprint key2 = fingerprint("Reference two");
+        store.put(key1, "10.1000/1", 0.9);
+        store.put(key2, "10.1000/2", 87.5);
+
+        File file = new File(folder.getRoot(), "store.bin.gz");
+        store.save(file);
+        ResultStore loaded = ResultStore.load(file, 0);
+
+        assertEquals(2, loaded.size());
+        assertEquals("10.1000/1", loaded.get(key1).getDOI());
+        assertEquals(87.5, loaded.get(key2).getScore(), 0.0);
+        assertNull(loaded.get(fingerprint("Reference three")));
+        assertEquals(2, loaded.getHitCount());
+        assertEquals(1, loaded.getMissCount());
+    }
+
+    @Test
+    public void testLoadMissingFile() throws IOException {
+        assertEquals(0, ResultStore.load(
+                new File(folder.getRoot(), "missing.bin"), 0).size());
+    }
+
+    @Test
+    public void testMaxAge() throws InterruptedException {
+        ResultStore store = new ResultStore(1);
+        ReferenceFingerprint key = fingerprint("Reference one");
+        store.put(key, "10.1000/1", 0.9);
+        Thread.sleep(10);
+        assertNull(store.get(key));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testStaleAge() throws InterruptedException {
+        ResultStore store = new ResultStore(1, 60000);
+        ReferenceFingerprint key = fingerprint("Reference one");
+        store.put(key, "10.1000/1", 0.9);
+        Thread.sleep(10);
+        assertNull(store.get(key));
+        assertEquals(1, store.size());
+        ResultStore.StoredResult stale = store.get(key, true);
+        assertEquals("10.1000/1", stale.getDOI());
+        assertTrue(store.isStale(stale));
+
+        store = new ResultStore(1, 1);
+        store.put(key, "10.1000/1", 0.9);
+        Thread.sleep(10);
+        assertNull(store.get(key, true));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ResultStore store = new ResultStore(0);
+        ReferenceFingerprint key1 = fingerprint("Reference one");
+        ReferenceFingerprint key2 = fingerprint("Reference two");
+        ReferenceFingerprint key3 = fingerprint("Reference three");
+        store.put(key1, "10.1000/1", 0.9);
+        store.put(key2, "10.1000/2", 0.9);
+        store.put(key3, "10.1000/2", 0.8);
+
+        assertTrue(store.invalidate(key1));
+        assertFalse(store.invalidate(key1));
+        assertEquals(2, store.invalidateDOI("10.1000/2"));
+        assertEquals(0, store.size());
+    }
+
+    private ReferenceFingerprint fingerprint(String reference) {
+        return ReferenceFingerprint.of(new Reference(reference), CONFIG);
+    }
+}
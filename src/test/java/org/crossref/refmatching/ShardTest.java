@@ -0,0 +1,98 @@
+package org.crossref.refmatching;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ShardTest {
+
+    @Test
+    public void testSelectHash() throws IOException {
+        assertShardsMerge(Partitioning.HASH, 1000, 7);
+    }
+
+    @Test
+    public void testSelectRange() throws IOException {
+        List<List<ReferenceData>> shards =
+                assertShardsMerge(Partitioning.RANGE, 1000, 7);
+        assertEquals("Reference 0", shards.get(0).get(0).getReference()
+                .getFormattedString());
+        assertEquals("Reference 999", shards.get(6).get(
+                shards.get(6).size() - 1).getReference().getFormattedString());
+    }
+
+    @Test
+    public void testSelectMoreShardsThanReferences() throws IOException {
+        assertShardsMerge(Partitioning.HASH, 3, 5);
+        assertShardsMerge(Partitioning.RANGE, 3, 5);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMergeMismatchedShards() throws IOException {
+        new ShardMerger(Partitioning.RANGE).interleave(Arrays.asList(
+                Arrays.asList(1, 2, 3), Arrays.asList(4)));
+    }
+
+    @Test
+    public void testReadJSONRoundTrip() {
+        List<ReferenceData> references = Arrays.asList(
+                new ReferenceData(new Reference("Reference one")),
+                new ReferenceData(new Reference("Reference two")));
+        List<ReferenceLink> links = Arrays.asList(
+                new ReferenceLink(references.get(0), "10.1000/1", 0.9),
+                new ReferenceLink(references.get(1), "10.1000/2", 0.8,
+                        MatchStatus.COMPLETED, MatchSource.STALE_RESULT,
+                        DegradationLevel.STALE_CACHE));
+        byte[] json = new MatchResponse(new MatchRequest(references), links)
+                .toJSON().toString().getBytes(StandardCharsets.UTF_8);
+
+        List<ReferenceLink> read =
+                ShardMerger.readJSON(new ByteArrayInputStream(json));
+        assertEquals(2, read.size());
+        assertEquals("10.1000/1", read.get(0).getDOI());
+        assertEquals(MatchSource.SEARCH, read.get(0).getSource());
+        assertEquals(DegradationLevel.NORMAL,
+                read.get(0).getDegradationLevel());
+        assertEquals("10.1000/2", read.get(1).getDOI());
+        assertEquals(MatchSource.STALE_RESULT, read.get(1).getSource());
+        assertEquals(DegradationLevel.STALE_CACHE,
+                read.get(1).getDegradationLevel());
+    }
+
+    @Test
+    public void testParse() {
+        Shard shard = Shard.parse("2/5", Partitioning.RANGE);
+        assertEquals(2, shard.getIndex());
+        assertEquals(5, shard.getCount());
+        assertEquals(Partitioning.RANGE, shard.getPartitioning());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalid() {
+        Shard.parse("5/5", Partitioning.HASH);
+    }
+
+    private List<List<ReferenceData>> assertShardsMerge(
+            Partitioning partitioning, int size, int count)
+            throws IOException {
+        List<ReferenceData> references = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            references.add(new ReferenceData(new Reference("Reference " + i)));
+        }
+        List<List<ReferenceData>> shards = new ArrayList<>();
+        for (int s = 0; s < count; s++) {
+            shards.add(new Shard(s, count, partitioning).select(references));
+            // Shards are balanced
+            assertTrue(shards.get(s).size() <= size / count + size / 20 + 1);
+        }
+        // Shards are disjoint, cover the input and merge back in order
+        assertEquals(references,
+                new ShardMerger(partitioning).interleave(shards));
+        return shards;
+    }
+}
@@ -0,0 +1,117 @@
+package org.crossref.refmatching;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SlowReferenceLogTest {
+
+    private static SlowReference slow(String query, long totalMs) {
+        SlowReferenceLog.Trace trace = new SlowReferenceLog.Trace();
+        trace.addPass(20, TimeUnit.MILLISECONDS.toNanos(totalMs / 2),
+                TimeUnit.MILLISECONDS.toNanos(totalMs / 4), 5);
+        return new SlowReference(query, ReferenceType.UNSTRUCTURED,
+                TimeUnit.MILLISECONDS.toNanos(totalMs), trace,
+                MatchStatus.COMPLETED);
+    }
+
+    @Test
+    public void shouldKeepTheSlowest() {
+        SlowReferenceLog log = new SlowReferenceLog(3, 60000);
+        long[] times = {40, 10, 70, 20, 90, 30, 60};
+        for (int i = 0; i < times.length; i++) {
+            log.add(slow("ref " + i, times[i]));
+        }
+
+        List<SlowReference> slowest = log.getSlowest();
+        assertEquals(3, slowest.size());
+        assertEquals("ref 4", slowest.get(0).getQuery());
+        assertEquals("ref 2", slowest.get(1).getQuery());
+        assertEquals("ref 6", slowest.get(2).getQuery());
+        assertEquals(90., slowest.get(0).getTotalMs(), 0.001);
+    }
+
+    @Test
+    public void shouldRejectFastReferences() {
+        SlowReferenceLog log = new SlowReferenceLog(2, 60000);
+        long now = System.nanoTime();
+        // Everything is slow until the log is full
+        assertTrue(log.isSlow(1, now));
+        log.add(slow("ref 1", 50));
+        log.add(slow("ref 2", 80));
+
+        assertFalse(log.isSlow(TimeUnit.MILLISECONDS.toNanos(40), now));
+        assertFalse(log.isSlow(TimeUnit.MILLISECONDS.toNanos(50), now));
+        assertTrue(log.isSlow(TimeUnit.MILLISECONDS.toNanos(60), now));
+        // A new window starts empty
+        assertTrue(log.isSlow(1, now + TimeUnit.MINUTES.toNanos(2)));
+    }
+
+    @Test
+    public void shouldRotateWindows() throws InterruptedException {
+        SlowReferenceLog log = new SlowReferenceLog(2, 100);
+        log.add(slow("old 1", 50));
+        log.add(slow("old 2", 80));
+        Thread.sleep(120);
+        log.add(slow("new", 10));
+
+        // The fast reference is kept in the new window, next to the
+        // previous one
+        List<SlowReference> slowest = log.getSlowest();
+        assertEquals(3, slowest.size());
+        assertEquals("old 2", slowest.get(0).getQuery());
+        assertEquals("new", slowest.get(2).getQuery());
+
+        // Windows older than the previous one are dropped
+        Thread.sleep(250);
+        assertTrue(log.getSlowest().isEmpty());
+    }
+
+    @Test
+    public void shouldSerializeBreakdown() {
+        SlowReferenceLog log = new SlowReferenceLog(2, 60000);
+        SlowReferenceLog.Trace trace = new SlowReferenceLog.Trace();
+        trace.addPass(20, TimeUnit.MILLISECONDS.toNanos(30),
+                TimeUnit.MILLISECONDS.toNanos(5), 12);
+        trace.addPass(10, TimeUnit.MILLISECONDS.toNanos(20),
+                TimeUnit.MILLISECONDS.toNanos(3), 8);
+        log.add(new SlowReference("J Biol Chem 1999", ReferenceType.STRUCTURED,
+                TimeUnit.MILLISECONDS.toNanos(60), trace,
+                MatchStatus.TIMED_OUT));
+
+        JSONArray json = log.toJSON();
+        assertEquals(1, json.length());
+        JSONObject entry = json.getJSONObject(0);
+        assertEquals("J Biol Chem 1999", entry.getString("query"));
+        assertEquals("STRUCTURED", entry.getString("type"));
+        assertEquals(20, entry.getInt("rows"));
+        assertEquals(60., entry.getDouble("totalMs"), 0.001);
+        assertEquals(50., entry.getDouble("searchMs"), 0.001);
+        assertEquals(8., entry.getDouble("validationMs"), 0.001);
+        assertEquals(20, entry.getInt("candidates"));
+        assertTrue(entry.getBoolean("abbreviationPass"));
+        assertEquals("TIMED_OUT", entry.getString("status"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidCapacity() {
+        new SlowReferenceLog(0, 60000);
+    }
+
+    @Test
+    public void shouldResetTrace() {
+        SlowReferenceLog.Trace trace = new SlowReferenceLog.Trace();
+        trace.reset(true);
+        trace.addPass(20, 1000, 500, 5);
+        assertTrue(trace.isActive());
+        assertEquals(1, trace.getPasses());
+
+        trace.reset(false);
+        assertFalse(trace.isActive());
+        assertEquals(0, trace.getPasses());
+        assertEquals(0, trace.getSearchNanos());
+    }
+}
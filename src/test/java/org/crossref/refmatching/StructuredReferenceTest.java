@@ -2,6 +2,7 @@ package org.crossref.refmatching;
 
 import java.util.HashMap;
 import java.util.Map;
+import org.json.JSONObject;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -40,4 +41,44 @@ public class StructuredReferenceTest {
             assertEquals(reference.get(key), sr.getFieldValue(key));
         });
     }
+
+    @Test
+    public void testWithField() {
+        Map<String, String> reference = new HashMap<>();
+        reference.put("author", "West");
+        reference.put("journal-title", "J. Amer. chem. Soc.");
+        reference.put("custom-key", "custom value");
+        
+        Reference sr = new Reference(reference);
+        Reference sr2 = sr.withField("journal-title",
+                "journal of the american chemical society");
+        Reference sr3 = sr2.withField("custom-key", "other value");
+        
+        assertEquals("J. Amer. chem. Soc.", sr.getFieldValue("journal-title"));
+        assertEquals("journal of the american chemical society",
+                sr2.getFieldValue("journal-title"));
+        assertEquals("journal of the american chemical society",
+                sr3.getFieldValue("journal-title"));
+        assertEquals("custom value", sr2.getFieldValue("custom-key"));
+        assertEquals("other value", sr3.getFieldValue("custom-key"));
+        assertEquals("West", sr3.getFieldValue("author"));
+        assertEquals(reference, sr.getMetadataAsMap());
+        assertEquals(3, sr3.getMetadataAsMap().size());
+    }
+
+    @Test
+    public void testFromJSON() {
+        String json = "{\"author\": \"W\\u00e9st\", \"year\": 1962, "
+                + "\"first-page\": \"17\\\"63\", \"custom-key\": \"x\"}";
+        
+        Reference sr = Reference.fromJSON(json);
+        
+        assertEquals(ReferenceType.STRUCTURED, sr.getType());
+        assertEquals("W\u00e9st", sr.getFieldValue("author"));
+        assertEquals("1962", sr.getFieldValue("year"));
+        assertEquals("17\"63", sr.getFieldValue("first-page"));
+        assertEquals("x", sr.getFieldValue("custom-key"));
+        assertEquals(new Reference(new JSONObject(json)).getMetadataAsMap(),
+                sr.getMetadataAsMap());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package org.crossref.refmatching;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ThresholdSweepTest {
+
+    @Test
+    public void testChooseDOI() {
+        CandidateSet set = unstructured(0);
+
+        // Only the first item is a candidate at high candidate thresholds
+        assertEquals("10.1/a", set.chooseDOI(0.9, 0.3, 0.7));
+        // The second item is more similar, once it is a candidate
+        assertEquals("10.1/b", set.chooseDOI(0.5, 0.3, 0.7));
+        // The third item is a candidate, but less similar
+        assertEquals("10.1/b", set.chooseDOI(0.1, 0.3, 0.7));
+        // Validation threshold not reached
+        assertNull(set.chooseDOI(0.9, 0.5, 0.7));
+        assertEquals("10.1/b", set.chooseDOI(0.5, 0.5, 0.7));
+    }
+
+    @Test
+    public void testChooseDOIAcrossPasses() {
+        CandidateSet set = new CandidateSet(0, ReferenceType.STRUCTURED);
+        set.addPass(CandidateSet.PassThreshold.STRUCTURED,
+                new double[]{1.0}, new double[]{0.7},
+                new String[]{"10.1/a"});
+        set.addPass(CandidateSet.PassThreshold.CANDIDATE,
+                new double[]{1.0}, new double[]{0.8},
+                new String[]{"10.1/b"});
+
+        assertEquals("10.1/b", set.chooseDOI(0.4, 0.34, 0.6));
+        assertEquals("10.1/a", set.chooseDOI(0.9, 0.34, 0.6));
+        assertNull(set.chooseDOI(0.9, 0.34, 0.76));
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            unstructured(7).write(out);
+        }
+        CandidateSet set = CandidateSet.read(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(7, set.getOrdinal());
+        assertEquals(ReferenceType.UNSTRUCTURED, set.getType());
+        assertEquals("10.1/a", set.chooseDOI(0.9, 0.3, 0.7));
+        assertEquals("10.1/b", set.chooseDOI(0.5, 0.3, 0.7));
+    }
+
+    @Test
+    public void testSweep() {
+        CandidateSet empty = new CandidateSet(1, ReferenceType.STRUCTURED);
+        empty.addPass(CandidateSet.PassThreshold.STRUCTURED,
+                new double[0], new double[0], new String[0]);
+        List<CandidateSet> sets = Arrays.asList(unstructured(0), empty);
+
+        List<SweepResult> results = ThresholdSweep.sweep(sets,
+                new double[]{0.5, 0.9}, new double[]{0.3, 0.5},
+                new double[]{0.76}, 2);
+
+        assertEquals(4, results.size());
+        assertEquals(0.5, results.get(0).getCandidateMinScore(), 0.0001);
+        assertEquals(0.3, results.get(0).getUnstructuredMinScore(), 0.0001);
+        assertEquals(0.9, results.get(3).getCandidateMinScore(), 0.0001);
+        assertEquals(0.5, results.get(3).getUnstructuredMinScore(), 0.0001);
+        int[] expected = {1, 1, 1, 0};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(2, results.get(i).getReferenceCount());
+            assertEquals(expected[i], results.get(i).getMatched());
+            assertEquals(expected[i],
+                    results.get(i).getMatchedUnstructured());
+            assertEquals(0, results.get(i).getMatchedStructured());
+        }
+    }
+
+    private CandidateSet unstructured(int ordinal) {
+        CandidateSet set = new CandidateSet(ordinal,
+                ReferenceType.UNSTRUCTURED);
+        set.addPass(CandidateSet.PassThreshold.UNSTRUCTURED,
+                new double[]{1.0, 0.6, 0.2},
+                new double[]{0.4, 0.6, 0.5},
+                new String[]{"10.1/a", "10.1/b", "10.1/c"});
+        return set;
+    }
+}
@@ -1,5 +1,7 @@
 package org.crossref.refmatching;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -123,4 +125,40 @@ public class UtilsTest {
         assertEquals("26090-26099", Utils.completeLastPage("26090-9"));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseInputReferencesLazily() {
+        byte[] data = ("Lazy reference one\r\n{\"volume\": \"12\"}\n\n"
+                + "Lazy reference two\n").getBytes(StandardCharsets.UTF_8);
+        List<ReferenceData> refs = Utils.parseInputReferences(data, "\\r?\\n");
+
+        assertEquals(4, refs.size());
+        assertTrue(refs.get(0).isRaw());
+        assertEquals(ReferenceType.UNSTRUCTURED, refs.get(0).getType());
+        assertEquals(18, refs.get(0).getTextLength());
+        assertEquals(ReferenceType.STRUCTURED, refs.get(1).getType());
+        assertEquals("", refs.get(2).getReference().getFormattedString());
+
+        assertEquals("Lazy reference one",
+                refs.get(0).getReference().getFormattedString());
+        assertEquals("12", refs.get(1).getReference().getFieldValue("volume"));
+        refs.get(1).release();
+        assertEquals("12", refs.get(1).getReference().getFieldValue("volume"));
+        assertEquals("Lazy reference two",
+                refs.get(3).getReference().getFormattedString());
+    }
+
+    @Test
+    public void testParseInputReferencesLazilyWithLineBreaks() {
+        byte[] data = "Lazy reference one\r\nLazy reference two\n"
+                .getBytes(StandardCharsets.UTF_8);
+        List<ReferenceData> refs = Utils.parseInputReferences(data, "\r?\n");
+
+        assertEquals(2, refs.size());
+        assertTrue(refs.get(0).isRaw());
+        assertEquals("Lazy reference two",
+                refs.get(1).getReference().getFormattedString());
+        assertTrue(Utils.isLineDelimiter("\\r?\\n"));
+        assertFalse(Utils.isLineDelimiter(";"));
+    }
+}